@@ -2,20 +2,28 @@ package com.controleestoque;
 
 import com.controleestoque.estoque.ConexaoBanco;
 import com.controleestoque.estoque.InicializacaoBancoDados;
+import com.controleestoque.estoque.PoolConexoes;
 import com.controleestoque.estoque.ProdutoDAO;
 import com.controleestoque.gui.Janela;
+import com.controleestoque.servico.CacheFacetas;
+import com.controleestoque.servico.IndiceTrigramas;
+import com.controleestoque.servico.MotorFiltroMemoria;
 import com.controleestoque.servico.ServicoProduto;
+import com.controleestoque.util.ConfiguracaoBanco;
+import com.controleestoque.util.LimpezaBancoDados;
 import javafx.application.Application;
 import javafx.stage.Stage;
 import javafx.scene.image.Image;
 
 
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.SQLException;
 
 public class Main extends Application {
 
-    private Connection connection;
+    private PoolConexoes pool;
+    private ServicoProduto servicoProduto;
 
     @Override
     public void start(Stage primaryStage) {
@@ -24,13 +32,26 @@ public class Main extends Application {
             primaryStage.getIcons().add(new Image(getClass().getResourceAsStream(iconPath)));
             inicializarBancoDeDados();
 
-            if (connection != null) {
-                ProdutoDAO produtoDAO = new ProdutoDAO(connection);
-                ServicoProduto servicoProduto = new ServicoProduto(produtoDAO, connection);
+            if (pool != null) {
+                ProdutoDAO produtoDAO = new ProdutoDAO(pool);
+                servicoProduto = new ServicoProduto(produtoDAO, pool);
+                IndiceTrigramas indiceBusca = new IndiceTrigramas(
+                        Paths.get(ConfiguracaoBanco.getDatabaseDir(), "indice_busca.dat"));
+                servicoProduto.usarIndiceBusca(indiceBusca);
+                servicoProduto.usarMotorFiltro(new MotorFiltroMemoria(indiceBusca,
+                        ConfiguracaoBanco.getFiltroLimiteProdutosMemoria(), ConfiguracaoBanco.isFiltroForaDoHeap()));
+                servicoProduto.usarCacheFacetas(new CacheFacetas());
+                try {
+                    servicoProduto.usarTabelaResumoTotais(ConfiguracaoBanco.isTotaisUsarTabelaResumo());
+                } catch (SQLException e) {
+                    // Sem a tabela de resumo os totais continuam disponíveis, agregados a cada consulta
+                    System.err.println(e.getMessage());
+                }
+                servicoProduto.iniciarLimpezaPeriodica(ConfiguracaoBanco.getLimpezaIntervaloVarreduraMin());
 
 //                // Gerar Dados
 //                if (servicoProduto.listarProdutos().isEmpty()) {
-//                    GeradorDados.gerarProdutosEmMassa(connection, 20);
+//                    GeradorDados.gerarProdutosEmMassa(pool, 20);
 //                    System.out.println("Produtos gerados em massa com sucesso.");
 //                }
 
@@ -51,17 +72,20 @@ public class Main extends Application {
     private void inicializarBancoDeDados() {
         try {
             InicializacaoBancoDados.criarBancoSeNecessario();
-            connection = ConexaoBanco.getConexao();
+            pool = ConexaoBanco.getPool();
 
-            if (connection != null && !connection.isClosed()) {
+            // Abre a primeira conexão do pool para confirmar que o banco está acessível
+            try (Connection connection = pool.obterConexao()) {
+                if (!connection.isValid(5)) {
+                    throw new SQLException("A conexão obtida do pool não é válida.");
+                }
                 System.out.println("Banco de dados inicializado e conexão estabelecida com sucesso.");
-            } else {
-                System.err.println("Falha ao inicializar a conexão com o banco de dados.");
-                connection = null;
             }
         } catch (SQLException e) {
             System.err.println("Erro de SQL ao inicializar o banco de dados: " + e.getMessage());
             e.printStackTrace();
+            ConexaoBanco.fecharPool();
+            pool = null;
         } catch (Exception e) {
             System.err.println("Erro inesperado ao inicializar o banco de dados: " + e.getMessage());
             e.printStackTrace();
@@ -70,8 +94,13 @@ public class Main extends Application {
 
     @Override
     public void stop() {
-        if (connection != null) {
-            ConexaoBanco.fecharConexao(connection);
+        if (pool != null) {
+            if (servicoProduto != null) {
+                servicoProduto.pararLimpezaPeriodica();
+                servicoProduto.salvarIndiceBusca();
+            }
+            System.out.println(LimpezaBancoDados.resumoMetricas());
+            ConexaoBanco.fecharPool();
             System.out.println("Conexão com o banco de dados fechada com sucesso.");
         }
     }
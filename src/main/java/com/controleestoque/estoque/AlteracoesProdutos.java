@@ -0,0 +1,43 @@
+package com.controleestoque.estoque;
+
+import java.util.List;
+
+/**
+ * Produtos alterados e removidos desde uma versão, devolvidos por ProdutoDAO.buscarAlteracoesDesde.
+ * Os alterados incluem os produtos novos e os que estão em uma caixa alterada. Um id pode aparecer
+ * nas duas listas se foi removido e reutilizado; nesse caso a remoção deve ser aplicada primeiro.
+ */
+public class AlteracoesProdutos {
+	private final List<Produto> alterados;
+	private final List<Integer> removidos;
+	private final long versao;
+
+	/**
+	 * Construtor que registra as alterações encontradas.
+	 *
+	 * @param alterados Os produtos incluídos ou alterados, com os dados atuais.
+	 * @param removidos Os ids dos produtos removidos.
+	 * @param versao    A maior versão vista na consulta, a ser usada na próxima busca de alterações.
+	 */
+	public AlteracoesProdutos(List<Produto> alterados, List<Integer> removidos, long versao) {
+		this.alterados = alterados;
+		this.removidos = removidos;
+		this.versao = versao;
+	}
+
+	public List<Produto> getAlterados() {
+		return alterados;
+	}
+
+	public List<Integer> getRemovidos() {
+		return removidos;
+	}
+
+	public long getVersao() {
+		return versao;
+	}
+
+	public boolean isVazia() {
+		return alterados.isEmpty() && removidos.isEmpty();
+	}
+}
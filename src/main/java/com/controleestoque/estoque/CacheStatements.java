@@ -0,0 +1,171 @@
+package com.controleestoque.estoque;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache de PreparedStatements de uma conexão física do pool.
+ * Os comandos são guardados pelo texto SQL e reaproveitados enquanto a conexão estiver aberta,
+ * evitando que o Derby compile o mesmo SQL a cada chamada dos DAOs.
+ */
+class CacheStatements {
+
+	private final Connection conexao;
+	private final int capacidade;
+	private final AtomicLong acertos;
+	private final AtomicLong falhas;
+	private final AtomicLong remocoes;
+
+	// Ordem de acesso: o primeiro item é o usado há mais tempo
+	private final LinkedHashMap<String, ItemCache> itens = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * Construtor que associa o cache a uma conexão física.
+	 *
+	 * @param conexao    A conexão física dona dos comandos.
+	 * @param capacidade Número máximo de comandos mantidos em cache.
+	 * @param acertos    Contador de comandos reaproveitados.
+	 * @param falhas     Contador de comandos que precisaram ser preparados.
+	 * @param remocoes   Contador de comandos descartados por falta de espaço.
+	 */
+	CacheStatements(Connection conexao, int capacidade, AtomicLong acertos, AtomicLong falhas, AtomicLong remocoes) {
+		this.conexao = conexao;
+		this.capacidade = capacidade;
+		this.acertos = acertos;
+		this.falhas = falhas;
+		this.remocoes = remocoes;
+	}
+
+	/**
+	 * Retorna um PreparedStatement para o SQL informado, reaproveitando o comando em cache quando possível.
+	 * Fechar o comando retornado o devolve ao cache em vez de fechá-lo de fato.
+	 *
+	 * @param sql             O comando SQL.
+	 * @param chavesGeradas   Constante de Statement para chaves geradas, ou null para o padrão.
+	 * @return O comando preparado.
+	 * @throws SQLException Em caso de erro ao preparar o comando.
+	 */
+	PreparedStatement preparar(String sql, Integer chavesGeradas) throws SQLException {
+		String chave = chavesGeradas == null ? sql : chavesGeradas + "|" + sql;
+
+		ItemCache item = itens.get(chave);
+		if (item != null && !item.emUso) {
+			acertos.incrementAndGet();
+			item.emUso = true;
+			return item.proxy;
+		}
+
+		falhas.incrementAndGet();
+		PreparedStatement fisico = chavesGeradas == null
+				? conexao.prepareStatement(sql)
+				: conexao.prepareStatement(sql, chavesGeradas);
+
+		// O mesmo SQL já está aberto nesta conexão: o novo comando não entra no cache
+		if (item != null || capacidade <= 0) {
+			return fisico;
+		}
+
+		item = new ItemCache(fisico);
+		item.emUso = true;
+		itens.put(chave, item);
+		removerExcedentes();
+		return item.proxy;
+	}
+
+	private void removerExcedentes() {
+		Iterator<ItemCache> iterador = itens.values().iterator();
+		while (itens.size() > capacidade && iterador.hasNext()) {
+			ItemCache maisAntigo = iterador.next();
+			if (!maisAntigo.emUso) {
+				iterador.remove();
+				remocoes.incrementAndGet();
+				fecharSilenciosamente(maisAntigo.fisico);
+			}
+		}
+	}
+
+	/**
+	 * Fecha todos os comandos em cache. Chamado quando a conexão física é fechada.
+	 */
+	void fechar() {
+		List<ItemCache> abertos = new ArrayList<>(itens.values());
+		itens.clear();
+		for (ItemCache item : abertos) {
+			fecharSilenciosamente(item.fisico);
+		}
+	}
+
+	private static void fecharSilenciosamente(PreparedStatement stmt) {
+		try {
+			stmt.close();
+		} catch (SQLException e) {
+			System.out.println("Erro ao fechar comando em cache: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Comando guardado no cache e o proxy entregue aos DAOs.
+	 */
+	private static class ItemCache implements InvocationHandler {
+		private final PreparedStatement fisico;
+		private final PreparedStatement proxy;
+		private boolean emUso;
+
+		private ItemCache(PreparedStatement fisico) {
+			this.fisico = fisico;
+			this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+					new Class<?>[] { PreparedStatement.class }, this);
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+			switch (metodo.getName()) {
+				case "close":
+					if (emUso) {
+						devolver();
+					}
+					return null;
+				case "isClosed":
+					if (!emUso) {
+						return true;
+					}
+					break;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				default:
+					break;
+			}
+
+			if (!emUso) {
+				throw new SQLException("O comando já foi devolvido ao cache.");
+			}
+			try {
+				return metodo.invoke(fisico, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+
+		// Limpa o estado deixado pela última execução antes de liberar o comando
+		private void devolver() throws SQLException {
+			emUso = false;
+			fisico.clearParameters();
+			fisico.clearBatch();
+			fisico.setQueryTimeout(0);
+			fisico.setMaxRows(0);
+			fisico.setFetchSize(0);
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -12,36 +13,85 @@ import java.util.List;
  */
 public class CaixaDAO {
 
-    private Connection conexao;
+    // SQLState de violação de chave única ou primária
+    private static final String SQLSTATE_VIOLACAO_UNICA = "23505";
+
+    private PoolConexoes pool;
 
     /**
-     * Construtor que recebe uma conexão com o banco de dados.
+     * Construtor que recebe o pool de conexões com o banco de dados.
+     * Cada operação empresta uma conexão do pool e a devolve ao terminar.
      *
-     * @param conexao A conexão com o banco de dados.
+     * @param pool O pool de conexões com o banco de dados.
      */
-    public CaixaDAO(Connection conexao) {
-        this.conexao = conexao;
+    public CaixaDAO(PoolConexoes pool) {
+        this.pool = pool;
     }
 
     /**
-     * Adiciona uma nova caixa no banco de dados.
+     * Adiciona uma nova caixa no banco de dados e atribui a ela o id gerado.
      *
      * @param caixa A caixa a ser adicionada.
-     * @throws SQLException Em caso de erro ao adicionar a caixa.
+     * @throws SQLException Em caso de erro ao adicionar a caixa, inclusive se já existir uma caixa com o mesmo nome.
      */
     public void adicionar(Caixa caixa) throws SQLException {
-        String sql = "INSERT INTO Caixas (nomeCaixa, localizacao) VALUES (?, ?)";
-        try (PreparedStatement pstmt = conexao.prepareStatement(sql)) {
-            conexao.setAutoCommit(false);
-            pstmt.setString(1, caixa.getNomeCaixa());
-            pstmt.setString(2, caixa.getLocalizacao());
+        try (Connection conexao = pool.obterConexao()) {
+            try {
+                caixa.setId(inserir(conexao, caixa.getNomeCaixa(), caixa.getLocalizacao()));
+                conexao.commit();
+            } catch (SQLException e) {
+                conexao.rollback();
+                throw new SQLException("Erro ao adicionar caixa: " + e.getMessage(), e.getSQLState(), e);
+            }
+        }
+    }
+
+    /**
+     * Retorna o id da caixa com o nome informado, criando-a se ela não existir.
+     * A busca e a criação acontecem na mesma transação; se outra conexão criar a mesma caixa ao mesmo
+     * tempo, a restrição de nome único rejeita a segunda inserção e a caixa criada pela outra é usada.
+     *
+     * @param nomeCaixa   O nome da caixa.
+     * @param localizacao A localização usada se a caixa for criada.
+     * @return O id da caixa existente ou criada.
+     * @throws SQLException Em caso de erro na busca ou na criação.
+     */
+    public int obterOuCriar(String nomeCaixa, String localizacao) throws SQLException {
+        try (Connection conexao = pool.obterConexao()) {
+            try {
+                int id = buscarId(conexao, nomeCaixa);
+                if (id == 0) {
+                    try {
+                        id = inserir(conexao, nomeCaixa, localizacao);
+                    } catch (SQLException e) {
+                        if (!SQLSTATE_VIOLACAO_UNICA.equals(e.getSQLState())) {
+                            throw e;
+                        }
+                        conexao.rollback();
+                        id = buscarId(conexao, nomeCaixa);
+                    }
+                }
+                conexao.commit();
+                return id;
+            } catch (SQLException e) {
+                conexao.rollback();
+                throw new SQLException("Erro ao obter ou criar caixa: " + e.getMessage(), e.getSQLState(), e);
+            }
+        }
+    }
+
+    private static int inserir(Connection conexao, String nomeCaixa, String localizacao) throws SQLException {
+        String sql = "INSERT INTO Caixas (nomeCaixa, localizacao, versao) VALUES (?, ?, NEXT VALUE FOR seq_versao)";
+        try (PreparedStatement pstmt = conexao.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, nomeCaixa);
+            pstmt.setString(2, localizacao);
             pstmt.executeUpdate();
-            conexao.commit();
-        } catch (SQLException e) {
-            conexao.rollback();
-            throw new SQLException("Erro ao adicionar caixa: " + e.getMessage(), e);
-        } finally {
-            conexao.setAutoCommit(true);
+            try (ResultSet chaves = pstmt.getGeneratedKeys()) {
+                if (!chaves.next()) {
+                    throw new SQLException("O banco não retornou o id da caixa criada.");
+                }
+                return chaves.getInt(1);
+            }
         }
     }
 
@@ -52,19 +102,19 @@ public class CaixaDAO {
      * @throws SQLException Em caso de erro ao alterar a caixa.
      */
     public void alterar(Caixa caixa) throws SQLException {
-        String sql = "UPDATE Caixas SET nomeCaixa = ?, localizacao = ? WHERE id = ?";
-        try (PreparedStatement pstmt = conexao.prepareStatement(sql)) {
-            conexao.setAutoCommit(false);
-            pstmt.setString(1, caixa.getNomeCaixa());
-            pstmt.setString(2, caixa.getLocalizacao());
-            pstmt.setInt(3, caixa.getId());
-            pstmt.executeUpdate();
-            conexao.commit();
-        } catch (SQLException e) {
-            conexao.rollback();
-            throw new SQLException("Erro ao alterar caixa: " + e.getMessage(), e);
-        } finally {
-            conexao.setAutoCommit(true);
+        // A nova versão da caixa faz os produtos dela aparecerem na busca de alterações, com o novo nome
+        String sql = "UPDATE Caixas SET nomeCaixa = ?, localizacao = ?, versao = NEXT VALUE FOR seq_versao WHERE id = ?";
+        try (Connection conexao = pool.obterConexao()) {
+            try (PreparedStatement pstmt = conexao.prepareStatement(sql)) {
+                pstmt.setString(1, caixa.getNomeCaixa());
+                pstmt.setString(2, caixa.getLocalizacao());
+                pstmt.setInt(3, caixa.getId());
+                pstmt.executeUpdate();
+                conexao.commit();
+            } catch (SQLException e) {
+                conexao.rollback();
+                throw new SQLException("Erro ao alterar caixa: " + e.getMessage(), e);
+            }
         }
     }
 
@@ -75,17 +125,21 @@ public class CaixaDAO {
      * @throws SQLException Em caso de erro ao excluir a caixa.
      */
     public void excluir(Caixa caixa) throws SQLException {
+        // A exclusão tira a caixa dos produtos (ON DELETE SET NULL) sem passar uma nova versão a eles
+        String sqlVersaoProdutos = "UPDATE Produtos SET versao = NEXT VALUE FOR seq_versao WHERE caixaID = ?";
         String sql = "DELETE FROM Caixas WHERE id = ?";
-        try (PreparedStatement pstmt = conexao.prepareStatement(sql)) {
-            conexao.setAutoCommit(false);
-            pstmt.setInt(1, caixa.getId());
-            pstmt.executeUpdate();
-            conexao.commit();
-        } catch (SQLException e) {
-            conexao.rollback();
-            throw new SQLException("Erro ao excluir caixa: " + e.getMessage(), e);
-        } finally {
-            conexao.setAutoCommit(true);
+        try (Connection conexao = pool.obterConexao()) {
+            try (PreparedStatement versaoProdutos = conexao.prepareStatement(sqlVersaoProdutos);
+                 PreparedStatement pstmt = conexao.prepareStatement(sql)) {
+                versaoProdutos.setInt(1, caixa.getId());
+                versaoProdutos.executeUpdate();
+                pstmt.setInt(1, caixa.getId());
+                pstmt.executeUpdate();
+                conexao.commit();
+            } catch (SQLException e) {
+                conexao.rollback();
+                throw new SQLException("Erro ao excluir caixa: " + e.getMessage(), e);
+            }
         }
     }
 
@@ -98,7 +152,7 @@ public class CaixaDAO {
     public List<Caixa> listar() throws SQLException {
         List<Caixa> caixas = new ArrayList<>();
         String sql = "SELECT * FROM Caixas";
-        try (PreparedStatement pstmt = conexao.prepareStatement(sql);
+        try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql);
              ResultSet rs = pstmt.executeQuery()) {
             while (rs.next()) {
                 caixas.add(mapearResultado(rs));
@@ -117,6 +171,14 @@ public class CaixaDAO {
      * @throws SQLException Em caso de erro na busca.
      */
     public int buscarIdCaixaPorNome(String nomeCaixa) throws SQLException {
+        try (Connection conexao = pool.obterConexao()) {
+            return buscarId(conexao, nomeCaixa);
+        } catch (SQLException e) {
+            throw new SQLException("Erro ao buscar ID do caixa pelo nome: " + e.getMessage(), e);
+        }
+    }
+
+    private static int buscarId(Connection conexao, String nomeCaixa) throws SQLException {
         String sql = "SELECT id FROM Caixas WHERE nomeCaixa = ?";
         try (PreparedStatement pstmt = conexao.prepareStatement(sql)) {
             pstmt.setString(1, nomeCaixa);
@@ -125,8 +187,6 @@ public class CaixaDAO {
                     return rs.getInt("id");
                 }
             }
-        } catch (SQLException e) {
-            throw new SQLException("Erro ao buscar ID do caixa pelo nome: " + e.getMessage(), e);
         }
         return 0;
     }
@@ -1,28 +1,51 @@
 package com.controleestoque.estoque;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import com.controleestoque.util.ConfiguracaoBanco;
 
 /**
  * Classe responsável pela conexão e transação com o banco de dados.
+ * As conexões são emprestadas de um pool compartilhado por toda a aplicação.
  */
 public class ConexaoBanco {
 
+	private static PoolConexoes pool;
+
 	/**
-	 * Estabelece e retorna uma conexão com o banco de dados.
+	 * Retorna o pool de conexões da aplicação, criando-o na primeira chamada
+	 * com as configurações do arquivo 'configuracao_banco.properties'.
+	 *
+	 * @return O pool de conexões compartilhado.
+	 */
+	public static synchronized PoolConexoes getPool() {
+		if (pool == null) {
+			pool = new PoolConexoes(ConfiguracaoBanco.getDatabaseUrl(), ConfiguracaoBanco.getPoolTamanhoMaximo(),
+					ConfiguracaoBanco.getPoolTimeoutEmprestimoMs(), ConfiguracaoBanco.getPoolTimeoutValidacaoSeg(),
+					ConfiguracaoBanco.getPoolCapacidadeCacheStatements());
+		}
+		return pool;
+	}
+
+	/**
+	 * Fecha o pool de conexões da aplicação.
+	 */
+	public static synchronized void fecharPool() {
+		if (pool != null) {
+			System.out.println(pool.resumoMetricas());
+			pool.close();
+			pool = null;
+		}
+	}
+
+	/**
+	 * Empresta uma conexão do pool com o banco de dados.
 	 *
 	 * @return Conexão com o banco de dados ou null em caso de falha.
 	 */
 	public static Connection getConexao() {
 		try {
-			String url = ConfiguracaoBanco.getDatabaseUrl();
-			Connection conn = DriverManager.getConnection(url);
-			if (conn != null && !conn.isClosed()) {
-				conn.setAutoCommit(false);
-			}
-			return conn;
+			return getPool().obterConexao();
 		} catch (SQLException e) {
 			System.out.println("Erro ao conectar ao banco de dados: " + e.getMessage());
 			return null;
@@ -30,7 +53,7 @@ public class ConexaoBanco {
 	}
 
 	/**
-	 * Fecha a conexão com o banco de dados.
+	 * Fecha a conexão com o banco de dados, devolvendo-a ao pool.
 	 *
 	 * @param conexao A conexão a ser fechada.
 	 */
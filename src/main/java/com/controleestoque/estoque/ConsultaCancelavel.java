@@ -0,0 +1,78 @@
+package com.controleestoque.estoque;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Controle de uma consulta que pode ser cancelada por outra thread, como a busca com filtros
+ * substituída por uma nova digitação do usuário.
+ * O DAO registra aqui o comando em execução; cancelar() chama Statement.cancel() quando o driver
+ * oferece suporte e, em todo caso, faz a leitura do resultado parar na próxima linha.
+ * O comando também recebe o tempo limite de execução da consulta.
+ */
+public class ConsultaCancelavel {
+
+	// SQLState padrão para operação cancelada
+	private static final String SQLSTATE_CANCELADA = "57014";
+
+	private final int timeoutSegundos;
+	private volatile boolean cancelada;
+	private Statement statement;
+
+	/**
+	 * Construtor que define o tempo limite da consulta.
+	 *
+	 * @param timeoutSegundos O tempo limite de execução em segundos (0 para nenhum).
+	 */
+	public ConsultaCancelavel(int timeoutSegundos) {
+		this.timeoutSegundos = timeoutSegundos;
+	}
+
+	/**
+	 * Cancela a consulta. Pode ser chamado de qualquer thread, antes ou durante a execução.
+	 */
+	public synchronized void cancelar() {
+		cancelada = true;
+		if (statement != null) {
+			try {
+				statement.cancel();
+			} catch (SQLException e) {
+				// Driver sem suporte a cancel() (como o Derby embarcado): a leitura para em verificar()
+			}
+		}
+	}
+
+	public boolean isCancelada() {
+		return cancelada;
+	}
+
+	/**
+	 * Registra o comando que vai ser executado e aplica o tempo limite.
+	 *
+	 * @param stmt O comando da consulta.
+	 * @throws SQLException Se a consulta já tiver sido cancelada.
+	 */
+	synchronized void iniciar(Statement stmt) throws SQLException {
+		verificar();
+		stmt.setQueryTimeout(timeoutSegundos);
+		statement = stmt;
+	}
+
+	/**
+	 * Desfaz o registro do comando, antes que ele seja fechado e devolvido ao cache.
+	 */
+	synchronized void concluir() {
+		statement = null;
+	}
+
+	/**
+	 * Interrompe a leitura se a consulta tiver sido cancelada.
+	 *
+	 * @throws SQLException Se a consulta tiver sido cancelada.
+	 */
+	void verificar() throws SQLException {
+		if (cancelada) {
+			throw new SQLException("Consulta cancelada.", SQLSTATE_CANCELADA);
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
@@ -19,6 +20,133 @@ public class InicializacaoBancoDados {
     private static final String DATABASE_DIR;
     private static final String DATABASE_NOME;
 
+    /**
+     * Migrações do schema, em ordem. A migração na posição i leva o banco da versão i para a versão i + 1;
+     * a versão aplicada fica registrada na tabela VersaoSchema, então bancos já existentes recebem
+     * apenas as migrações que ainda não rodaram.
+     */
+    private static final String[][] MIGRACOES = {
+            // Versão 1: índices secundários para as ordenações da tabela, os filtros e a busca de caixas por nome.
+            // Os índices de ordenação incluem o id e existem nos dois sentidos, para que a paginação por chave
+            // percorra o índice e pare no fim da página, sem ordenar a tabela inteira.
+            {
+                    "CREATE INDEX idx_produtos_id_desc ON Produtos (id DESC)",
+                    "CREATE INDEX idx_produtos_nome ON Produtos (nome, id)",
+                    "CREATE INDEX idx_produtos_nome_desc ON Produtos (nome DESC, id DESC)",
+                    "CREATE INDEX idx_produtos_quantidade ON Produtos (quantidade, id)",
+                    "CREATE INDEX idx_produtos_quantidade_desc ON Produtos (quantidade DESC, id DESC)",
+                    "CREATE INDEX idx_produtos_categoria ON Produtos (categoria)",
+                    "CREATE INDEX idx_produtos_localizacao ON Produtos (localizacao)",
+                    "CREATE INDEX idx_caixas_nomecaixa ON Caixas (nomeCaixa)"
+            },
+            // Versão 2: colunas geradas com os valores em minúsculas, para que os filtros por categoria,
+            // localização e caixa, que não diferenciam maiúsculas, sejam resolvidos por busca no índice.
+            {
+                    "ALTER TABLE Produtos ADD COLUMN categoriaNormalizada VARCHAR(255) "
+                            + "GENERATED ALWAYS AS (LOWER(categoria))",
+                    "ALTER TABLE Produtos ADD COLUMN localizacaoNormalizada VARCHAR(255) "
+                            + "GENERATED ALWAYS AS (LOWER(localizacao))",
+                    "ALTER TABLE Caixas ADD COLUMN nomeCaixaNormalizado VARCHAR(255) "
+                            + "GENERATED ALWAYS AS (LOWER(nomeCaixa))",
+                    "CREATE INDEX idx_produtos_categoria_norm ON Produtos (categoriaNormalizada)",
+                    "CREATE INDEX idx_produtos_localizacao_norm ON Produtos (localizacaoNormalizada)",
+                    "CREATE INDEX idx_caixas_nomecaixa_norm ON Caixas (nomeCaixaNormalizado)"
+            },
+            // Versão 3: nome de caixa único. Caixas repetidas são unidas na de menor id antes de criar a
+            // restrição, cujo índice substitui o índice simples de nomeCaixa da versão 1.
+            {
+                    "UPDATE Produtos SET caixaID = (SELECT MIN(c2.id) FROM Caixas c1, Caixas c2 "
+                            + "WHERE c1.id = Produtos.caixaID AND c2.nomeCaixa = c1.nomeCaixa) "
+                            + "WHERE caixaID IN (SELECT c1.id FROM Caixas c1, Caixas c2 "
+                            + "WHERE c2.nomeCaixa = c1.nomeCaixa AND c2.id < c1.id)",
+                    "DELETE FROM Caixas WHERE EXISTS (SELECT 1 FROM Caixas c2 "
+                            + "WHERE c2.nomeCaixa = Caixas.nomeCaixa AND c2.id < Caixas.id)",
+                    "ALTER TABLE Caixas ADD CONSTRAINT uk_caixas_nomecaixa UNIQUE (nomeCaixa)",
+                    "DROP INDEX idx_caixas_nomecaixa"
+            },
+            // Versão 4: tabela de resumo dos totais por categoria. Os gatilhos que a mantêm são criados
+            // pelo TotaisCategoriaDAO, conforme a configuração, junto com o cálculo inicial dos totais.
+            {
+                    "CREATE TABLE TotaisCategoria ("
+                            + "categoria VARCHAR(255) NOT NULL PRIMARY KEY, "
+                            + "quantidade BIGINT NOT NULL, "
+                            + "produtos INT NOT NULL)"
+            },
+            // Versão 5: versões de linha para a atualização incremental da tabela. As escritas em Produtos e
+            // Caixas gravam em versao o próximo valor de seq_versao, e cada produto removido é registrado em
+            // ProdutosRemovidos com a versão da remoção; linhas anteriores à migração ficam com a versão 0.
+            {
+                    "CREATE SEQUENCE seq_versao AS BIGINT START WITH 1",
+                    "ALTER TABLE Produtos ADD COLUMN versao BIGINT NOT NULL DEFAULT 0",
+                    "ALTER TABLE Caixas ADD COLUMN versao BIGINT NOT NULL DEFAULT 0",
+                    "CREATE INDEX idx_produtos_versao ON Produtos (versao)",
+                    "CREATE INDEX idx_caixas_versao ON Caixas (versao)",
+                    "CREATE TABLE ProdutosRemovidos (id INT NOT NULL, versao BIGINT NOT NULL)",
+                    "CREATE INDEX idx_produtos_removidos_versao ON ProdutosRemovidos (versao)",
+                    "CREATE TRIGGER trg_produtos_removidos AFTER DELETE ON Produtos "
+                            + "REFERENCING OLD AS o FOR EACH ROW "
+                            + "INSERT INTO ProdutosRemovidos (id, versao) VALUES (o.id, NEXT VALUE FOR seq_versao)"
+            },
+            // Versão 6: categorias e localizações em tabelas próprias, referenciadas por id em Produtos, para que
+            // agrupamentos e filtros comparem inteiros e renomear uma categoria altere uma única linha. Os
+            // gatilhos da tabela de resumo usam a coluna categoria e são removidos antes dela; o TotaisCategoriaDAO
+            // os recria sobre categoriaID. Os índices das colunas de texto são removidos junto com elas, e os
+            // índices das chaves estrangeiras passam a atender os filtros.
+            {
+                    "CREATE TABLE Categorias ("
+                            + "id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1), "
+                            + "nome VARCHAR(255) NOT NULL, "
+                            + "nomeNormalizado VARCHAR(255) GENERATED ALWAYS AS (LOWER(nome)), "
+                            + "versao BIGINT NOT NULL DEFAULT 0, "
+                            + "CONSTRAINT uk_categorias_nome UNIQUE (nome))",
+                    "CREATE TABLE Localizacoes ("
+                            + "id INT PRIMARY KEY GENERATED ALWAYS AS IDENTITY (START WITH 1, INCREMENT BY 1), "
+                            + "nome VARCHAR(255) NOT NULL, "
+                            + "nomeNormalizado VARCHAR(255) GENERATED ALWAYS AS (LOWER(nome)), "
+                            + "versao BIGINT NOT NULL DEFAULT 0, "
+                            + "CONSTRAINT uk_localizacoes_nome UNIQUE (nome))",
+                    "CREATE INDEX idx_categorias_nome_norm ON Categorias (nomeNormalizado)",
+                    "CREATE INDEX idx_localizacoes_nome_norm ON Localizacoes (nomeNormalizado)",
+                    "CREATE INDEX idx_categorias_versao ON Categorias (versao)",
+                    "CREATE INDEX idx_localizacoes_versao ON Localizacoes (versao)",
+                    "INSERT INTO Categorias (nome) SELECT DISTINCT categoria FROM Produtos "
+                            + "WHERE categoria IS NOT NULL AND categoria <> ''",
+                    "INSERT INTO Localizacoes (nome) SELECT DISTINCT localizacao FROM Produtos "
+                            + "WHERE localizacao IS NOT NULL AND localizacao <> ''",
+                    "DROP TRIGGER trg_totais_inserir",
+                    "DROP TRIGGER trg_totais_remover",
+                    "DROP TRIGGER trg_totais_alterar_antigo",
+                    "DROP TRIGGER trg_totais_alterar_novo",
+                    "ALTER TABLE Produtos ADD COLUMN categoriaID INT",
+                    "ALTER TABLE Produtos ADD COLUMN localizacaoID INT",
+                    "UPDATE Produtos SET "
+                            + "categoriaID = (SELECT c.id FROM Categorias c WHERE c.nome = Produtos.categoria), "
+                            + "localizacaoID = (SELECT l.id FROM Localizacoes l WHERE l.nome = Produtos.localizacao)",
+                    "ALTER TABLE Produtos ADD CONSTRAINT fk_produtos_categoria "
+                            + "FOREIGN KEY (categoriaID) REFERENCES Categorias (id)",
+                    "ALTER TABLE Produtos ADD CONSTRAINT fk_produtos_localizacao "
+                            + "FOREIGN KEY (localizacaoID) REFERENCES Localizacoes (id)",
+                    "ALTER TABLE Produtos DROP COLUMN categoriaNormalizada",
+                    "ALTER TABLE Produtos DROP COLUMN localizacaoNormalizada",
+                    "ALTER TABLE Produtos DROP COLUMN categoria",
+                    "ALTER TABLE Produtos DROP COLUMN localizacao",
+                    "DROP TABLE TotaisCategoria",
+                    "CREATE TABLE TotaisCategoria ("
+                            + "categoriaID INT NOT NULL PRIMARY KEY, "
+                            + "quantidade BIGINT NOT NULL, "
+                            + "produtos INT NOT NULL)"
+            }
+    };
+
+    /**
+     * Versão do schema esperada por esta versão da aplicação.
+     */
+    public static final int VERSAO_SCHEMA = MIGRACOES.length;
+
+    // SQLStates do Derby para objetos que já existem e para gatilhos que não existem
+    private static final String SQLSTATE_JA_EXISTE = "X0Y32";
+    private static final String SQLSTATE_GATILHO_NAO_EXISTE = "42X94";
+
     static {
         Properties properties = ConfiguracaoBanco.getProperties();
         DATABASE_DIR = properties.getProperty("database.dir");
@@ -34,7 +162,8 @@ public class InicializacaoBancoDados {
             criarDiretorioSeNecessario(DATABASE_DIR);
             try (Connection conn = DriverManager.getConnection(DATABASE_URL)) {
                 if (conn != null) {
-                    criarTabelasSeNecessario(conn);
+                    inicializarSchema(conn);
+                    limparRemocoesAntigas(conn);
                 }
             } catch (SQLException e) {
                 System.out.println("Erro ao criar o banco de dados: " + e.getMessage());
@@ -56,6 +185,108 @@ public class InicializacaoBancoDados {
         }
     }
 
+    /**
+     * Cria as tabelas que não existirem e aplica as migrações pendentes do schema.
+     *
+     * @param conexao A conexão ativa com o banco de dados.
+     * @throws SQLException Em caso de erro ao aplicar as migrações.
+     */
+    public static void inicializarSchema(Connection conexao) throws SQLException {
+        criarTabelasSeNecessario(conexao);
+        atualizarSchema(conexao);
+    }
+
+    /**
+     * Remove os registros de ProdutosRemovidos que nenhuma lista pode mais pedir. Deve ser chamado na
+     * inicialização: as listas de uma execução anterior não existem mais e toda lista começa por uma carga
+     * completa. O registro mais recente é mantido para que a versão atual dos dados não diminua, já que ela
+     * também valida os arquivos salvos fora do banco, como o índice de busca.
+     *
+     * @param conexao A conexão ativa com o banco de dados, em modo de confirmação automática.
+     * @throws SQLException Em caso de erro ao remover os registros.
+     */
+    public static void limparRemocoesAntigas(Connection conexao) throws SQLException {
+        try (Statement stmt = conexao.createStatement()) {
+            int removidos = stmt.executeUpdate("DELETE FROM ProdutosRemovidos "
+                    + "WHERE versao < (SELECT MAX(versao) FROM ProdutosRemovidos)");
+            if (removidos > 0) {
+                System.out.println(removidos + " registros de produtos removidos descartados.");
+            }
+        }
+    }
+
+    /**
+     * Aplica, em ordem, as migrações ainda não registradas na tabela VersaoSchema.
+     * Cada migração roda em uma transação junto com a atualização da versão, então uma falha
+     * deixa o banco na última versão completa.
+     *
+     * @param conexao A conexão ativa com o banco de dados.
+     * @throws SQLException Em caso de erro ao aplicar uma migração.
+     */
+    public static void atualizarSchema(Connection conexao) throws SQLException {
+        boolean autoCommit = conexao.getAutoCommit();
+        conexao.setAutoCommit(false);
+        try {
+            int versao = obterVersaoSchema(conexao);
+            while (versao < MIGRACOES.length) {
+                try (Statement stmt = conexao.createStatement()) {
+                    for (String sql : MIGRACOES[versao]) {
+                        executarIgnorandoExistente(stmt, sql);
+                    }
+                    versao++;
+                    stmt.executeUpdate("UPDATE VersaoSchema SET versao = " + versao);
+                    conexao.commit();
+                    System.out.println("Schema do banco de dados atualizado para a versão " + versao + ".");
+                } catch (SQLException e) {
+                    conexao.rollback();
+                    throw new SQLException("Erro ao migrar o schema para a versão " + (versao + 1) + ": "
+                            + e.getMessage(), e);
+                }
+            }
+        } finally {
+            conexao.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Retorna a versão registrada do schema, criando a tabela VersaoSchema na versão 0 se ela não existir.
+     *
+     * @param conexao A conexão ativa com o banco de dados.
+     * @return A versão atual do schema.
+     * @throws SQLException Em caso de erro ao ler ou criar a tabela de versão.
+     */
+    private static int obterVersaoSchema(Connection conexao) throws SQLException {
+        try (ResultSet tabelas = conexao.getMetaData().getTables(null, null, "VERSAOSCHEMA", null)) {
+            if (!tabelas.next()) {
+                try (Statement stmt = conexao.createStatement()) {
+                    stmt.execute("CREATE TABLE VersaoSchema (versao INT NOT NULL)");
+                    stmt.executeUpdate("INSERT INTO VersaoSchema (versao) VALUES (0)");
+                }
+                conexao.commit();
+                return 0;
+            }
+        }
+        try (Statement stmt = conexao.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT versao FROM VersaoSchema")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    /**
+     * Executa um comando da migração, tolerando objetos que já existam (por exemplo, um índice
+     * criado manualmente antes do controle de versão) e a remoção de gatilhos que não existam (os
+     * da tabela de resumo só existem quando ela está ligada).
+     */
+    private static void executarIgnorandoExistente(Statement stmt, String sql) throws SQLException {
+        try {
+            stmt.execute(sql);
+        } catch (SQLException e) {
+            if (!SQLSTATE_JA_EXISTE.equals(e.getSQLState()) && !SQLSTATE_GATILHO_NAO_EXISTE.equals(e.getSQLState())) {
+                throw e;
+            }
+        }
+    }
+
     /**
      * Cria as tabelas no banco de dados se não existir.
      *
@@ -0,0 +1,45 @@
+package com.controleestoque.estoque;
+
+import java.util.Comparator;
+
+/**
+ * Colunas pelas quais a listagem paginada de produtos pode ser ordenada.
+ * O id é sempre usado como critério de desempate para que a chave de cada página seja única.
+ */
+public enum OrdenacaoProduto {
+	ID("p.id"),
+	NOME("p.nome"),
+	QUANTIDADE("p.quantidade");
+
+	private final String coluna;
+
+	OrdenacaoProduto(String coluna) {
+		this.coluna = coluna;
+	}
+
+	public String getColuna() {
+		return coluna;
+	}
+
+	/**
+	 * Retorna um comparador com a mesma ordem da listagem paginada, com o id como desempate,
+	 * para posicionar produtos em uma lista já carregada sem consultar o banco.
+	 *
+	 * @param crescente Sendo true para ordem crescente e false para decrescente.
+	 * @return O comparador de produtos nesta ordenação.
+	 */
+	public Comparator<Produto> getComparador(boolean crescente) {
+		Comparator<Produto> comparador;
+		switch (this) {
+			case NOME:
+				comparador = Comparator.comparing(Produto::getNome).thenComparingInt(Produto::getId);
+				break;
+			case QUANTIDADE:
+				comparador = Comparator.comparingInt(Produto::getQuantidade).thenComparingInt(Produto::getId);
+				break;
+			default:
+				comparador = Comparator.comparingInt(Produto::getId);
+		}
+		return crescente ? comparador : comparador.reversed();
+	}
+}
@@ -0,0 +1,334 @@
+package com.controleestoque.estoque;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool de conexões com o banco de dados.
+ * Mantém um número limitado de conexões físicas abertas e as empresta aos DAOs e às tarefas em
+ * segundo plano. A conexão emprestada deve ser fechada para retornar ao pool.
+ */
+public class PoolConexoes implements AutoCloseable {
+
+	private final String url;
+	private final int tamanhoMaximo;
+	private final long timeoutEmprestimoMs;
+	private final int timeoutValidacaoSeg;
+	private final int capacidadeCacheStatements;
+
+	private final BlockingDeque<ConexaoPool> ociosas = new LinkedBlockingDeque<>();
+	private final Semaphore permissoes;
+	private volatile boolean fechado;
+
+	// Métricas do pool
+	private final AtomicLong emprestimos = new AtomicLong();
+	private final AtomicLong timeouts = new AtomicLong();
+	private final AtomicLong tempoEsperaNanos = new AtomicLong();
+	private final AtomicInteger conexoesCriadas = new AtomicInteger();
+	private final AtomicInteger conexoesDescartadas = new AtomicInteger();
+	private final AtomicInteger emUso = new AtomicInteger();
+	private final AtomicInteger picoEmUso = new AtomicInteger();
+
+	// Métricas do cache de comandos preparados
+	private final AtomicLong acertosCache = new AtomicLong();
+	private final AtomicLong falhasCache = new AtomicLong();
+	private final AtomicLong remocoesCache = new AtomicLong();
+
+	/**
+	 * Construtor que inicializa o pool sem abrir conexões; elas são criadas sob demanda.
+	 *
+	 * @param url                 A URL JDBC do banco de dados.
+	 * @param tamanhoMaximo       Número máximo de conexões abertas ao mesmo tempo.
+	 * @param timeoutEmprestimoMs Tempo máximo de espera por uma conexão livre, em milissegundos.
+	 * @param timeoutValidacaoSeg Tempo máximo para validar uma conexão ociosa, em segundos.
+	 */
+	public PoolConexoes(String url, int tamanhoMaximo, long timeoutEmprestimoMs, int timeoutValidacaoSeg) {
+		this(url, tamanhoMaximo, timeoutEmprestimoMs, timeoutValidacaoSeg, 0);
+	}
+
+	/**
+	 * Construtor que inicializa o pool com um cache de PreparedStatements por conexão.
+	 *
+	 * @param url                       A URL JDBC do banco de dados.
+	 * @param tamanhoMaximo             Número máximo de conexões abertas ao mesmo tempo.
+	 * @param timeoutEmprestimoMs       Tempo máximo de espera por uma conexão livre, em milissegundos.
+	 * @param timeoutValidacaoSeg       Tempo máximo para validar uma conexão ociosa, em segundos.
+	 * @param capacidadeCacheStatements Número máximo de comandos em cache por conexão (0 desativa o cache).
+	 */
+	public PoolConexoes(String url, int tamanhoMaximo, long timeoutEmprestimoMs, int timeoutValidacaoSeg,
+						int capacidadeCacheStatements) {
+		if (tamanhoMaximo <= 0) {
+			throw new IllegalArgumentException("O tamanho máximo do pool deve ser maior que zero.");
+		}
+		this.url = url;
+		this.tamanhoMaximo = tamanhoMaximo;
+		this.timeoutEmprestimoMs = timeoutEmprestimoMs;
+		this.timeoutValidacaoSeg = timeoutValidacaoSeg;
+		this.capacidadeCacheStatements = capacidadeCacheStatements;
+		this.permissoes = new Semaphore(tamanhoMaximo, true);
+	}
+
+	/**
+	 * Empresta uma conexão do pool, aguardando até o tempo limite se todas estiverem em uso.
+	 * A conexão é entregue com autocommit desativado.
+	 *
+	 * @return Conexão emprestada; ao ser fechada, ela volta para o pool.
+	 * @throws SQLException Se o pool estiver fechado, o tempo de espera esgotar ou a conexão não puder ser aberta.
+	 */
+	public Connection obterConexao() throws SQLException {
+		if (fechado) {
+			throw new SQLException("O pool de conexões está fechado.");
+		}
+
+		long inicio = System.nanoTime();
+		try {
+			if (!permissoes.tryAcquire(timeoutEmprestimoMs, TimeUnit.MILLISECONDS)) {
+				timeouts.incrementAndGet();
+				throw new SQLTransientConnectionException("Tempo de espera por uma conexão livre esgotado ("
+						+ timeoutEmprestimoMs + " ms).");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrompido enquanto aguardava uma conexão livre.", e);
+		}
+		tempoEsperaNanos.addAndGet(System.nanoTime() - inicio);
+
+		try {
+			ConexaoPool conexao = retirarOciosaValida();
+			if (conexao == null) {
+				conexao = criarConexao();
+			}
+			emprestimos.incrementAndGet();
+			picoEmUso.accumulateAndGet(emUso.incrementAndGet(), Math::max);
+			return envolver(conexao);
+		} catch (SQLException | RuntimeException e) {
+			permissoes.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Retira a conexão ociosa usada mais recentemente, descartando as que não forem mais válidas.
+	 *
+	 * @return Conexão ociosa válida ou null se não houver nenhuma.
+	 */
+	private ConexaoPool retirarOciosaValida() {
+		ConexaoPool conexao;
+		while ((conexao = ociosas.pollFirst()) != null) {
+			if (validar(conexao)) {
+				return conexao;
+			}
+			descartar(conexao);
+		}
+		return null;
+	}
+
+	private boolean validar(ConexaoPool conexao) {
+		try {
+			return !conexao.fisica.isClosed() && conexao.fisica.isValid(timeoutValidacaoSeg);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	private ConexaoPool criarConexao() throws SQLException {
+		Connection fisica = DriverManager.getConnection(url);
+		fisica.setAutoCommit(false);
+		conexoesCriadas.incrementAndGet();
+		return new ConexaoPool(fisica, new CacheStatements(fisica, capacidadeCacheStatements, acertosCache,
+				falhasCache, remocoesCache));
+	}
+
+	/**
+	 * Devolve uma conexão ao pool, desfazendo qualquer transação pendente.
+	 *
+	 * @param conexao A conexão física a ser devolvida.
+	 */
+	private void devolver(ConexaoPool conexao) {
+		try {
+			if (fechado || conexao.fisica.isClosed()) {
+				descartar(conexao);
+				return;
+			}
+			if (!conexao.fisica.getAutoCommit()) {
+				conexao.fisica.rollback();
+			}
+			conexao.fisica.setAutoCommit(false);
+			ociosas.offerFirst(conexao);
+		} catch (SQLException e) {
+			System.out.println("Erro ao devolver a conexão ao pool: " + e.getMessage());
+			descartar(conexao);
+		} finally {
+			emUso.decrementAndGet();
+			permissoes.release();
+		}
+	}
+
+	private void descartar(ConexaoPool conexao) {
+		conexoesDescartadas.incrementAndGet();
+		conexao.cache.fechar();
+		try {
+			conexao.fisica.close();
+		} catch (SQLException e) {
+			System.out.println("Erro ao fechar a conexão descartada: " + e.getMessage());
+		}
+	}
+
+	private Connection envolver(ConexaoPool conexao) {
+		return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+				new Class<?>[] { Connection.class }, new ConexaoEmprestada(conexao));
+	}
+
+	/**
+	 * Fecha todas as conexões ociosas. As conexões em uso são fechadas quando forem devolvidas.
+	 */
+	@Override
+	public void close() {
+		fechado = true;
+		ConexaoPool conexao;
+		while ((conexao = ociosas.pollFirst()) != null) {
+			descartar(conexao);
+		}
+	}
+
+	// Métricas do pool
+
+	public int getTamanhoMaximo() {
+		return tamanhoMaximo;
+	}
+
+	public long getTotalEmprestimos() {
+		return emprestimos.get();
+	}
+
+	public long getTotalTimeouts() {
+		return timeouts.get();
+	}
+
+	public int getConexoesCriadas() {
+		return conexoesCriadas.get();
+	}
+
+	public int getConexoesDescartadas() {
+		return conexoesDescartadas.get();
+	}
+
+	public int getConexoesEmUso() {
+		return emUso.get();
+	}
+
+	public int getConexoesOciosas() {
+		return ociosas.size();
+	}
+
+	public int getPicoEmUso() {
+		return picoEmUso.get();
+	}
+
+	public long getAcertosCacheStatements() {
+		return acertosCache.get();
+	}
+
+	public long getFalhasCacheStatements() {
+		return falhasCache.get();
+	}
+
+	public long getRemocoesCacheStatements() {
+		return remocoesCache.get();
+	}
+
+	public double getTempoMedioEsperaMs() {
+		long total = emprestimos.get();
+		return total == 0 ? 0 : tempoEsperaNanos.get() / 1_000_000.0 / total;
+	}
+
+	/**
+	 * Monta um resumo das métricas do pool para exibição em log.
+	 *
+	 * @return Texto com as métricas atuais.
+	 */
+	public String resumoMetricas() {
+		return String.format("Pool[max=%d, emUso=%d, ociosas=%d, pico=%d, emprestimos=%d, timeouts=%d, "
+				+ "criadas=%d, descartadas=%d, esperaMedia=%.2f ms, cache(acertos=%d, falhas=%d, remocoes=%d)]",
+				tamanhoMaximo, getConexoesEmUso(), getConexoesOciosas(), getPicoEmUso(), getTotalEmprestimos(),
+				getTotalTimeouts(), getConexoesCriadas(), getConexoesDescartadas(), getTempoMedioEsperaMs(),
+				getAcertosCacheStatements(), getFalhasCacheStatements(), getRemocoesCacheStatements());
+	}
+
+	/**
+	 * Conexão física mantida pelo pool, com o seu cache de comandos preparados.
+	 */
+	private static class ConexaoPool {
+		private final Connection fisica;
+		private final CacheStatements cache;
+
+		private ConexaoPool(Connection fisica, CacheStatements cache) {
+			this.fisica = fisica;
+			this.cache = cache;
+		}
+	}
+
+	/**
+	 * Intercepta as chamadas à conexão emprestada: o close() devolve a conexão ao pool
+	 * em vez de fechá-la, o prepareStatement() passa pelo cache de comandos e o uso após
+	 * a devolução é recusado.
+	 */
+	private class ConexaoEmprestada implements InvocationHandler {
+		private final ConexaoPool conexao;
+		private boolean devolvida;
+
+		private ConexaoEmprestada(ConexaoPool conexao) {
+			this.conexao = conexao;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method metodo, Object[] args) throws Throwable {
+			switch (metodo.getName()) {
+				case "close":
+					if (!devolvida) {
+						devolvida = true;
+						devolver(conexao);
+					}
+					return null;
+				case "isClosed":
+					if (devolvida) {
+						return true;
+					}
+					break;
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return System.identityHashCode(proxy);
+				case "toString":
+					return "ConexaoEmprestada[" + conexao.fisica + "]";
+				default:
+					break;
+			}
+
+			if (devolvida) {
+				throw new SQLException("A conexão já foi devolvida ao pool.");
+			}
+			if (metodo.getName().equals("prepareStatement") && args.length <= 2
+					&& (args.length == 1 || metodo.getParameterTypes()[1] == int.class)) {
+				return conexao.cache.preparar((String) args[0], args.length == 2 ? (Integer) args[1] : null);
+			}
+			try {
+				return metodo.invoke(conexao.fisica, args);
+			} catch (InvocationTargetException e) {
+				throw e.getCause();
+			}
+		}
+	}
+}
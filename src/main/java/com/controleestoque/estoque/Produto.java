@@ -1,8 +1,5 @@
 package com.controleestoque.estoque;
 
-import javafx.beans.property.BooleanProperty;
-import javafx.beans.property.SimpleBooleanProperty;
-
 /**
  * Classe que representa um produto no estoque.
  * Inclui informações como nome, quantidade, categoria (opcional), ID da caixa,
@@ -16,13 +13,11 @@ public class Produto {
 	private Integer caixaID;
 	private String caixaNome;
 	private String localizacao;
-	private BooleanProperty selecionado;
 
 	/**
 	 * Construtor padrão que inicializa o produto sem dados.
 	 */
 	public Produto() {
-		this.selecionado = new SimpleBooleanProperty(false);
 	}
 
 	/**
@@ -42,7 +37,17 @@ public class Produto {
 		this.categoria = categoria;
 		this.caixaID = caixaID;
 		this.localizacao = localizacao;
-		this.selecionado = new SimpleBooleanProperty(false);
+	}
+
+	/**
+	 * Cria uma cópia do produto com os mesmos dados.
+	 *
+	 * @return A cópia do produto.
+	 */
+	public Produto copiar() {
+		Produto copia = new Produto(id, nome, quantidade, categoria, caixaID, localizacao);
+		copia.setCaixaNome(caixaNome);
+		return copia;
 	}
 
 	// Getters e Setters de Produto
@@ -119,17 +124,4 @@ public class Produto {
 	public void setLocalizacao(String localizacao) {
 		this.localizacao = localizacao;
 	}
-
-
-	public boolean isSelecionado() {
-		return selecionado.get();
-	}
-
-	public void setSelecionado(boolean selecionado) {
-		this.selecionado.set(selecionado);
-	}
-
-	public BooleanProperty selecionadoProperty() {
-		return selecionado;
-	}
 }
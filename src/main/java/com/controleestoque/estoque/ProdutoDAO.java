@@ -2,57 +2,190 @@ package com.controleestoque.estoque;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Classe responsável pelo acesso aos dados da entidade Produto no banco de dados.
  */
 public class ProdutoDAO {
 
-	private Connection conexao;
+	// Bits que identificam cada filtro opcional de buscarProdutosComFiltros
+	private static final int FILTRO_TERMO = 1;
+	private static final int FILTRO_CATEGORIA = 1 << 1;
+	private static final int FILTRO_LOCALIZACAO = 1 << 2;
+	private static final int FILTRO_CAIXA = 1 << 3;
+	private static final int FILTRO_QUANTIDADE_MIN = 1 << 4;
+	private static final int FILTRO_QUANTIDADE_MAX = 1 << 5;
+	private static final int FILTRO_IDS = 1 << 6;
+
+	// SQL já montado para cada uma das 128 combinações de filtros
+	private static final String[] SQL_FILTROS = new String[1 << 7];
+
+	// Quantidade fixa de ids por consulta em buscarProdutosPorIds, para que o SQL seja sempre o mesmo
+	private static final int TAMANHO_LOTE_IDS = 100;
+
+	private static final String SQL_REMOVER_LOTE =
+			"DELETE FROM Produtos WHERE id IN (?" + ", ?".repeat(TAMANHO_LOTE_IDS - 1) + ")";
+
+	// Colunas lidas por mapearResultado; categoria e localização são guardadas por id em Produtos e o
+	// nome vem das tabelas Categorias e Localizacoes, juntadas por JUNCAO_NOMES
+	private static final String COLUNAS_PRODUTO = "p.id, p.nome, p.quantidade, cat.nome AS categoria, p.caixaID, "
+			+ "c.nomeCaixa, loc.nome AS localizacao";
+
+	private static final String JUNCAO_NOMES = "LEFT JOIN Categorias cat ON p.categoriaID = cat.id "
+			+ "LEFT JOIN Localizacoes loc ON p.localizacaoID = loc.id";
+
+	// Toda escrita em Produtos grava uma nova versão na linha, usada pela busca de alterações
+	private static final String SQL_INSERIR = "INSERT INTO Produtos (nome, quantidade, categoriaID, caixaID, "
+			+ "localizacaoID, versao) VALUES (?, ?, ?, ?, ?, NEXT VALUE FOR seq_versao)";
+
+	private static final String COLUNAS_ALTERACOES = COLUNAS_PRODUTO + ", p.versao, c.versao AS versaoCaixa, "
+			+ "cat.versao AS versaoCategoria, loc.versao AS versaoLocalizacao ";
+
+	private static final String JUNCAO_POR_INDICE = " --DERBY-PROPERTIES joinStrategy=NESTEDLOOP\n";
+
+	// Produtos com versão maior que a informada, mais os produtos das caixas, categorias e localizações
+	// alteradas (renomeadas) depois dela. Sem conhecer o parâmetro, o Derby estima que "versao > ?" seleciona
+	// um terço da tabela e a percorre inteira; as dicas mantêm o índice de versão e as junções por índice,
+	// já que as alterações desde a última carga costumam ser poucas linhas.
+	private static final String SQL_ALTERACOES = "SELECT " + COLUNAS_ALTERACOES
+			+ "FROM Produtos p --DERBY-PROPERTIES index=idx_produtos_versao\n"
+			+ "LEFT JOIN Caixas c" + JUNCAO_POR_INDICE + "ON p.caixaId = c.id "
+			+ "LEFT JOIN Categorias cat" + JUNCAO_POR_INDICE + "ON p.categoriaID = cat.id "
+			+ "LEFT JOIN Localizacoes loc" + JUNCAO_POR_INDICE + "ON p.localizacaoID = loc.id "
+			+ "WHERE p.versao > ? "
+			+ "UNION SELECT " + COLUNAS_ALTERACOES
+			+ "FROM Caixas c --DERBY-PROPERTIES index=idx_caixas_versao\n"
+			+ "JOIN Produtos p" + JUNCAO_POR_INDICE + "ON p.caixaId = c.id "
+			+ "LEFT JOIN Categorias cat" + JUNCAO_POR_INDICE + "ON p.categoriaID = cat.id "
+			+ "LEFT JOIN Localizacoes loc" + JUNCAO_POR_INDICE + "ON p.localizacaoID = loc.id "
+			+ "WHERE c.versao > ? "
+			+ "UNION SELECT " + COLUNAS_ALTERACOES
+			+ "FROM Categorias cat --DERBY-PROPERTIES index=idx_categorias_versao\n"
+			+ "JOIN Produtos p" + JUNCAO_POR_INDICE + "ON p.categoriaID = cat.id "
+			+ "LEFT JOIN Caixas c" + JUNCAO_POR_INDICE + "ON p.caixaId = c.id "
+			+ "LEFT JOIN Localizacoes loc" + JUNCAO_POR_INDICE + "ON p.localizacaoID = loc.id "
+			+ "WHERE cat.versao > ? "
+			+ "UNION SELECT " + COLUNAS_ALTERACOES
+			+ "FROM Localizacoes loc --DERBY-PROPERTIES index=idx_localizacoes_versao\n"
+			+ "JOIN Produtos p" + JUNCAO_POR_INDICE + "ON p.localizacaoID = loc.id "
+			+ "LEFT JOIN Caixas c" + JUNCAO_POR_INDICE + "ON p.caixaId = c.id "
+			+ "LEFT JOIN Categorias cat" + JUNCAO_POR_INDICE + "ON p.categoriaID = cat.id "
+			+ "WHERE loc.versao > ?";
+
+	// SQLState do Derby para violação de restrição única
+	private static final String SQLSTATE_DUPLICADO = "23505";
+
+	private static final String SQL_REMOVIDOS = "SELECT id, versao FROM ProdutosRemovidos WHERE versao > ? ORDER BY versao";
+
+	private PoolConexoes pool;
 
 	/**
-	 * Construtor que recebe a conexão com o banco de dados.
+	 * Construtor que recebe o pool de conexões com o banco de dados.
+	 * Cada operação empresta uma conexão do pool e a devolve ao terminar.
 	 *
-	 * @param conexao A conexão com o banco de dados.
+	 * @param pool O pool de conexões com o banco de dados.
 	 */
-	public ProdutoDAO(Connection conexao) {
-		this.conexao = conexao;
+	public ProdutoDAO(PoolConexoes pool) {
+		this.pool = pool;
 	}
 
 	/**
-	 * Adiciona um novo produto no banco de dados.
+	 * Adiciona um novo produto no banco de dados e atribui a ele o id gerado.
 	 *
 	 * @param produto O produto a ser adicionado.
 	 * @throws SQLException Em caso de erro ao adicionar o produto.
 	 */
 	public void adicionar(Produto produto) throws SQLException {
 
-		String query = "INSERT INTO Produtos (nome, quantidade, categoria, caixaID, localizacao) VALUES (?, ?, ?, ?, ?)";
-		try (PreparedStatement stmt = conexao.prepareStatement(query)) {
-			conexao.setAutoCommit(false);
+		try (Connection conexao = pool.obterConexao()) {
+			try (PreparedStatement stmt = conexao.prepareStatement(SQL_INSERIR, Statement.RETURN_GENERATED_KEYS)) {
+				definirParametrosInsercao(stmt, produto, new IdsNomes(conexao));
+				stmt.executeUpdate();
+				try (ResultSet chaves = stmt.getGeneratedKeys()) {
+					if (chaves.next()) {
+						produto.setId(chaves.getInt(1));
+					}
+				}
+				conexao.commit();
+			} catch (SQLException e) {
+				conexao.rollback();
+				throw e;
+			}
+		}
+	}
 
-			stmt.setString(1, produto.getNome());
-			stmt.setInt(2, produto.getQuantidade());
-			stmt.setString(3, produto.getCategoria());
+	/**
+	 * Adiciona vários produtos com inserções em lote do JDBC, confirmando uma transação a cada
+	 * {@code tamanhoLote} produtos, e atribui a cada um o id gerado.
+	 * Se um lote falhar, ele é desfeito e a exceção é lançada; os lotes anteriores permanecem gravados
+	 * e os seus produtos já têm o id atribuído.
+	 *
+	 * @param produtos    Os produtos a serem adicionados.
+	 * @param tamanhoLote O número de produtos por transação.
+	 * @return As medidas da operação.
+	 * @throws SQLException Em caso de erro ao adicionar os produtos.
+	 */
+	public ResultadoLote adicionarLote(List<Produto> produtos, int tamanhoLote) throws SQLException {
+		long inicio = System.nanoTime();
+		int tamanho = Math.max(1, tamanhoLote);
+		int lotes = 0;
 
-			if (produto.getCaixaID() == null) {
-				stmt.setNull(4, Types.INTEGER);
-			} else {
-				stmt.setInt(4, produto.getCaixaID());
-			}
+		try (Connection conexao = pool.obterConexao()) {
+			try (PreparedStatement stmt = conexao.prepareStatement(SQL_INSERIR, Statement.RETURN_GENERATED_KEYS);
+					Statement bloqueio = conexao.createStatement()) {
+				IdsNomes idsNomes = new IdsNomes(conexao);
+				for (int inicioLote = 0; inicioLote < produtos.size(); inicioLote += tamanho) {
+					List<Produto> lote = produtos.subList(inicioLote, Math.min(produtos.size(), inicioLote + tamanho));
 
-			if (produto.getLocalizacao() == null || produto.getLocalizacao().trim().isEmpty()) {
-				stmt.setNull(5, Types.VARCHAR);
-			} else {
-				stmt.setString(5, produto.getLocalizacao());
+					// O Derby devolve apenas a chave da última linha do lote; com a tabela bloqueada os ids
+					// gerados no lote são consecutivos e os demais são deduzidos a partir dela
+					bloqueio.execute("LOCK TABLE Produtos IN EXCLUSIVE MODE");
+					for (Produto produto : lote) {
+						definirParametrosInsercao(stmt, produto, idsNomes);
+						stmt.addBatch();
+					}
+					stmt.executeBatch();
+
+					int ultimoId;
+					try (ResultSet chaves = stmt.getGeneratedKeys()) {
+						if (chaves == null || !chaves.next()) {
+							throw new SQLException("O banco não retornou os ids gerados pelo lote.");
+						}
+						ultimoId = chaves.getInt(1);
+					}
+					conexao.commit();
+					lotes++;
+
+					int primeiroId = ultimoId - lote.size() + 1;
+					for (int i = 0; i < lote.size(); i++) {
+						lote.get(i).setId(primeiroId + i);
+					}
+				}
+			} catch (SQLException e) {
+				conexao.rollback();
+				throw e;
 			}
+		}
+		return new ResultadoLote(produtos.size(), lotes, System.nanoTime() - inicio);
+	}
+
+	private static void definirParametrosInsercao(PreparedStatement stmt, Produto produto, IdsNomes idsNomes)
+			throws SQLException {
+		stmt.setString(1, produto.getNome());
+		stmt.setInt(2, produto.getQuantidade());
+		definirId(stmt, 3, idsNomes.categoria(produto.getCategoria()));
+		definirId(stmt, 4, produto.getCaixaID());
+		definirId(stmt, 5, idsNomes.localizacao(produto.getLocalizacao()));
+	}
 
-			stmt.executeUpdate();
-			conexao.commit();
-		} catch (SQLException e) {
-			conexao.rollback();
-			throw e;
+	private static void definirId(PreparedStatement stmt, int indice, Integer id) throws SQLException {
+		if (id == null) {
+			stmt.setNull(indice, Types.INTEGER);
+		} else {
+			stmt.setInt(indice, id);
 		}
 	}
 
@@ -64,16 +197,52 @@ public class ProdutoDAO {
 	 */
 	public void remover(Produto produto) throws SQLException {
 		String query = "DELETE FROM Produtos WHERE id = ?";
-		try (PreparedStatement stmt = conexao.prepareStatement(query)) {
-			stmt.setInt(1, produto.getId());
-			stmt.executeUpdate();
-			conexao.commit();
-		} catch (SQLException e) {
-			conexao.rollback();
-			throw e;
+		try (Connection conexao = pool.obterConexao()) {
+			try (PreparedStatement stmt = conexao.prepareStatement(query)) {
+				stmt.setInt(1, produto.getId());
+				stmt.executeUpdate();
+				conexao.commit();
+			} catch (SQLException e) {
+				conexao.rollback();
+				throw e;
+			}
 		}
 	}
 
+	/**
+	 * Remove vários produtos em uma única transação. Os ids são enviados em lotes de tamanho fixo
+	 * em um DELETE com lista IN, executados juntos como um batch do JDBC.
+	 *
+	 * @param ids Os ids dos produtos a serem removidos.
+	 * @return O número de produtos removidos.
+	 * @throws SQLException Em caso de erro ao remover os produtos; nenhum produto é removido.
+	 */
+	public int removerLote(List<Integer> ids) throws SQLException {
+		if (ids.isEmpty()) {
+			return 0;
+		}
+		int removidos = 0;
+		try (Connection conexao = pool.obterConexao()) {
+			try (PreparedStatement stmt = conexao.prepareStatement(SQL_REMOVER_LOTE)) {
+				for (int inicio = 0; inicio < ids.size(); inicio += TAMANHO_LOTE_IDS) {
+					for (int i = 0; i < TAMANHO_LOTE_IDS; i++) {
+						// O último lote é completado repetindo o último id
+						stmt.setInt(i + 1, ids.get(Math.min(inicio + i, ids.size() - 1)));
+					}
+					stmt.addBatch();
+				}
+				for (int linhas : stmt.executeBatch()) {
+					removidos += Math.max(0, linhas);
+				}
+				conexao.commit();
+			} catch (SQLException e) {
+				conexao.rollback();
+				throw e;
+			}
+		}
+		return removidos;
+	}
+
 	/**
 	 * Altera as informações de um produto existente no banco de dados.
 	 *
@@ -82,32 +251,23 @@ public class ProdutoDAO {
 	 */
 	public void alterar(Produto produto) throws SQLException {
 
-		String query = "UPDATE Produtos SET nome = ?, categoria = ?, quantidade = ?, caixaID = ?, localizacao = ? WHERE id = ?";
-		try (PreparedStatement stmt = conexao.prepareStatement(query)) {
-			conexao.setAutoCommit(false);
-
-			stmt.setString(1, produto.getNome());
-			stmt.setString(2, produto.getCategoria());
-			stmt.setInt(3, produto.getQuantidade());
-
-			if (produto.getCaixaID() == null) {
-				stmt.setNull(4, Types.INTEGER);
-			} else {
-				stmt.setInt(4, produto.getCaixaID());
-			}
-
-			if (produto.getLocalizacao() == null || produto.getLocalizacao().trim().isEmpty()) {
-				stmt.setNull(5, Types.VARCHAR);
-			} else {
-				stmt.setString(5, produto.getLocalizacao());
+		String query = "UPDATE Produtos SET nome = ?, categoriaID = ?, quantidade = ?, caixaID = ?, localizacaoID = ?, "
+				+ "versao = NEXT VALUE FOR seq_versao WHERE id = ?";
+		try (Connection conexao = pool.obterConexao()) {
+			try (PreparedStatement stmt = conexao.prepareStatement(query)) {
+				IdsNomes idsNomes = new IdsNomes(conexao);
+				stmt.setString(1, produto.getNome());
+				definirId(stmt, 2, idsNomes.categoria(produto.getCategoria()));
+				stmt.setInt(3, produto.getQuantidade());
+				definirId(stmt, 4, produto.getCaixaID());
+				definirId(stmt, 5, idsNomes.localizacao(produto.getLocalizacao()));
+				stmt.setInt(6, produto.getId());
+				stmt.executeUpdate();
+				conexao.commit();
+			} catch (SQLException e) {
+				conexao.rollback();
+				throw e;
 			}
-
-			stmt.setInt(6, produto.getId());
-			stmt.executeUpdate();
-			conexao.commit();
-		} catch (SQLException e) {
-			conexao.rollback();
-			throw e;
 		}
 	}
 
@@ -118,20 +278,24 @@ public class ProdutoDAO {
 	 * @throws SQLException Em caso de erro ao alterar os produtos.
 	 */
 	public void alterarMassa(List<Produto> produtos) throws SQLException {
-		String query = "UPDATE Produtos SET categoria = ?, caixaID = ?, localizacao = ? WHERE id = ?";
-		try (PreparedStatement stmt = conexao.prepareStatement(query)) {
-			for (Produto produto : produtos) {
-				stmt.setString(1, produto.getCategoria());
-				stmt.setObject(2, produto.getCaixaID());
-				stmt.setString(3, produto.getLocalizacao());
-				stmt.setInt(4, produto.getId());
-				stmt.addBatch();
+		String query = "UPDATE Produtos SET categoriaID = ?, caixaID = ?, localizacaoID = ?, "
+				+ "versao = NEXT VALUE FOR seq_versao WHERE id = ?";
+		try (Connection conexao = pool.obterConexao()) {
+			try (PreparedStatement stmt = conexao.prepareStatement(query)) {
+				IdsNomes idsNomes = new IdsNomes(conexao);
+				for (Produto produto : produtos) {
+					definirId(stmt, 1, idsNomes.categoria(produto.getCategoria()));
+					definirId(stmt, 2, produto.getCaixaID());
+					definirId(stmt, 3, idsNomes.localizacao(produto.getLocalizacao()));
+					stmt.setInt(4, produto.getId());
+					stmt.addBatch();
+				}
+				stmt.executeBatch();
+				conexao.commit();
+			} catch (SQLException e) {
+				conexao.rollback();
+				throw e;
 			}
-			stmt.executeBatch();
-			conexao.commit();
-		} catch (SQLException e) {
-			conexao.rollback();
-			throw e;
 		}
 	}
 
@@ -143,10 +307,11 @@ public class ProdutoDAO {
 	 */
 	public List<Produto> listar() throws SQLException {
 		List<Produto> produtos = new ArrayList<>();
-		String sql = "SELECT p.id, p.nome, p.quantidade, p.categoria, c.nomeCaixa, p.localizacao FROM Produtos p"
-				+ " LEFT JOIN Caixas c ON p.caixaId = c.id";
+		String sql = "SELECT " + COLUNAS_PRODUTO + " FROM Produtos p LEFT JOIN Caixas c ON p.caixaId = c.id "
+				+ JUNCAO_NOMES;
 
-		try (PreparedStatement pstmt = conexao.prepareStatement(sql); ResultSet rs = pstmt.executeQuery()) {
+		try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql);
+			 ResultSet rs = pstmt.executeQuery()) {
 			while (rs.next()) {
 				produtos.add(mapearResultado(rs));
 			}
@@ -154,6 +319,82 @@ public class ProdutoDAO {
 		return produtos;
 	}
 
+	/**
+	 * Lista uma página de produtos usando paginação por chave (keyset): em vez de pular linhas com OFFSET,
+	 * a consulta continua a partir do último produto da página anterior, usando o índice da ordenação.
+	 *
+	 * @param ordenacao     A coluna de ordenação.
+	 * @param crescente     Sendo true para ordem crescente e false para decrescente.
+	 * @param ultimo        O último produto da página anterior, ou null para a primeira página.
+	 * @param tamanhoPagina O número máximo de produtos da página.
+	 * @return Lista com os produtos da página, vazia quando não houver mais produtos.
+	 * @throws SQLException Em caso de erro ao listar os produtos.
+	 */
+	public List<Produto> listarPagina(OrdenacaoProduto ordenacao, boolean crescente, Produto ultimo,
+									  int tamanhoPagina) throws SQLException {
+		List<Produto> produtos = new ArrayList<>();
+		String coluna = ordenacao.getColuna();
+		String comparador = crescente ? " > " : " < ";
+		String direcao = crescente ? " ASC" : " DESC";
+
+		String ordem = coluna + direcao + (ordenacao != OrdenacaoProduto.ID ? ", p.id" + direcao : "");
+
+		// A página é selecionada só em Produtos, para que o Derby percorra o índice da ordenação e pare
+		// no limite; as junções com Caixas, Categorias e Localizacoes são feitas depois, apenas sobre as
+		// linhas da página.
+		StringBuilder sql = new StringBuilder("SELECT " + COLUNAS_PRODUTO + " FROM (SELECT * FROM Produtos p ");
+		if (ultimo != null) {
+			if (ordenacao == OrdenacaoProduto.ID) {
+				sql.append("WHERE p.id").append(comparador).append("? ");
+			} else {
+				// Equivalente a (coluna > ? OR (coluna = ? AND id > ?)), mas com um limite inicial usável pelo índice
+				sql.append("WHERE ").append(coluna).append(" ").append(comparador.trim()).append("= ? AND (").append(coluna)
+						.append(comparador).append("? OR p.id").append(comparador).append("?) ");
+			}
+		}
+		sql.append("ORDER BY ").append(ordem).append(" FETCH FIRST ? ROWS ONLY) p ")
+				.append("LEFT JOIN Caixas c ON p.caixaId = c.id ").append(JUNCAO_NOMES).append(" ORDER BY ").append(ordem);
+
+		try (Connection conexao = pool.obterConexao();
+			 PreparedStatement pstmt = conexao.prepareStatement(sql.toString())) {
+			int paramIndex = 1;
+
+			if (ultimo != null) {
+				if (ordenacao != OrdenacaoProduto.ID) {
+					definirChaveOrdenacao(pstmt, paramIndex++, ordenacao, ultimo);
+					definirChaveOrdenacao(pstmt, paramIndex++, ordenacao, ultimo);
+				}
+				pstmt.setInt(paramIndex++, ultimo.getId());
+			}
+			pstmt.setInt(paramIndex, tamanhoPagina);
+
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					produtos.add(mapearResultado(rs));
+				}
+			}
+		}
+		return produtos;
+	}
+
+	/**
+	 * Define o valor da coluna de ordenação do produto como parâmetro da consulta paginada.
+	 */
+	private void definirChaveOrdenacao(PreparedStatement pstmt, int indice, OrdenacaoProduto ordenacao,
+									   Produto produto) throws SQLException {
+		switch (ordenacao) {
+			case NOME:
+				pstmt.setString(indice, produto.getNome());
+				break;
+			case QUANTIDADE:
+				pstmt.setInt(indice, produto.getQuantidade());
+				break;
+			default:
+				pstmt.setInt(indice, produto.getId());
+				break;
+		}
+	}
+
 	/**
 	 * Busca produtos com base em filtros específicos.
 	 *
@@ -168,97 +409,306 @@ public class ProdutoDAO {
 	 */
 	public List<Produto> buscarProdutosComFiltros(String termo, String categoria, String localizacao, String caixa,
 												  Integer quantidadeMin, Integer quantidadeMax) throws SQLException {
+		return buscarProdutosComFiltros(termo, categoria, localizacao, caixa, quantidadeMin, quantidadeMax,
+				new ConsultaCancelavel(0));
+	}
+
+	/**
+	 * Busca produtos com base em filtros específicos, permitindo que a consulta seja cancelada
+	 * por outra thread.
+	 *
+	 * @param termo          O termo de busca para o nome ou caixa do produto.
+	 * @param categoria      A categoria do produto.
+	 * @param localizacao    A localização do produto.
+	 * @param caixa          O nome da caixa onde o produto está armazenado.
+	 * @param quantidadeMin  A quantidade mínima do produto.
+	 * @param quantidadeMax  A quantidade máxima do produto.
+	 * @param consulta       O controle de cancelamento e tempo limite da consulta.
+	 * @return Lista de produtos que correspondem aos filtros.
+	 * @throws SQLException Em caso de erro, cancelamento ou tempo limite esgotado.
+	 */
+	public List<Produto> buscarProdutosComFiltros(String termo, String categoria, String localizacao, String caixa,
+												  Integer quantidadeMin, Integer quantidadeMax,
+												  ConsultaCancelavel consulta) throws SQLException {
+		List<Produto> produtos = new ArrayList<>();
+		int mascara = mascaraFiltros(termo, categoria, localizacao, caixa, quantidadeMin, quantidadeMax);
+
+		try (Connection conexao = pool.obterConexao();
+			 PreparedStatement pstmt = conexao.prepareStatement(sqlFiltros(mascara))) {
+			definirParametrosFiltros(pstmt, termo, categoria, localizacao, caixa, quantidadeMin, quantidadeMax);
+			lerProdutos(pstmt, consulta, produtos);
+		}
+
+		return produtos;
+	}
+
+	/**
+	 * Busca, entre os produtos com os ids informados, os que atendem aos demais filtros.
+	 * Usado com os ids encontrados pelo índice de busca em memória no lugar do filtro LIKE por termo.
+	 * Os ids são consultados em lotes de tamanho fixo pela chave primária.
+	 *
+	 * @param ids            Os ids dos produtos candidatos.
+	 * @param categoria      A categoria do produto.
+	 * @param localizacao    A localização do produto.
+	 * @param caixa          O nome da caixa onde o produto está armazenado.
+	 * @param quantidadeMin  A quantidade mínima do produto.
+	 * @param quantidadeMax  A quantidade máxima do produto.
+	 * @param consulta       O controle de cancelamento e tempo limite da consulta.
+	 * @return Lista de produtos que correspondem aos filtros.
+	 * @throws SQLException Em caso de erro, cancelamento ou tempo limite esgotado.
+	 */
+	public List<Produto> buscarProdutosPorIds(List<Integer> ids, String categoria, String localizacao, String caixa,
+											  Integer quantidadeMin, Integer quantidadeMax,
+											  ConsultaCancelavel consulta) throws SQLException {
 		List<Produto> produtos = new ArrayList<>();
-		StringBuilder sql = new StringBuilder(
-				"SELECT p.*, c.nomeCaixa FROM Produtos p LEFT JOIN Caixas c ON p.caixaId = c.id WHERE 1=1 ");
+		if (ids.isEmpty()) {
+			return produtos;
+		}
+		int mascara = mascaraFiltros(null, categoria, localizacao, caixa, quantidadeMin, quantidadeMax) | FILTRO_IDS;
+
+		try (Connection conexao = pool.obterConexao();
+			 PreparedStatement pstmt = conexao.prepareStatement(sqlFiltros(mascara))) {
+			for (int inicio = 0; inicio < ids.size(); inicio += TAMANHO_LOTE_IDS) {
+				int paramIndex = definirParametrosFiltros(pstmt, null, categoria, localizacao, caixa, quantidadeMin,
+						quantidadeMax);
+				for (int i = 0; i < TAMANHO_LOTE_IDS; i++) {
+					// O último lote é completado repetindo o último id
+					pstmt.setInt(paramIndex++, ids.get(Math.min(inicio + i, ids.size() - 1)));
+				}
+				lerProdutos(pstmt, consulta, produtos);
+			}
+		}
+
+		return produtos;
+	}
+
+	/**
+	 * Executa a consulta sob o controle de cancelamento e acrescenta os produtos lidos à lista.
+	 */
+	private void lerProdutos(PreparedStatement pstmt, ConsultaCancelavel consulta, List<Produto> produtos)
+			throws SQLException {
+		consulta.iniciar(pstmt);
+		try (ResultSet rs = pstmt.executeQuery()) {
+			while (rs.next()) {
+				consulta.verificar();
+				produtos.add(mapearResultado(rs));
+			}
+		} finally {
+			consulta.concluir();
+		}
+	}
 
+	/**
+	 * Monta a combinação de bits FILTRO_* correspondente aos filtros preenchidos.
+	 */
+	private static int mascaraFiltros(String termo, String categoria, String localizacao, String caixa,
+									  Integer quantidadeMin, Integer quantidadeMax) {
+		int mascara = 0;
 		if (termo != null && !termo.isEmpty()) {
-			sql.append("AND (LOWER(p.nome) LIKE ? OR LOWER(c.nomeCaixa) LIKE ?) ");
+			mascara |= FILTRO_TERMO;
 		}
 		if (categoria != null) {
-			sql.append("AND LOWER(p.categoria) = LOWER(?) ");
+			mascara |= FILTRO_CATEGORIA;
 		}
 		if (localizacao != null) {
-			sql.append("AND LOWER(p.localizacao) = LOWER(?) ");
+			mascara |= FILTRO_LOCALIZACAO;
 		}
 		if (caixa != null) {
-			sql.append("AND LOWER(c.nomeCaixa) = LOWER(?) ");
+			mascara |= FILTRO_CAIXA;
 		}
 		if (quantidadeMin != null) {
-			sql.append("AND p.quantidade >= ? ");
+			mascara |= FILTRO_QUANTIDADE_MIN;
 		}
 		if (quantidadeMax != null) {
-			sql.append("AND p.quantidade <= ? ");
+			mascara |= FILTRO_QUANTIDADE_MAX;
 		}
+		return mascara;
+	}
 
-		try (PreparedStatement pstmt = conexao.prepareStatement(sql.toString())) {
-			int paramIndex = 1;
+	/**
+	 * Define os parâmetros dos filtros preenchidos, na mesma ordem em que aparecem no SQL de sqlFiltros.
+	 *
+	 * @return O índice do próximo parâmetro livre.
+	 */
+	private static int definirParametrosFiltros(PreparedStatement pstmt, String termo, String categoria,
+												String localizacao, String caixa, Integer quantidadeMin,
+												Integer quantidadeMax) throws SQLException {
+		int paramIndex = 1;
 
-			if (termo != null && !termo.isEmpty()) {
-				String termoBusca = "%" + termo.toLowerCase() + "%";
-				pstmt.setString(paramIndex++, termoBusca);
-				pstmt.setString(paramIndex++, termoBusca);
+		if (termo != null && !termo.isEmpty()) {
+			String termoBusca = "%" + termo.toLowerCase() + "%";
+			pstmt.setString(paramIndex++, termoBusca);
+			pstmt.setString(paramIndex++, termoBusca);
+		}
+		if (categoria != null) {
+			pstmt.setString(paramIndex++, categoria.toLowerCase());
+		}
+		if (localizacao != null) {
+			pstmt.setString(paramIndex++, localizacao.toLowerCase());
+		}
+		if (caixa != null) {
+			pstmt.setString(paramIndex++, caixa.toLowerCase());
+		}
+		if (quantidadeMin != null) {
+			pstmt.setInt(paramIndex++, quantidadeMin);
+		}
+		if (quantidadeMax != null) {
+			pstmt.setInt(paramIndex++, quantidadeMax);
+		}
+		return paramIndex;
+	}
+
+	/**
+	 * Retorna o SQL de busca com filtros para a combinação de filtros informada.
+	 * O texto de cada combinação é montado uma única vez, para que o cache de comandos
+	 * do pool encontre sempre a mesma chave.
+	 *
+	 * @param mascara Combinação dos bits FILTRO_* ativos.
+	 * @return O comando SQL correspondente.
+	 */
+	private static String sqlFiltros(int mascara) {
+		String sql = SQL_FILTROS[mascara];
+		if (sql == null) {
+			// As tabelas filtradas por nome entram como junções internas, antes das externas, cuja ordem o
+			// Derby não altera. A consulta parte da primeira delas (caixa, categoria ou localização, da mais
+			// seletiva para a menos) e busca os produtos pelo índice da chave estrangeira, em vez de percorrer
+			// Produtos; sem filtro por nome, parte de Produtos como antes.
+			List<String[]> internas = new ArrayList<>();
+			List<String[]> externas = new ArrayList<>();
+			((mascara & FILTRO_CAIXA) != 0 ? internas : externas).add(new String[] { "Caixas c", "p.caixaId = c.id" });
+			((mascara & FILTRO_CATEGORIA) != 0 ? internas : externas)
+					.add(new String[] { "Categorias cat", "p.categoriaID = cat.id" });
+			((mascara & FILTRO_LOCALIZACAO) != 0 ? internas : externas)
+					.add(new String[] { "Localizacoes loc", "p.localizacaoID = loc.id" });
+
+			StringBuilder sb = new StringBuilder("SELECT " + COLUNAS_PRODUTO + " FROM ");
+			if (internas.isEmpty()) {
+				sb.append("Produtos p ");
+			} else {
+				String[] origem = internas.remove(0);
+				sb.append(origem[0]).append(" JOIN Produtos p").append(JUNCAO_POR_INDICE).append("ON ").append(origem[1])
+						.append(' ');
 			}
-			if (categoria != null) {
-				pstmt.setString(paramIndex++, categoria.toLowerCase());
+			for (String[] juncao : internas) {
+				sb.append("JOIN ").append(juncao[0]).append(" ON ").append(juncao[1]).append(' ');
 			}
-			if (localizacao != null) {
-				pstmt.setString(paramIndex++, localizacao.toLowerCase());
+			for (String[] juncao : externas) {
+				sb.append("LEFT JOIN ").append(juncao[0]).append(" ON ").append(juncao[1]).append(' ');
 			}
-			if (caixa != null) {
-				pstmt.setString(paramIndex++, caixa.toLowerCase());
+			sb.append("WHERE 1=1 ");
+
+			if ((mascara & FILTRO_TERMO) != 0) {
+				sb.append("AND (LOWER(p.nome) LIKE ? OR c.nomeCaixaNormalizado LIKE ?) ");
 			}
-			if (quantidadeMin != null) {
-				pstmt.setInt(paramIndex++, quantidadeMin);
+			if ((mascara & FILTRO_CATEGORIA) != 0) {
+				sb.append("AND cat.nomeNormalizado = LOWER(?) ");
 			}
-			if (quantidadeMax != null) {
-				pstmt.setInt(paramIndex++, quantidadeMax);
+			if ((mascara & FILTRO_LOCALIZACAO) != 0) {
+				sb.append("AND loc.nomeNormalizado = LOWER(?) ");
 			}
-
-			try (ResultSet rs = pstmt.executeQuery()) {
-				while (rs.next()) {
-					produtos.add(mapearResultado(rs));
+			if ((mascara & FILTRO_CAIXA) != 0) {
+				sb.append("AND c.nomeCaixaNormalizado = LOWER(?) ");
+			}
+			if ((mascara & FILTRO_QUANTIDADE_MIN) != 0) {
+				sb.append("AND p.quantidade >= ? ");
+			}
+			if ((mascara & FILTRO_QUANTIDADE_MAX) != 0) {
+				sb.append("AND p.quantidade <= ? ");
+			}
+			if ((mascara & FILTRO_IDS) != 0) {
+				sb.append("AND p.id IN (?");
+				for (int i = 1; i < TAMANHO_LOTE_IDS; i++) {
+					sb.append(", ?");
 				}
+				sb.append(") ");
 			}
+			sql = sb.toString();
+			SQL_FILTROS[mascara] = sql;
 		}
-
-		return produtos;
+		return sql;
 	}
 
 	/**
-	 * Retorna todas as categorias cadastradas.
+	 * Retorna as categorias usadas por algum produto.
 	 *
 	 * @return Lista de categorias.
 	 * @throws SQLException Em caso de erro ao buscar categorias.
 	 */
 	public List<String> getTodasCategorias() throws SQLException {
 		List<String> categorias = new ArrayList<>();
-		String sql = "SELECT DISTINCT p.categoria FROM Produtos p WHERE p.categoria IS NOT NULL AND p.categoria != ''";
-		try (PreparedStatement pstmt = conexao.prepareStatement(sql); ResultSet rs = pstmt.executeQuery()) {
+		String sql = "SELECT cat.nome FROM Categorias cat "
+				+ "WHERE EXISTS (SELECT 1 FROM Produtos p" + JUNCAO_POR_INDICE + "WHERE p.categoriaID = cat.id) "
+				+ "ORDER BY cat.nome";
+		try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql);
+			 ResultSet rs = pstmt.executeQuery()) {
 			while (rs.next()) {
-				categorias.add(rs.getString("categoria"));
+				categorias.add(rs.getString("nome"));
 			}
 		}
 		return categorias;
 	}
 
 	/**
-	 * Retorna todas as localizações cadastradas.
+	 * Retorna as localizações usadas por algum produto.
 	 *
 	 * @return Lista de localizações.
 	 * @throws SQLException Em caso de erro ao buscar localizações.
 	 */
 	public List<String> getTodasLocalizacoes() throws SQLException {
 		List<String> localizacoes = new ArrayList<>();
-		String sql = "SELECT DISTINCT p.localizacao FROM Produtos p WHERE p.localizacao IS NOT NULL AND p.localizacao != ''";
-		try (PreparedStatement pstmt = conexao.prepareStatement(sql); ResultSet rs = pstmt.executeQuery()) {
+		String sql = "SELECT loc.nome FROM Localizacoes loc "
+				+ "WHERE EXISTS (SELECT 1 FROM Produtos p" + JUNCAO_POR_INDICE + "WHERE p.localizacaoID = loc.id) "
+				+ "ORDER BY loc.nome";
+		try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql);
+			 ResultSet rs = pstmt.executeQuery()) {
 			while (rs.next()) {
-				localizacoes.add(rs.getString("localizacao"));
+				localizacoes.add(rs.getString("nome"));
 			}
 		}
 		return localizacoes;
 	}
 
+	/**
+	 * Renomeia uma categoria. Os produtos guardam apenas o id da categoria, então só a linha dela é alterada;
+	 * a nova versão da categoria faz buscarAlteracoesDesde trazer os produtos dela com o novo nome.
+	 *
+	 * @param atual O nome atual da categoria.
+	 * @param novo  O novo nome.
+	 * @return Sendo true se a categoria existia.
+	 * @throws SQLException Em caso de erro ou se já existir uma categoria com o novo nome.
+	 */
+	public boolean renomearCategoria(String atual, String novo) throws SQLException {
+		return renomear(TabelaNomesDAO.CATEGORIAS, "uma categoria", atual, novo);
+	}
+
+	/**
+	 * Renomeia uma localização, alterando só a linha dela, como em renomearCategoria.
+	 *
+	 * @param atual O nome atual da localização.
+	 * @param novo  O novo nome.
+	 * @return Sendo true se a localização existia.
+	 * @throws SQLException Em caso de erro ou se já existir uma localização com o novo nome.
+	 */
+	public boolean renomearLocalizacao(String atual, String novo) throws SQLException {
+		return renomear(TabelaNomesDAO.LOCALIZACOES, "uma localização", atual, novo);
+	}
+
+	private boolean renomear(TabelaNomesDAO tabela, String descricao, String atual, String novo) throws SQLException {
+		try (Connection conexao = pool.obterConexao()) {
+			try {
+				boolean renomeado = tabela.renomear(conexao, atual, novo);
+				conexao.commit();
+				return renomeado;
+			} catch (SQLException e) {
+				conexao.rollback();
+				if (SQLSTATE_DUPLICADO.equals(e.getSQLState())) {
+					throw new SQLException("Já existe " + descricao + " com o nome '" + novo + "'.", e.getSQLState(), e);
+				}
+				throw e;
+			}
+		}
+	}
+
 	/**
 	 * Retorna todas as caixas cadastradas.
 	 *
@@ -269,7 +719,8 @@ public class ProdutoDAO {
 		List<String> caixas = new ArrayList<>();
 		String sql = "SELECT DISTINCT c.nomeCaixa FROM Caixas c JOIN Produtos p ON c.id = p.caixaId WHERE c.nomeCaixa " +
 				"IS NOT NULL AND c.nomeCaixa != ''";
-		try (PreparedStatement pstmt = conexao.prepareStatement(sql); ResultSet rs = pstmt.executeQuery()) {
+		try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql);
+			 ResultSet rs = pstmt.executeQuery()) {
 			while (rs.next()) {
 				caixas.add(rs.getString("nomeCaixa"));
 			}
@@ -277,6 +728,209 @@ public class ProdutoDAO {
 		return caixas;
 	}
 
+	/**
+	 * Percorre todos os produtos em ordem de id, sem guardá-los em uma lista.
+	 * Usado para carregar o catálogo dos filtros em memória.
+	 *
+	 * @param leitor Recebe cada produto; o objeto não é reutilizado.
+	 * @throws SQLException Em caso de erro ao ler os produtos.
+	 */
+	public void percorrerProdutos(LeitorProdutos leitor) throws SQLException {
+		String sql = "SELECT " + COLUNAS_PRODUTO + " FROM Produtos p LEFT JOIN Caixas c ON p.caixaId = c.id "
+				+ JUNCAO_NOMES + " ORDER BY p.id";
+		try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql)) {
+			pstmt.setFetchSize(1000);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					leitor.ler(mapearResultado(rs));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Percorre o id, o nome e o nome da caixa de todos os produtos, sem montar objetos Produto.
+	 * Usado para construir o índice de busca em memória.
+	 *
+	 * @param leitor Recebe os dados de cada produto.
+	 * @throws SQLException Em caso de erro ao ler os produtos.
+	 */
+	public void percorrerNomes(LeitorNomes leitor) throws SQLException {
+		String sql = "SELECT p.id, p.nome, c.nomeCaixa FROM Produtos p LEFT JOIN Caixas c ON p.caixaId = c.id";
+		try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql)) {
+			pstmt.setFetchSize(1000);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					leitor.ler(rs.getInt(1), rs.getString(2), rs.getString(3));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Conta os produtos cadastrados.
+	 *
+	 * @return O número de produtos.
+	 * @throws SQLException Em caso de erro ao consultar a tabela.
+	 */
+	public int contarProdutos() throws SQLException {
+		String sql = "SELECT COUNT(*) FROM Produtos";
+		try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql);
+			 ResultSet rs = pstmt.executeQuery()) {
+			rs.next();
+			return rs.getInt(1);
+		}
+	}
+
+	/**
+	 * Retorna a maior versão gravada em Produtos, Caixas, Categorias, Localizacoes e ProdutosRemovidos;
+	 * as alterações feitas depois da leitura terão versões maiores e serão encontradas por buscarAlteracoesDesde.
+	 *
+	 * @return A versão atual dos dados, ou 0 se nenhuma linha foi gravada desde a criação das versões.
+	 * @throws SQLException Em caso de erro na consulta.
+	 */
+	public long obterVersaoAtual() throws SQLException {
+		long versao = 0;
+		try (Connection conexao = pool.obterConexao(); Statement stmt = conexao.createStatement()) {
+			// Consultas separadas, para que cada MAX seja lido no fim do índice de versão da tabela
+			for (String tabela : new String[] { "Produtos", "Caixas", "Categorias", "Localizacoes",
+					"ProdutosRemovidos" }) {
+				try (ResultSet rs = stmt.executeQuery("SELECT MAX(versao) FROM " + tabela)) {
+					if (rs.next()) {
+						versao = Math.max(versao, rs.getLong(1));
+					}
+				}
+			}
+		}
+		return versao;
+	}
+
+	/**
+	 * Busca os produtos incluídos, alterados ou removidos depois da versão informada, para atualizar
+	 * uma lista já carregada sem ler todos os produtos de novo.
+	 *
+	 * @param versao A versão dos dados já conhecidos, obtida por obterVersaoAtual ou por uma busca anterior.
+	 * @return As alterações encontradas e a versão a ser usada na próxima busca.
+	 * @throws SQLException Em caso de erro na consulta.
+	 */
+	public AlteracoesProdutos buscarAlteracoesDesde(long versao) throws SQLException {
+		List<Produto> alterados = new ArrayList<>();
+		List<Integer> removidos = new ArrayList<>();
+		long maiorVersao = versao;
+		try (Connection conexao = pool.obterConexao()) {
+			try (PreparedStatement pstmt = conexao.prepareStatement(SQL_REMOVIDOS)) {
+				pstmt.setLong(1, versao);
+				try (ResultSet rs = pstmt.executeQuery()) {
+					while (rs.next()) {
+						removidos.add(rs.getInt("id"));
+						maiorVersao = Math.max(maiorVersao, rs.getLong("versao"));
+					}
+				}
+			}
+			try (PreparedStatement pstmt = conexao.prepareStatement(SQL_ALTERACOES)) {
+				for (int i = 1; i <= 4; i++) {
+					pstmt.setLong(i, versao);
+				}
+				try (ResultSet rs = pstmt.executeQuery()) {
+					while (rs.next()) {
+						alterados.add(mapearResultado(rs));
+						maiorVersao = Math.max(maiorVersao, Math.max(
+								Math.max(rs.getLong("versao"), rs.getLong("versaoCaixa")),
+								Math.max(rs.getLong("versaoCategoria"), rs.getLong("versaoLocalizacao"))));
+					}
+				}
+			}
+		}
+		return new AlteracoesProdutos(alterados, removidos, maiorVersao);
+	}
+
+	/**
+	 * Retorna uma assinatura do conteúdo da tabela de produtos (quantidade de linhas, maior id e versão atual),
+	 * usada para saber se dados salvos fora do banco ainda correspondem à tabela.
+	 * A versão muda a cada inclusão, alteração, remoção ou renomeação, então qualquer escrita invalida a assinatura.
+	 *
+	 * @return A assinatura da tabela.
+	 * @throws SQLException Em caso de erro ao consultar a tabela.
+	 */
+	public String obterAssinaturaProdutos() throws SQLException {
+		String sql = "SELECT COUNT(*), MAX(id) FROM Produtos";
+		String contagem;
+		try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql);
+			 ResultSet rs = pstmt.executeQuery()) {
+			rs.next();
+			contagem = rs.getLong(1) + "/" + rs.getInt(2);
+		}
+		return contagem + "/" + obterVersaoAtual();
+	}
+
+	/**
+	 * Percorre a categoria, a localização e o nome da caixa de todos os produtos, sem montar objetos Produto.
+	 * Usado para carregar as facetas dos filtros em memória.
+	 *
+	 * @param leitor Recebe os dados de cada produto.
+	 * @throws SQLException Em caso de erro ao ler os produtos.
+	 */
+	public void percorrerFacetas(LeitorFacetas leitor) throws SQLException {
+		String sql = "SELECT p.id, cat.nome, loc.nome, c.nomeCaixa FROM Produtos p "
+				+ "LEFT JOIN Caixas c ON p.caixaId = c.id " + JUNCAO_NOMES;
+		try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql)) {
+			pstmt.setFetchSize(1000);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				while (rs.next()) {
+					leitor.ler(rs.getInt(1), rs.getString(2), rs.getString(3), rs.getString(4));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Ids de categoria e de localização resolvidos durante uma escrita, na conexão da própria escrita,
+	 * para que cada nome seja consultado (ou inserido) uma única vez por operação. Os nomes nunca são
+	 * removidos das tabelas, então os ids continuam válidos entre os lotes de adicionarLote.
+	 */
+	private static final class IdsNomes {
+
+		private final Connection conexao;
+		private final Map<String, Integer> categorias = new HashMap<>();
+		private final Map<String, Integer> localizacoes = new HashMap<>();
+
+		IdsNomes(Connection conexao) {
+			this.conexao = conexao;
+		}
+
+		Integer categoria(String nome) throws SQLException {
+			return TabelaNomesDAO.CATEGORIAS.obterId(conexao, nome, categorias);
+		}
+
+		Integer localizacao(String nome) throws SQLException {
+			return TabelaNomesDAO.LOCALIZACOES.obterId(conexao, nome, localizacoes);
+		}
+	}
+
+	/**
+	 * Recebe os produtos lidos por percorrerProdutos.
+	 */
+	@FunctionalInterface
+	public interface LeitorProdutos {
+		void ler(Produto produto);
+	}
+
+	/**
+	 * Recebe os dados lidos por percorrerNomes.
+	 */
+	@FunctionalInterface
+	public interface LeitorNomes {
+		void ler(int id, String nome, String nomeCaixa);
+	}
+
+	/**
+	 * Recebe os dados lidos por percorrerFacetas.
+	 */
+	@FunctionalInterface
+	public interface LeitorFacetas {
+		void ler(int id, String categoria, String localizacao, String nomeCaixa);
+	}
+
 	/**
 	 * Mapeia o resultado de uma consulta para um objeto Produto.
 	 *
@@ -290,6 +944,8 @@ public class ProdutoDAO {
 		produto.setNome(rs.getString("nome"));
 		produto.setQuantidade(rs.getInt("quantidade"));
 		produto.setCategoria(rs.getString("categoria"));
+		int caixaID = rs.getInt("caixaID");
+		produto.setCaixaID(rs.wasNull() ? null : caixaID);
 		produto.setCaixaNome(rs.getString("nomeCaixa"));
 		produto.setLocalizacao(rs.getString("localizacao"));
 		return produto;
@@ -0,0 +1,51 @@
+package com.controleestoque.estoque;
+
+/**
+ * Resultado de uma operação em lote dos DAOs: quantas linhas foram gravadas, em quantos
+ * lotes (transações) e em quanto tempo.
+ */
+public class ResultadoLote {
+	private final int linhas;
+	private final int lotes;
+	private final long duracaoNanos;
+
+	/**
+	 * Construtor que registra as medidas da operação.
+	 *
+	 * @param linhas       Número de linhas gravadas.
+	 * @param lotes        Número de lotes confirmados.
+	 * @param duracaoNanos Duração total da operação, em nanossegundos.
+	 */
+	public ResultadoLote(int linhas, int lotes, long duracaoNanos) {
+		this.linhas = linhas;
+		this.lotes = lotes;
+		this.duracaoNanos = duracaoNanos;
+	}
+
+	public int getLinhas() {
+		return linhas;
+	}
+
+	public int getLotes() {
+		return lotes;
+	}
+
+	public long getDuracaoMs() {
+		return duracaoNanos / 1_000_000;
+	}
+
+	/**
+	 * Retorna a vazão da operação, em linhas por segundo.
+	 *
+	 * @return As linhas gravadas por segundo, ou 0 se nada foi gravado.
+	 */
+	public double getLinhasPorSegundo() {
+		return duracaoNanos <= 0 ? 0 : linhas * 1_000_000_000.0 / duracaoNanos;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d linhas em %d lote(s), %d ms (%.0f linhas/s)", linhas, lotes, getDuracaoMs(),
+				getLinhasPorSegundo());
+	}
+}
@@ -0,0 +1,108 @@
+package com.controleestoque.estoque;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * Classe responsável pelo acesso às tabelas de nomes referenciadas por Produtos (Categorias e Localizacoes).
+ * Cada nome é gravado uma única vez e os produtos guardam apenas o id dele, então renomear altera uma linha.
+ * Os métodos recebem a conexão de quem chama, para rodar na mesma transação da escrita dos produtos.
+ */
+public final class TabelaNomesDAO {
+
+    public static final TabelaNomesDAO CATEGORIAS = new TabelaNomesDAO("Categorias");
+    public static final TabelaNomesDAO LOCALIZACOES = new TabelaNomesDAO("Localizacoes");
+
+    // SQLState do Derby para violação de restrição única
+    private static final String SQLSTATE_DUPLICADO = "23505";
+
+    private final String tabela;
+    private final String sqlBuscar;
+    private final String sqlInserir;
+    private final String sqlRenomear;
+
+    private TabelaNomesDAO(String tabela) {
+        this.tabela = tabela;
+        sqlBuscar = "SELECT id FROM " + tabela + " WHERE nome = ?";
+        sqlInserir = "INSERT INTO " + tabela + " (nome) VALUES (?)";
+        // A nova versão faz a busca de alterações trazer de novo os produtos que usam o nome
+        sqlRenomear = "UPDATE " + tabela + " SET nome = ?, versao = NEXT VALUE FOR seq_versao WHERE nome = ?";
+    }
+
+    /**
+     * Retorna o id do nome, inserindo-o na tabela se ainda não existir.
+     * Os ids já resolvidos ficam no mapa informado, para que uma escrita em lote consulte cada nome uma vez.
+     *
+     * @param conexao A conexão da transação em andamento.
+     * @param nome    O nome procurado.
+     * @param ids     Os ids já resolvidos nesta transação, por nome.
+     * @return O id do nome, ou null se o nome for nulo ou vazio.
+     * @throws SQLException Em caso de erro ao consultar ou inserir o nome.
+     */
+    public Integer obterId(Connection conexao, String nome, Map<String, Integer> ids) throws SQLException {
+        if (nome == null || nome.trim().isEmpty()) {
+            return null;
+        }
+        Integer id = ids.get(nome);
+        if (id == null) {
+            id = buscar(conexao, nome);
+            if (id == null) {
+                id = inserir(conexao, nome);
+            }
+            ids.put(nome, id);
+        }
+        return id;
+    }
+
+    /**
+     * Troca o nome em uma única linha; todos os produtos que o usam passam a exibir o novo nome.
+     *
+     * @param conexao A conexão da transação em andamento.
+     * @param atual   O nome atual.
+     * @param novo    O novo nome.
+     * @return Sendo true se o nome atual existia.
+     * @throws SQLException Em caso de erro, inclusive se o novo nome já existir (SQLState 23505).
+     */
+    public boolean renomear(Connection conexao, String atual, String novo) throws SQLException {
+        try (PreparedStatement pstmt = conexao.prepareStatement(sqlRenomear)) {
+            pstmt.setString(1, novo);
+            pstmt.setString(2, atual);
+            return pstmt.executeUpdate() > 0;
+        }
+    }
+
+    private Integer buscar(Connection conexao, String nome) throws SQLException {
+        try (PreparedStatement pstmt = conexao.prepareStatement(sqlBuscar)) {
+            pstmt.setString(1, nome);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : null;
+            }
+        }
+    }
+
+    private int inserir(Connection conexao, String nome) throws SQLException {
+        try (PreparedStatement pstmt = conexao.prepareStatement(sqlInserir, Statement.RETURN_GENERATED_KEYS)) {
+            pstmt.setString(1, nome);
+            pstmt.executeUpdate();
+            try (ResultSet chaves = pstmt.getGeneratedKeys()) {
+                if (chaves.next()) {
+                    return chaves.getInt(1);
+                }
+            }
+        } catch (SQLException e) {
+            // Outra transação gravou o mesmo nome entre a busca e a inserção; o id é lido de novo abaixo
+            if (!SQLSTATE_DUPLICADO.equals(e.getSQLState())) {
+                throw e;
+            }
+        }
+        Integer id = buscar(conexao, nome);
+        if (id == null) {
+            throw new SQLException("Não foi possível obter o id de '" + nome + "' em " + tabela + ".");
+        }
+        return id;
+    }
+}
@@ -0,0 +1,154 @@
+package com.controleestoque.estoque;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Classe responsável pelos totais de quantidade por categoria de todo o catálogo.
+ * Os totais são agregados pelo banco (SUM ... GROUP BY), sem trazer os produtos para a memória, ou lidos
+ * da tabela de resumo TotaisCategoria, mantida por gatilhos da tabela Produtos. Com a tabela de resumo
+ * a leitura custa uma linha por categoria, mas cada escrita de produto atualiza também a linha da categoria.
+ * O agrupamento e a tabela de resumo usam o id da categoria (0 para produtos sem categoria), e o nome só é
+ * juntado no resultado; renomear uma categoria não altera os totais. Produtos sem categoria são
+ * totalizados sob a categoria vazia ('').
+ */
+public class TotaisCategoriaDAO {
+
+    private static final String SQL_TOTAIS_POR_ID = "SELECT COALESCE(categoriaID, 0) AS categoriaID, "
+            + "SUM(CAST(quantidade AS BIGINT)) AS quantidade, COUNT(*) AS produtos "
+            + "FROM Produtos GROUP BY categoriaID";
+
+    private static final String SQL_AGREGAR = "SELECT COALESCE(cat.nome, '') AS categoria, t.quantidade "
+            + "FROM (" + SQL_TOTAIS_POR_ID + ") t LEFT JOIN Categorias cat ON cat.id = t.categoriaID";
+
+    private static final String SQL_LER_RESUMO = "SELECT COALESCE(cat.nome, '') AS categoria, t.quantidade "
+            + "FROM TotaisCategoria t LEFT JOIN Categorias cat ON cat.id = t.categoriaID WHERE t.produtos > 0";
+
+    // Soma o produto novo (n) ao total da categoria dele, criando a linha da categoria se ela não existir
+    private static final String SQL_SOMAR_NOVO = "MERGE INTO TotaisCategoria t USING SYSIBM.SYSDUMMY1 "
+            + "ON t.categoriaID = COALESCE(n.categoriaID, 0) "
+            + "WHEN MATCHED THEN UPDATE SET quantidade = t.quantidade + n.quantidade, produtos = t.produtos + 1 "
+            + "WHEN NOT MATCHED THEN INSERT (categoriaID, quantidade, produtos) "
+            + "VALUES (COALESCE(n.categoriaID, 0), n.quantidade, 1)";
+
+    // Desconta o produto antigo (o) do total da categoria dele; categorias que ficam vazias são ignoradas na leitura
+    private static final String SQL_DESCONTAR_ANTIGO = "UPDATE TotaisCategoria "
+            + "SET quantidade = quantidade - o.quantidade, produtos = produtos - 1 "
+            + "WHERE categoriaID = COALESCE(o.categoriaID, 0)";
+
+    /*
+     * Uma alteração desconta o produto antigo e soma o novo em dois gatilhos. Os gatilhos de UPDATE não
+     * restringem as colunas (UPDATE OF categoriaID, quantidade) porque o Derby falha ao disparar gatilhos
+     * com lista de colunas em tabelas com coluna de identidade; alterações de outras colunas só somam zero.
+     */
+    private static final String[][] GATILHOS = {
+            { "trg_totais_inserir", "AFTER INSERT ON Produtos REFERENCING NEW AS n FOR EACH ROW " + SQL_SOMAR_NOVO },
+            { "trg_totais_remover", "AFTER DELETE ON Produtos REFERENCING OLD AS o FOR EACH ROW " + SQL_DESCONTAR_ANTIGO },
+            { "trg_totais_alterar_antigo",
+                    "AFTER UPDATE ON Produtos REFERENCING OLD AS o FOR EACH ROW " + SQL_DESCONTAR_ANTIGO },
+            { "trg_totais_alterar_novo", "AFTER UPDATE ON Produtos REFERENCING NEW AS n FOR EACH ROW " + SQL_SOMAR_NOVO }
+    };
+
+    private PoolConexoes pool;
+    private volatile boolean tabelaResumoAtiva;
+
+    /**
+     * Construtor que recebe o pool de conexões com o banco de dados.
+     *
+     * @param pool O pool de conexões com o banco de dados.
+     */
+    public TotaisCategoriaDAO(PoolConexoes pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Liga ou desliga a tabela de resumo.
+     * Ao ligar, cria os gatilhos e recalcula a tabela na mesma transação, com a tabela Produtos bloqueada
+     * para que nenhuma escrita fique de fora dos totais; se os gatilhos já existirem, a tabela já está em dia.
+     * Ao desligar, remove os gatilhos e esvazia a tabela, e os totais passam a ser agregados a cada consulta.
+     *
+     * @param usar Sendo true para usar a tabela de resumo e false para agregar a cada consulta.
+     * @throws SQLException Em caso de erro ao criar ou remover os gatilhos.
+     */
+    public void configurarTabelaResumo(boolean usar) throws SQLException {
+        try (Connection conexao = pool.obterConexao()) {
+            try (Statement stmt = conexao.createStatement()) {
+                boolean existem = existemGatilhos(conexao);
+                if (usar && !existem) {
+                    stmt.execute("LOCK TABLE Produtos IN EXCLUSIVE MODE");
+                    for (String[] gatilho : GATILHOS) {
+                        stmt.execute("CREATE TRIGGER " + gatilho[0] + " " + gatilho[1]);
+                    }
+                    recalcular(stmt);
+                } else if (!usar && existem) {
+                    for (String[] gatilho : GATILHOS) {
+                        stmt.execute("DROP TRIGGER " + gatilho[0]);
+                    }
+                    stmt.executeUpdate("DELETE FROM TotaisCategoria");
+                }
+                conexao.commit();
+                tabelaResumoAtiva = usar;
+            } catch (SQLException e) {
+                conexao.rollback();
+                throw new SQLException("Erro ao configurar a tabela de totais por categoria: " + e.getMessage(),
+                        e.getSQLState(), e);
+            }
+        }
+    }
+
+    public boolean isTabelaResumoAtiva() {
+        return tabelaResumoAtiva;
+    }
+
+    /**
+     * Retorna a quantidade total de cada categoria de todo o catálogo, lida da tabela de resumo se
+     * ela estiver ligada ou agregada pelo banco caso contrário.
+     *
+     * @return Map com cada categoria ('' para produtos sem categoria) e a soma das quantidades dos seus produtos.
+     * @throws SQLException Em caso de erro na consulta.
+     */
+    public Map<String, Long> totalizarPorCategoria() throws SQLException {
+        String sql = tabelaResumoAtiva ? SQL_LER_RESUMO : SQL_AGREGAR;
+        Map<String, Long> totais = new HashMap<>();
+        try (Connection conexao = pool.obterConexao(); PreparedStatement pstmt = conexao.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                totais.put(rs.getString("categoria"), rs.getLong("quantidade"));
+            }
+        }
+        return totais;
+    }
+
+    /**
+     * Informa se os gatilhos da tabela de resumo existem no banco, por exemplo para que uma carga em massa
+     * os desligue durante a importação e os religue (recalculando a tabela) no final.
+     *
+     * @return Sendo true se os gatilhos existem.
+     * @throws SQLException Em caso de erro na consulta ao catálogo do banco.
+     */
+    public boolean isTabelaResumoCriada() throws SQLException {
+        try (Connection conexao = pool.obterConexao()) {
+            return existemGatilhos(conexao);
+        }
+    }
+
+    private static void recalcular(Statement stmt) throws SQLException {
+        stmt.executeUpdate("DELETE FROM TotaisCategoria");
+        stmt.executeUpdate("INSERT INTO TotaisCategoria (categoriaID, quantidade, produtos) " + SQL_TOTAIS_POR_ID);
+    }
+
+    private static boolean existemGatilhos(Connection conexao) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM SYS.SYSTRIGGERS WHERE TRIGGERNAME = ?";
+        try (PreparedStatement pstmt = conexao.prepareStatement(sql)) {
+            pstmt.setString(1, GATILHOS[0][0].toUpperCase());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() && rs.getInt(1) > 0;
+            }
+        }
+    }
+}
@@ -1,23 +1,25 @@
 package com.controleestoque.gui;
 
-import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
-import com.controleestoque.estoque.Caixa;
-import com.controleestoque.estoque.CaixaDAO;
-import com.controleestoque.estoque.ConexaoBanco;
 import com.controleestoque.estoque.Produto;
 import com.controleestoque.servico.GerenciadorGrafico;
+import com.controleestoque.servico.ResolvedorCaixa;
+import com.controleestoque.servico.SelecaoProdutos;
 import com.controleestoque.servico.ServicoProduto;
 import com.controleestoque.servico.GerenciadorTotalizacaoProduto;
 import com.controleestoque.util.AlertaUtils;
-import com.controleestoque.util.LimpezaBancoDados;
 
 import javafx.application.Platform;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.concurrent.Task;
 import javafx.geometry.Insets;
@@ -55,8 +57,8 @@ public class ControleBotoes {
 		this.servicoProduto = servicoProduto;
 		this.tabela = tabela;
 		this.layoutPrincipal = layoutPrincipal;
-		this.produtosData = FXCollections.observableArrayList();
-		this.gerenciadorGrafico = new GerenciadorGrafico(layoutPrincipal, produtosData, tabela);
+		this.produtosData = tabela.getProdutosData();
+		this.gerenciadorGrafico = new GerenciadorGrafico(layoutPrincipal, servicoProduto, tabela);
 
 		carregarDados();
 
@@ -121,38 +123,41 @@ public class ControleBotoes {
 		});
 	}
 
-	// Carrega os dados dos produtos para a tabela
+	// Atualiza os dados dos produtos na tabela depois de uma escrita, respeitando os filtros ativos
 	private void carregarDados() {
 
-		Platform.runLater(() -> {
-			try {
-				List<Produto> produtos = servicoProduto.listarProdutos();
-				if (produtos.isEmpty()) {
-					System.out.println("Nenhum produto encontrado no banco de dados.");
-					produtosData.clear();
-				} else {
-					produtosData.clear();
-					produtosData.addAll(produtos);
-				}
-				tabela.getFiltroProdutoHelper().aplicarFiltros();
-				atualizarTabela();
-			} catch (SQLException e) {
-				e.printStackTrace();
-				AlertaUtils.mostrarAlertaErro("Erro!", "Erro ao carregar dados do banco de dados: " + e.getMessage());
-			}
-		});
+		tabela.getFiltroProdutoHelper().atualizarAlteracoes();
 	}
 
 	// Exibe uma janela com a contagem da quantidade por categoria
 	public void exibirTotalPorCategoria() {
 
-		ObservableList<Produto> produtosData = tabela.getTabela().getItems();
-		Map<String, Integer> totalPorCategoria = GerenciadorTotalizacaoProduto.calcularTotalPorCategoria(produtosData);
+		if (!tabela.getProdutosData().isPaginacaoAtiva()) {
+			// Com filtros ativos a lista tem todos os produtos filtrados, já totalizados conforme ela muda
+			mostrarTotalPorCategoria(tabela.getTotalizadorProdutos().getTotalPorCategoria());
+			return;
+		}
+
+		// Sem filtros, os totais de todo o catálogo vêm do banco, fora da thread da interface
+		Task<Map<String, Long>> totalizarTask = new Task<Map<String, Long>>() {
+			@Override
+			protected Map<String, Long> call() throws Exception {
+				return GerenciadorTotalizacaoProduto.calcularTotalCatalogo(servicoProduto);
+			}
+		};
+		totalizarTask.setOnSucceeded(evento -> mostrarTotalPorCategoria(totalizarTask.getValue()));
+		totalizarTask.setOnFailed(evento -> AlertaUtils.mostrarAlertaErro("Erro de Banco de Dados",
+				"Erro ao calcular os totais por categoria: " + totalizarTask.getException().getMessage()));
+		Thread thread = new Thread(totalizarTask);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private void mostrarTotalPorCategoria(Map<String, Long> totalPorCategoria) {
 		StringBuilder resultado = new StringBuilder("Total de Produtos por Categoria:\n");
 
-		for (Map.Entry<String, Integer> entry : totalPorCategoria.entrySet()) {
-			String categoria = entry.getKey() != null ? entry.getKey() : "Sem Categoria";
-			resultado.append("Categoria: ").append(categoria).append(" - Quantidade: ").append(entry.getValue())
+		for (Map.Entry<String, Long> entry : totalPorCategoria.entrySet()) {
+			resultado.append("Categoria: ").append(entry.getKey()).append(" - Quantidade: ").append(entry.getValue())
 					.append("\n");
 		}
 
@@ -219,25 +224,16 @@ public class ControleBotoes {
 			String caixaNome = caixaField.getText();
 			String localizacao = localizacaoField.getText();
 
-			Connection conn = servicoProduto.getConexao();
-			if (conn == null || conn.isClosed()) {
-				throw new SQLException("Conexão com o banco de dados não disponível.");
-			}
-
-			CaixaDAO caixaDAO = new CaixaDAO(conn);
+			ResolvedorCaixa resolvedorCaixa = servicoProduto.getResolvedorCaixa();
 			Integer caixaId = null;
 
 			if (!caixaNome.isEmpty()) {
-				caixaId = caixaDAO.buscarIdCaixaPorNome(caixaNome);
-				if (caixaId == 0) {
+				caixaId = resolvedorCaixa.buscarId(caixaNome);
+				if (caixaId == null) {
 					Optional<ButtonType> result = AlertaUtils.mostrarConfirmacao("Caixa não encontrada!",
 							"A caixa informada não existe. Deseja criá-la?");
 					if (result.isPresent() && result.get() == ButtonType.OK) {
-						Caixa novaCaixa = new Caixa();
-						novaCaixa.setNomeCaixa(caixaNome);
-						novaCaixa.setLocalizacao(localizacao);
-						caixaDAO.adicionar(novaCaixa);
-						caixaId = caixaDAO.buscarIdCaixaPorNome(caixaNome);
+						caixaId = resolvedorCaixa.obterOuCriar(caixaNome, localizacao);
 					} else {
 						return;
 					}
@@ -249,16 +245,16 @@ public class ControleBotoes {
 			produto.setQuantidade(quantidade);
 			produto.setCategoria(categoria);
 			produto.setCaixaID(caixaId);
+			produto.setCaixaNome(caixaId != null ? caixaNome : null);
 			produto.setLocalizacao(localizacao);
-			produto.setSelecionado(false);
 
 			Task<Void> adicionarProdutoTask = new Task<Void>() {
 				@Override
 				protected Void call() throws Exception {
 					try {
 						servicoProduto.adicionar(produto);
-						LimpezaBancoDados.limparDadosInvalidos(conn);
-						ConexaoBanco.commit(conn);
+						servicoProduto.limparDadosInvalidos(Collections.singletonList(produto.getCaixaID()),
+								Collections.singletonList(produto.getId()));
 						carregarDados();
 						Platform.runLater(() -> {
                             try {
@@ -281,7 +277,6 @@ public class ControleBotoes {
 							}
 						});
 					} catch (SQLException ex) {
-						ConexaoBanco.rollback(conn);
 						Platform.runLater(() -> AlertaUtils.mostrarAlertaErro("Erro de Banco de Dados!",
 								"Erro ao adicionar produto: " + ex.getMessage()));
 					}
@@ -310,13 +305,9 @@ public class ControleBotoes {
 	//Remove um produto
 	private void removerProdutoSelecionado() {
 
-		ObservableList<Produto> produtosSelecionados = FXCollections.observableArrayList();
-		for (Produto produto : tabela.getTabela().getItems()) {
-			if (produto.isSelecionado()) {
-				produtosSelecionados.add(produto);
-			}
-		}
-		if (produtosSelecionados != null && !produtosSelecionados.isEmpty()) {
+		SelecaoProdutos selecao = tabela.getSelecaoProdutos();
+		List<Produto> produtosSelecionados = selecao.getSelecionados();
+		if (!produtosSelecionados.isEmpty()) {
 			Optional<ButtonType> result = AlertaUtils.mostrarConfirmacao("Confirmação de Remoção",
 					"Deseja remover " + produtosSelecionados.size() + " produtos selecionados?");
 
@@ -324,19 +315,21 @@ public class ControleBotoes {
 				Task<Void> removerMultiplosTask = new Task<Void>() {
 					@Override
 					protected Void call() throws Exception {
-						Connection conn = null;
 						try {
-							conn = ConexaoBanco.getConexao();
-							for (int i = produtosSelecionados.size() - 1; i >= 0; i--) {
-								Produto produto = produtosSelecionados.get(i);
-								servicoProduto.remover(produto);
-								Platform.runLater(() -> produtosData.remove(produto));
+							Set<Integer> idsCaixas = new HashSet<>();
+							for (Produto produto : produtosSelecionados) {
+								idsCaixas.add(produto.getCaixaID());
 							}
-							LimpezaBancoDados.limparDadosInvalidos(conn);
-							ConexaoBanco.commit(conn);
+							servicoProduto.removerLote(produtosSelecionados);
+							servicoProduto.limparDadosInvalidos(idsCaixas, Collections.emptyList());
 
+							// Uma única alteração na lista, em vez de uma remoção (e um runLater) por produto
+							Set<Produto> removidos = Collections.newSetFromMap(new IdentityHashMap<>());
+							removidos.addAll(produtosSelecionados);
 							Platform.runLater(() -> {
-								carregarDados();
+								produtosData.removeAll(removidos);
+								// Os selecionados saíram da lista; os que ficaram estavam desmarcados
+								selecao.limpar();
 								try {
 									tabela.atualizarFiltros();
 								} catch (SQLException e) {
@@ -346,11 +339,8 @@ public class ControleBotoes {
 										produtosSelecionados.size() + " produtos removidos com sucesso!");
 							});
 						} catch (SQLException e) {
-							ConexaoBanco.rollback(conn);
 							Platform.runLater(() -> AlertaUtils.mostrarAlertaErro("Erro de Banco de Dados",
 									"Erro ao remover produtos: " + e.getMessage()));
-						} finally {
-							ConexaoBanco.fecharConexao(conn);
 						}
 						return null;
 					}
@@ -368,13 +358,8 @@ public class ControleBotoes {
 	private void configurarAlteracaoProduto(Button btnAlterarProduto) {
 
 		btnAlterarProduto.setOnAction(evento -> {
-			ObservableList<Produto> produtosSelecionados = FXCollections.observableArrayList();
-			for (Produto produto : tabela.getTabela().getItems()) {
-				if (produto.isSelecionado()) {
-					produtosSelecionados.add(produto);
-				}
-			}
-			if (produtosSelecionados == null || produtosSelecionados.isEmpty()) {
+			List<Produto> produtosSelecionados = tabela.getSelecaoProdutos().getSelecionados();
+			if (produtosSelecionados.isEmpty()) {
 				AlertaUtils.mostrarAlertaErro("Aviso", "Nenhum produto selecionado.");
 				return;
 			}
@@ -411,41 +396,40 @@ public class ControleBotoes {
 					return;
 				}
 
-				produto.setNome(nomeField.getText());
-				produto.setQuantidade(Integer.parseInt(quantidadeField.getText()));
-				produto.setCategoria(categoriaField.getText().isEmpty() ? null : categoriaField.getText());
-				produto.setLocalizacao(localizacaoField.getText().isEmpty() ? null : localizacaoField.getText());
+				// A caixa anterior pode ficar vazia com a alteração
+				Integer caixaAnterior = produto.getCaixaID();
+				// O produto da tabela não é alterado no lugar: a lista é recarregada com os dados gravados
+				Produto alterado = produto.copiar();
+				alterado.setNome(nomeField.getText());
+				alterado.setQuantidade(Integer.parseInt(quantidadeField.getText()));
+				alterado.setCategoria(categoriaField.getText().isEmpty() ? null : categoriaField.getText());
+				alterado.setLocalizacao(localizacaoField.getText().isEmpty() ? null : localizacaoField.getText());
 
 				String nomeCaixa = caixaField.getText().trim();
-				CaixaDAO caixaDAO = new CaixaDAO(servicoProduto.getConexao());
+				ResolvedorCaixa resolvedorCaixa = servicoProduto.getResolvedorCaixa();
 				Integer caixaId = null;
 
 				if (!nomeCaixa.isEmpty()) {
-					caixaId = caixaDAO.buscarIdCaixaPorNome(nomeCaixa);
-					if (caixaId == 0) {
+					caixaId = resolvedorCaixa.buscarId(nomeCaixa);
+					if (caixaId == null) {
 						Optional<ButtonType> result = AlertaUtils.mostrarConfirmacao("Caixa não encontrada!",
 								"A caixa informada não existe. Deseja criá-la?");
 						if (result.isPresent() && result.get() == ButtonType.OK) {
-							Caixa novaCaixa = new Caixa();
-							novaCaixa.setNomeCaixa(nomeCaixa);
-							novaCaixa.setLocalizacao(localizacaoField.getText().isEmpty() ? null : localizacaoField.getText());
-							caixaDAO.adicionar(novaCaixa);
-							caixaId = caixaDAO.buscarIdCaixaPorNome(nomeCaixa);
-						} else {
-							caixaId = null;
+							caixaId = resolvedorCaixa.obterOuCriar(nomeCaixa,
+									localizacaoField.getText().isEmpty() ? null : localizacaoField.getText());
 						}
 					}
 				}
-				produto.setCaixaID(caixaId);
+				alterado.setCaixaID(caixaId);
+				alterado.setCaixaNome(caixaId != null ? nomeCaixa : null);
 
 				Task<Void> alterarTask = new Task<Void>() {
 					@Override
 					protected Void call() throws Exception {
-						try (Connection conn = ConexaoBanco.getConexao()) {
-							conn.setAutoCommit(false);
-							servicoProduto.alterar(produto);
-							LimpezaBancoDados.limparDadosInvalidos(conn);
-							conn.commit();
+						try {
+							servicoProduto.alterar(alterado);
+							servicoProduto.limparDadosInvalidos(Arrays.asList(caixaAnterior, alterado.getCaixaID()),
+									Collections.singletonList(alterado.getId()));
 
 							Platform.runLater(() -> {
 								try {
@@ -487,7 +471,7 @@ public class ControleBotoes {
 	}
 
 	//Formulário usado para alteração múltipla
-	private void mostrarFormularioAlteracaoEmMassa(ObservableList<Produto> produtosSelecionados) {
+	private void mostrarFormularioAlteracaoEmMassa(List<Produto> produtosSelecionados) {
 
 		Stage alterarMassaStage = new Stage();
 		alterarMassaStage.getIcons().add(new Image("/imagens/categoria.png"));
@@ -505,23 +489,18 @@ public class ControleBotoes {
 			String novaCategoria = categoriaField.getText().trim();
 			String novaCaixa = caixaField.getText().trim();
 			String novaLocalizacao = localizacaoField.getText().trim();
-			CaixaDAO caixaDAO = new CaixaDAO(servicoProduto.getConexao());
+			ResolvedorCaixa resolvedorCaixa = servicoProduto.getResolvedorCaixa();
 			Integer caixaId = null;
 
 			if (!novaCaixa.isEmpty()) {
 				try {
-					caixaId = caixaDAO.buscarIdCaixaPorNome(novaCaixa);
-					if (caixaId == 0) {
+					caixaId = resolvedorCaixa.buscarId(novaCaixa);
+					if (caixaId == null) {
 						Optional<ButtonType> result = AlertaUtils.mostrarConfirmacao("Caixa não encontrada!",
 								"A caixa informada não existe. Deseja criá-la?");
 						if (result.isPresent() && result.get() == ButtonType.OK) {
-							Caixa novaCaixaObj = new Caixa();
-							novaCaixaObj.setNomeCaixa(novaCaixa);
-							novaCaixaObj.setLocalizacao(novaLocalizacao.isEmpty() ? null : novaLocalizacao);
-							caixaDAO.adicionar(novaCaixaObj);
-							caixaId = caixaDAO.buscarIdCaixaPorNome(novaCaixa);
-						} else {
-							caixaId = null;
+							caixaId = resolvedorCaixa.obterOuCriar(novaCaixa,
+									novaLocalizacao.isEmpty() ? null : novaLocalizacao);
 						}
 					}
 				} catch (SQLException ex) {
@@ -538,22 +517,30 @@ public class ControleBotoes {
 			Task<Void> alterarMassaTask = new Task<Void>() {
 				@Override
 				protected Void call() throws Exception {
-					try (Connection conn = ConexaoBanco.getConexao()) {
-						conn.setAutoCommit(false);
-
+					try {
+						// As caixas anteriores dos produtos podem ficar vazias com a alteração
+						Set<Integer> idsCaixas = new HashSet<>();
+						List<Integer> idsProdutos = new ArrayList<>();
+						List<Produto> alterados = new ArrayList<>(produtosSelecionados.size());
+						idsCaixas.add(finalCaixaId);
 						for (Produto produto : produtosSelecionados) {
+							idsCaixas.add(produto.getCaixaID());
+							idsProdutos.add(produto.getId());
+							// Altera cópias; os produtos da tabela são substituídos quando a lista é recarregada
+							Produto alterado = produto.copiar();
 							if (!novaCategoria.isEmpty()) {
-								produto.setCategoria(novaCategoria);
+								alterado.setCategoria(novaCategoria);
 							} else {
-								produto.setCategoria(null);
+								alterado.setCategoria(null);
 							}
-							produto.setCaixaID(finalCaixaId);
-							produto.setLocalizacao(novaLocalizacao.isEmpty() ? null : novaLocalizacao);
+							alterado.setCaixaID(finalCaixaId);
+							alterado.setCaixaNome(finalCaixaId != null ? novaCaixa : null);
+							alterado.setLocalizacao(novaLocalizacao.isEmpty() ? null : novaLocalizacao);
+							alterados.add(alterado);
 						}
 
-						servicoProduto.alterarMassa(produtosSelecionados);
-						LimpezaBancoDados.limparDadosInvalidos(conn);
-						conn.commit();
+						servicoProduto.alterarMassa(alterados);
+						servicoProduto.limparDadosInvalidos(idsCaixas, idsProdutos);
 
 						Platform.runLater(() -> {
 							try {
@@ -2,8 +2,6 @@ package com.controleestoque.gui;
 
 import java.sql.SQLException;
 
-import com.controleestoque.servico.GerenciadorDadosProduto;
-import com.controleestoque.servico.GerenciadorFiltroProduto;
 import com.controleestoque.servico.ServicoProduto;
 
 import javafx.scene.Scene;
@@ -18,8 +16,6 @@ public class Janela {
     private BorderPane layoutPrincipal;
     private Menu menu;
     private Tabela tabela;
-    private GerenciadorDadosProduto gerenciadorDadosProduto;
-    private GerenciadorFiltroProduto gerenciadorFiltroProduto;
     private ControleBotoes controleBotoes;
 
     /**
@@ -51,14 +47,9 @@ public class Janela {
     private void inicializarComponentes(ServicoProduto servicoProduto) throws SQLException {
         layoutPrincipal = new BorderPane();
         menu = new Menu();
+        // Os filtros da tabela são configurados pela própria Tabela, com o seu GerenciadorFiltroProduto
         tabela = new Tabela(servicoProduto);
 
-        gerenciadorDadosProduto = new GerenciadorDadosProduto(servicoProduto);
-        gerenciadorFiltroProduto = new GerenciadorFiltroProduto(servicoProduto, gerenciadorDadosProduto,
-                tabela.getCampoPesquisa(), tabela.getCampoQuantidadeMinima(), tabela.getCampoQuantidadeMaxima(),
-                tabela.getFiltroCategoria(), tabela.getFiltroLocalizacao(), tabela.getFiltroCaixa(),
-                tabela.getProdutosData(), tabela.getTabela());
-
         controleBotoes = new ControleBotoes(servicoProduto, tabela, layoutPrincipal);
     }
 
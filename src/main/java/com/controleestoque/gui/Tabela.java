@@ -1,26 +1,39 @@
 package com.controleestoque.gui;
 
 import java.sql.SQLException;
+import java.util.function.ToIntBiFunction;
 
+import com.controleestoque.estoque.OrdenacaoProduto;
 import com.controleestoque.estoque.Produto;
+import com.controleestoque.servico.CacheFacetas;
 import com.controleestoque.servico.GerenciadorDadosProduto;
 import com.controleestoque.servico.GerenciadorEventoTabela;
 import com.controleestoque.servico.GerenciadorFiltroProduto;
+import com.controleestoque.servico.LinhaProduto;
+import com.controleestoque.servico.ListaPaginadaProdutos;
 import com.controleestoque.servico.ServicoProduto;
+import com.controleestoque.servico.SelecaoProdutos;
+import com.controleestoque.servico.TotalizadorProdutos;
 import com.controleestoque.util.AlertaUtils;
+import com.controleestoque.util.ConfiguracaoBanco;
 import com.controleestoque.util.EstiloUI;
+import com.controleestoque.util.CelulaContagem;
 import com.controleestoque.util.ComboBoxPromptCell;
 
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.IndexedCell;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
+import javafx.scene.control.skin.VirtualFlow;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 
@@ -32,7 +45,9 @@ public class Tabela {
     private ServicoProduto servicoProduto;
     private TableView<Produto> tabela;
     private VBox tabelaContainer;
-    private ObservableList<Produto> produtosData;
+    private ListaPaginadaProdutos produtosData;
+    private TotalizadorProdutos totalizadorProdutos;
+    private SelecaoProdutos selecaoProdutos;
     private ObservableList<Produto> produtosSelecionados;
     private GerenciadorDadosProduto gerenciadorDadosProduto;
     private GerenciadorFiltroProduto gerenciadorFiltroProduto;
@@ -58,12 +73,15 @@ public class Tabela {
     public Tabela(ServicoProduto servicoProduto) throws SQLException {
 
         this.servicoProduto = servicoProduto;
-        this.produtosData = FXCollections.observableArrayList();
+        this.produtosData = new ListaPaginadaProdutos(servicoProduto, ConfiguracaoBanco.getTamanhoPaginaTabela(),
+                ConfiguracaoBanco.getTamanhoPaginaTabela() / 4);
+        this.totalizadorProdutos = new TotalizadorProdutos(produtosData);
+        this.selecaoProdutos = new SelecaoProdutos(produtosData);
         this.produtosSelecionados = FXCollections.observableArrayList();
         this.tabela = new TableView<>();
         this.gerenciadorDadosProduto = new GerenciadorDadosProduto(servicoProduto);
         this.CheckBox = new CheckBox("");
-        this.gerenciadorEventoTabela = new GerenciadorEventoTabela(tabela, CheckBox);
+        this.gerenciadorEventoTabela = new GerenciadorEventoTabela(tabela, CheckBox, selecaoProdutos);
 
         campoPesquisa = new TextField();
         campoQuantidadeMinima = new TextField();
@@ -83,6 +101,11 @@ public class Tabela {
         filtroLocalizacao.setButtonCell(new ComboBoxPromptCell<>("Localização"));
         filtroCaixa.setButtonCell(new ComboBoxPromptCell<>("Caixa"));
 
+        // Opções com o número de produtos de cada valor
+        filtroCategoria.setCellFactory(lista -> celulaContagem(CacheFacetas::contarCategoria));
+        filtroLocalizacao.setCellFactory(lista -> celulaContagem(CacheFacetas::contarLocalizacao));
+        filtroCaixa.setCellFactory(lista -> celulaContagem(CacheFacetas::contarCaixa));
+
         //Layout do container da tabela
         tabelaContainer = new VBox(10, configurarLayoutFiltros(), tabela);
         tabelaContainer.setAlignment(Pos.CENTER);
@@ -94,11 +117,19 @@ public class Tabela {
                 filtroLocalizacao, filtroCaixa, produtosData, tabela);
 
         configurarTabela();
+        configurarCargaSobDemanda();
         carregarDadosIniciais();
 
         gerenciadorEventoTabela.configurarEventos();
     }
 
+    private CelulaContagem celulaContagem(ToIntBiFunction<CacheFacetas, String> contagem) {
+        return new CelulaContagem(valor -> {
+            CacheFacetas cache = servicoProduto.getCacheFacetas();
+            return cache != null ? contagem.applyAsInt(cache, valor) : 0;
+        });
+    }
+
     /**
      * Configura as colunas e o layout da tabela.
      */
@@ -116,61 +147,89 @@ public class Tabela {
         // Check Box
         TableColumn<Produto, Boolean> colunaCheckBox = new TableColumn<>();
         colunaCheckBox.setGraphic(CheckBox);
-        colunaCheckBox.setCellValueFactory(cellData -> {
-            Produto produto = cellData.getValue();
-            return produto.selecionadoProperty();
-        });
+        // A célula lê a marcação da seleção pelo produto da linha; a coluna não precisa de valor
         colunaCheckBox.setSortable(false);
 
         gerenciadorEventoTabela.configurarCelulaCheckBox(colunaCheckBox);
         colunaCheckBox.setPrefWidth(50);
 
-        //Definição das colunas da tabela
+        //Definição das colunas da tabela; os valores vêm já formatados e guardados em LinhaProduto
         TableColumn<Produto, String> colunaNome = new TableColumn<>("Nome");
-        colunaNome.setCellValueFactory(nomeData -> new javafx.beans.property.SimpleStringProperty
-                (nomeData.getValue().getNome()));
+        colunaNome.setCellValueFactory(nomeData -> LinhaProduto.de(nomeData.getValue()).nomeProperty());
         colunaNome.setPrefWidth(150);
 
-        TableColumn<Produto, String> colunaQuantidade = new TableColumn<>("Quantidade");
-        colunaQuantidade.setCellValueFactory(quantidadeData -> new javafx.beans.property.SimpleStringProperty
-                (String.valueOf(quantidadeData.getValue().getQuantidade())));
+        // Coluna numérica: a ordenação na memória compara as quantidades, e não o texto
+        TableColumn<Produto, Integer> colunaQuantidade = new TableColumn<>("Quantidade");
+        colunaQuantidade.setCellValueFactory(quantidadeData ->
+                LinhaProduto.de(quantidadeData.getValue()).quantidadeProperty());
         colunaQuantidade.setPrefWidth(150);
         colunaQuantidade.setStyle("-fx-alignment: CENTER-RIGHT;");
 
 
         TableColumn<Produto, String> colunaCategoria = new TableColumn<>("Categoria");
-        colunaCategoria.setCellValueFactory(categoriaData -> {
-            String categoria = categoriaData.getValue().getCategoria();
-            return new javafx.beans.property.SimpleStringProperty(
-                    (categoria != null && !categoria.trim().isEmpty()) ? categoria : "Sem Categoria"
-            );
-        });
+        colunaCategoria.setCellValueFactory(categoriaData -> LinhaProduto.de(categoriaData.getValue()).categoriaProperty());
         colunaCategoria.setPrefWidth(150);
         colunaCategoria.setStyle("-fx-alignment: CENTER;");
 
         TableColumn<Produto, String> colunaCaixa = new TableColumn<>("Caixa");
-        colunaCaixa.setCellValueFactory(caixaData -> {
-            String caixa = caixaData.getValue().getCaixaNome();
-            return new javafx.beans.property.SimpleStringProperty(
-                    (caixa != null && !caixa.trim().isEmpty()) ? caixa : "Sem Caixa"
-            );
-        });
+        colunaCaixa.setCellValueFactory(caixaData -> LinhaProduto.de(caixaData.getValue()).caixaProperty());
         colunaCaixa.setPrefWidth(150);
         colunaCaixa.setStyle("-fx-alignment: CENTER;");
 
         TableColumn<Produto, String> colunaLocalizacao = new TableColumn<>("Localização");
-        colunaLocalizacao.setCellValueFactory(caixaData -> {
-            String localizacao = caixaData.getValue().getLocalizacao();
-            return new javafx.beans.property.SimpleStringProperty(
-                    (localizacao != null && !localizacao.trim().isEmpty()) ? localizacao : "Sem Localização"
-            );
-        });
+        colunaLocalizacao.setCellValueFactory(localizacaoData ->
+                LinhaProduto.de(localizacaoData.getValue()).localizacaoProperty());
         colunaLocalizacao.setPrefWidth(150);
         colunaLocalizacao.setStyle("-fx-alignment: CENTER;");
 
         //Ajuste da posição das colunas
         tabela.getColumns().addAll(colunaCheckBox, colunaNome, colunaQuantidade, colunaCategoria, colunaCaixa,
                 colunaLocalizacao);
+
+        // Durante a paginação, ordenar por nome ou quantidade recarrega as páginas já ordenadas pelo banco.
+        // As demais colunas não têm ordenação paginada: reordenar só as páginas carregadas deixaria a lista
+        // parcialmente ordenada, então a ordenação é recusada e a tabela volta à ordem anterior.
+        tabela.setSortPolicy(tabelaOrdenada -> {
+            if (produtosData.isPaginacaoAtiva()) {
+                if (tabelaOrdenada.getSortOrder().isEmpty()) {
+                    produtosData.iniciarPaginacao(OrdenacaoProduto.ID, true);
+                    return true;
+                }
+                TableColumn<Produto, ?> coluna = tabelaOrdenada.getSortOrder().get(0);
+                boolean crescente = coluna.getSortType() == TableColumn.SortType.ASCENDING;
+                if (coluna == colunaNome) {
+                    produtosData.iniciarPaginacao(OrdenacaoProduto.NOME, crescente);
+                    return true;
+                }
+                if (coluna == colunaQuantidade) {
+                    produtosData.iniciarPaginacao(OrdenacaoProduto.QUANTIDADE, crescente);
+                    return true;
+                }
+                return false;
+            }
+            return TableView.DEFAULT_SORT_POLICY.call(tabelaOrdenada);
+        });
+    }
+
+    /**
+     * Configura a carga das próximas páginas conforme a tabela é rolada.
+     * A cada mudança de posição da rolagem ou do conteúdo, a última linha visível é informada à lista paginada.
+     */
+    private void configurarCargaSobDemanda() {
+        tabela.skinProperty().addListener((observavel, skinAntiga, skinNova) -> Platform.runLater(() -> {
+            if (tabela.lookup(".virtual-flow") instanceof VirtualFlow) {
+                VirtualFlow<?> flow = (VirtualFlow<?>) tabela.lookup(".virtual-flow");
+                flow.positionProperty().addListener((obs, posicaoAntiga, posicaoNova) -> verificarCargaSobDemanda(flow));
+                produtosData.addListener((ListChangeListener<Produto>) mudanca -> verificarCargaSobDemanda(flow));
+            }
+        }));
+    }
+
+    private void verificarCargaSobDemanda(VirtualFlow<?> flow) {
+        IndexedCell<?> ultimaVisivel = flow.getLastVisibleCell();
+        if (ultimaVisivel != null) {
+            produtosData.carregarAte(ultimaVisivel.getIndex());
+        }
     }
 
     /**
@@ -260,10 +319,18 @@ public class Tabela {
         return tabela;
     }
 
-    public ObservableList<Produto> getProdutosData() {
+    public ListaPaginadaProdutos getProdutosData() {
         return produtosData;
     }
 
+    public SelecaoProdutos getSelecaoProdutos() {
+        return selecaoProdutos;
+    }
+
+    public TotalizadorProdutos getTotalizadorProdutos() {
+        return totalizadorProdutos;
+    }
+
     public Button getBtnAplicarFiltros() {
         return aplicarFiltrosButton;
     }
@@ -0,0 +1,314 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Catálogo de produtos guardado em colunas, usado pelo MotorFiltroMemoria no lugar de um objeto Produto
+ * por linha.
+ * Id, quantidade e id da caixa ficam em colunas de inteiros; categoria, localização e nome da caixa, que
+ * se repetem em milhares de produtos, são guardados uma única vez em dicionários e as colunas guardam só
+ * o código de cada valor; os nomes ficam codificados em UTF-8 em uma área de bytes contínua. As colunas
+ * podem ser alocadas fora do heap (ByteBuffer direto), para que um catálogo grande não pese na coleta de lixo.
+ * As posições só são acrescentadas: um produto alterado ganha uma nova posição e a antiga continua com os
+ * dados anteriores, então a visão devolvida por getProduto nunca muda depois de criada. O espaço das
+ * posições antigas só é liberado quando o catálogo é carregado de novo.
+ * A escrita deve ser feita por uma thread de cada vez; as posições já gravadas podem ser lidas sem trava.
+ */
+public class ArmazemProdutos {
+
+    private static final int ID = 0;
+    private static final int QUANTIDADE = 1;
+    private static final int CAIXA_ID = 2;
+    private static final int CATEGORIA = 3;
+    private static final int LOCALIZACAO = 4;
+    private static final int CAIXA_NOME = 5;
+    private static final int INICIO_NOME = 6;
+    private static final int TAMANHO_NOME = 7;
+    private static final int TOTAL_COLUNAS = 8;
+
+    // Valor das colunas para campos nulos
+    private static final int NULO = -1;
+
+    private final boolean foraDoHeap;
+    private final Dicionario categorias = new Dicionario();
+    private final Dicionario localizacoes = new Dicionario();
+    private final Dicionario caixas = new Dicionario();
+
+    // Trocados por cópias maiores quando enchem; voláteis para que quem lê sem trava veja as cópias completas
+    private volatile IntBuffer[] colunas;
+    private volatile ByteBuffer nomes;
+    private int totalPosicoes;
+    private int bytesNomes;
+
+    /**
+     * Construtor que inicializa o catálogo vazio.
+     *
+     * @param capacidadeInicial O número de produtos reservado inicialmente.
+     * @param foraDoHeap        Sendo true para alocar as colunas e os nomes fora do heap.
+     */
+    public ArmazemProdutos(int capacidadeInicial, boolean foraDoHeap) {
+        this.foraDoHeap = foraDoHeap;
+        int capacidade = Math.max(capacidadeInicial, 16);
+        IntBuffer[] novasColunas = new IntBuffer[TOTAL_COLUNAS];
+        for (int coluna = 0; coluna < TOTAL_COLUNAS; coluna++) {
+            novasColunas[coluna] = alocarInteiros(capacidade);
+        }
+        colunas = novasColunas;
+        nomes = alocarBytes(capacidade * 16);
+    }
+
+    /**
+     * Acrescenta os dados do produto em uma nova posição.
+     *
+     * @param produto O produto a ser guardado.
+     * @return A posição do produto no catálogo.
+     */
+    public int adicionar(Produto produto) {
+        if (totalPosicoes == colunas[ID].capacity()) {
+            aumentarColunas();
+        }
+        int posicao = totalPosicoes;
+        IntBuffer[] atuais = colunas;
+        atuais[ID].put(posicao, produto.getId());
+        atuais[QUANTIDADE].put(posicao, produto.getQuantidade());
+        atuais[CAIXA_ID].put(posicao, produto.getCaixaID() != null ? produto.getCaixaID() : NULO);
+        atuais[CATEGORIA].put(posicao, categorias.codificar(produto.getCategoria()));
+        atuais[LOCALIZACAO].put(posicao, localizacoes.codificar(produto.getLocalizacao()));
+        atuais[CAIXA_NOME].put(posicao, caixas.codificar(produto.getCaixaNome()));
+        gravarNome(atuais, posicao, produto.getNome());
+        totalPosicoes++;
+        return posicao;
+    }
+
+    public int getTotalPosicoes() {
+        return totalPosicoes;
+    }
+
+    public int getId(int posicao) {
+        return colunas[ID].get(posicao);
+    }
+
+    public int getQuantidade(int posicao) {
+        return colunas[QUANTIDADE].get(posicao);
+    }
+
+    public Integer getCaixaId(int posicao) {
+        int caixaId = colunas[CAIXA_ID].get(posicao);
+        return caixaId != NULO ? caixaId : null;
+    }
+
+    public String getCategoria(int posicao) {
+        return categorias.texto(colunas[CATEGORIA].get(posicao));
+    }
+
+    public String getLocalizacao(int posicao) {
+        return localizacoes.texto(colunas[LOCALIZACAO].get(posicao));
+    }
+
+    public String getCaixaNome(int posicao) {
+        return caixas.texto(colunas[CAIXA_NOME].get(posicao));
+    }
+
+    public String getNome(int posicao) {
+        IntBuffer[] atuais = colunas;
+        int tamanho = atuais[TAMANHO_NOME].get(posicao);
+        if (tamanho == NULO) {
+            return null;
+        }
+        byte[] bytes = new byte[tamanho];
+        nomes.get(atuais[INICIO_NOME].get(posicao), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Retorna uma visão somente leitura do produto da posição, que lê os dados das colunas a cada consulta.
+     * A visão ocupa poucos bytes e pode ser exibida na tabela como qualquer produto; para alterá-lo, use copiar.
+     *
+     * @param posicao A posição do produto.
+     * @return O produto da posição.
+     */
+    public Produto getProduto(int posicao) {
+        return new ProdutoArmazenado(this, posicao);
+    }
+
+    /**
+     * Retorna o espaço reservado pelas colunas e pelos nomes, sem contar os dicionários.
+     *
+     * @return O número de bytes reservados.
+     */
+    public long getBytesReservados() {
+        return (long) colunas[ID].capacity() * Integer.BYTES * TOTAL_COLUNAS + nomes.capacity();
+    }
+
+    private void gravarNome(IntBuffer[] atuais, int posicao, String nome) {
+        if (nome == null) {
+            atuais[INICIO_NOME].put(posicao, 0);
+            atuais[TAMANHO_NOME].put(posicao, NULO);
+            return;
+        }
+        byte[] bytes = nome.getBytes(StandardCharsets.UTF_8);
+        if (bytesNomes + bytes.length > nomes.capacity()) {
+            ByteBuffer maior = alocarBytes(Math.max(nomes.capacity() * 2, bytesNomes + bytes.length));
+            maior.put(0, nomes, 0, bytesNomes);
+            nomes = maior;
+        }
+        nomes.put(bytesNomes, bytes);
+        atuais[INICIO_NOME].put(posicao, bytesNomes);
+        atuais[TAMANHO_NOME].put(posicao, bytes.length);
+        bytesNomes += bytes.length;
+    }
+
+    private void aumentarColunas() {
+        IntBuffer[] maiores = new IntBuffer[TOTAL_COLUNAS];
+        for (int coluna = 0; coluna < TOTAL_COLUNAS; coluna++) {
+            IntBuffer atual = colunas[coluna];
+            maiores[coluna] = alocarInteiros(atual.capacity() * 2);
+            maiores[coluna].put(0, atual, 0, totalPosicoes);
+        }
+        colunas = maiores;
+    }
+
+    private IntBuffer alocarInteiros(int capacidade) {
+        return foraDoHeap
+                ? ByteBuffer.allocateDirect(capacidade * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer()
+                : IntBuffer.allocate(capacidade);
+    }
+
+    private ByteBuffer alocarBytes(int capacidade) {
+        return foraDoHeap ? ByteBuffer.allocateDirect(capacidade) : ByteBuffer.allocate(capacidade);
+    }
+
+    /**
+     * Valores distintos de uma coluna, cada um com um código igual à sua posição no vetor de textos.
+     */
+    private static final class Dicionario {
+
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private volatile String[] textos = new String[16];
+
+        int codificar(String texto) {
+            if (texto == null) {
+                return NULO;
+            }
+            Integer codigo = codigos.get(texto);
+            if (codigo == null) {
+                codigo = codigos.size();
+                String[] atuais = textos;
+                if (codigo == atuais.length) {
+                    atuais = Arrays.copyOf(atuais, atuais.length * 2);
+                }
+                atuais[codigo] = texto;
+                textos = atuais;
+                codigos.put(texto, codigo);
+            }
+            return codigo;
+        }
+
+        String texto(int codigo) {
+            return codigo != NULO ? textos[codigo] : null;
+        }
+    }
+
+    /**
+     * Produto que lê os seus dados de uma posição do catálogo. Os campos herdados de Produto não são usados,
+     * e os métodos de alteração lançam UnsupportedOperationException, já que a posição não muda.
+     */
+    private static final class ProdutoArmazenado extends Produto {
+
+        private static final String SOMENTE_LEITURA = "Produto do catálogo em memória não pode ser alterado.";
+
+        private final ArmazemProdutos armazem;
+        private final int posicao;
+
+        ProdutoArmazenado(ArmazemProdutos armazem, int posicao) {
+            this.armazem = armazem;
+            this.posicao = posicao;
+        }
+
+        @Override
+        public Produto copiar() {
+            Produto copia = new Produto(getId(), getNome(), getQuantidade(), getCategoria(), getCaixaID(),
+                    getLocalizacao());
+            copia.setCaixaNome(getCaixaNome());
+            return copia;
+        }
+
+        @Override
+        public int getId() {
+            return armazem.getId(posicao);
+        }
+
+        @Override
+        public String getNome() {
+            return armazem.getNome(posicao);
+        }
+
+        @Override
+        public int getQuantidade() {
+            return armazem.getQuantidade(posicao);
+        }
+
+        @Override
+        public String getCategoria() {
+            return armazem.getCategoria(posicao);
+        }
+
+        @Override
+        public Integer getCaixaID() {
+            return armazem.getCaixaId(posicao);
+        }
+
+        @Override
+        public String getCaixaNome() {
+            return armazem.getCaixaNome(posicao);
+        }
+
+        @Override
+        public String getLocalizacao() {
+            return armazem.getLocalizacao(posicao);
+        }
+
+        @Override
+        public void setId(int id) {
+            throw new UnsupportedOperationException(SOMENTE_LEITURA);
+        }
+
+        @Override
+        public void setNome(String nome) {
+            throw new UnsupportedOperationException(SOMENTE_LEITURA);
+        }
+
+        @Override
+        public void setQuantidade(int quantidade) {
+            throw new UnsupportedOperationException(SOMENTE_LEITURA);
+        }
+
+        @Override
+        public void setCategoria(String categoria) {
+            throw new UnsupportedOperationException(SOMENTE_LEITURA);
+        }
+
+        @Override
+        public void setCaixaID(Integer caixaID) {
+            throw new UnsupportedOperationException(SOMENTE_LEITURA);
+        }
+
+        @Override
+        public void setCaixaNome(String caixaNome) {
+            throw new UnsupportedOperationException(SOMENTE_LEITURA);
+        }
+
+        @Override
+        public void setLocalizacao(String localizacao) {
+            throw new UnsupportedOperationException(SOMENTE_LEITURA);
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.estoque.ProdutoDAO;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Valores distintos de categoria, localização e caixa, com o número de produtos de cada um,
+ * usados como opções dos filtros da tabela.
+ * É carregado uma vez do banco e depois mantido pelos avisos de escrita do ServicoProduto, então
+ * atualizar as opções dos filtros após uma gravação não consulta o banco.
+ * Guarda as contagens de cada produto para descontar as antigas quando ele é alterado ou removido; como
+ * os produtos apontam para a contagem, e não para o texto, renomear um valor altera uma única entrada.
+ */
+public class CacheFacetas implements OuvinteProduto {
+
+    private static final int CATEGORIA = 0;
+    private static final int LOCALIZACAO = 1;
+    private static final int CAIXA = 2;
+
+    private List<Map<String, Contagem>> facetas = novasFacetas();
+    private Map<Integer, Contagem[]> valoresPorProduto = new HashMap<>();
+
+    // Avisos recebidos durante a carga, reaplicados sobre o resultado dela
+    private final List<Runnable> pendentes = new ArrayList<>();
+    private boolean carregando;
+    private volatile boolean pronto;
+
+    // Incrementada a cada mudança, para que a interface só atualize as opções quando algo mudou
+    private volatile long versao;
+
+    /**
+     * Carrega as facetas de todos os produtos do banco de dados.
+     *
+     * @param produtoDAO O DAO usado para percorrer os produtos.
+     * @throws SQLException Em caso de erro ao ler os produtos.
+     */
+    public void carregar(ProdutoDAO produtoDAO) throws SQLException {
+        synchronized (this) {
+            carregando = true;
+        }
+        long inicio = System.nanoTime();
+        List<Map<String, Contagem>> novasFacetas = novasFacetas();
+        Map<Integer, Contagem[]> novosValores = new HashMap<>();
+        try {
+            produtoDAO.percorrerFacetas((id, categoria, localizacao, nomeCaixa) ->
+                    registrar(novasFacetas, novosValores, id, new String[] { categoria, localizacao, nomeCaixa }));
+        } catch (SQLException e) {
+            synchronized (this) {
+                carregando = false;
+                pendentes.clear();
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            facetas = novasFacetas;
+            valoresPorProduto = novosValores;
+            carregando = false;
+            for (Runnable aviso : pendentes) {
+                aviso.run();
+            }
+            pendentes.clear();
+            versao++;
+            pronto = true;
+        }
+        System.out.println("Facetas dos filtros carregadas: " + novosValores.size() + " produtos em "
+                + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+    }
+
+    public boolean isPronto() {
+        return pronto;
+    }
+
+    public long getVersao() {
+        return versao;
+    }
+
+    public synchronized List<String> getCategorias() {
+        return valores(CATEGORIA);
+    }
+
+    public synchronized List<String> getLocalizacoes() {
+        return valores(LOCALIZACAO);
+    }
+
+    public synchronized List<String> getCaixas() {
+        return valores(CAIXA);
+    }
+
+    public synchronized int contarCategoria(String categoria) {
+        return contar(CATEGORIA, categoria);
+    }
+
+    public synchronized int contarLocalizacao(String localizacao) {
+        return contar(LOCALIZACAO, localizacao);
+    }
+
+    public synchronized int contarCaixa(String nomeCaixa) {
+        return contar(CAIXA, nomeCaixa);
+    }
+
+    /**
+     * Renomeia uma categoria nas opções dos filtros, mantendo a contagem de produtos dela.
+     *
+     * @param atual O nome atual da categoria.
+     * @param novo  O novo nome.
+     */
+    public synchronized void renomearCategoria(String atual, String novo) {
+        renomear(CATEGORIA, atual, novo);
+    }
+
+    /**
+     * Renomeia uma localização nas opções dos filtros, como em renomearCategoria.
+     *
+     * @param atual O nome atual da localização.
+     * @param novo  O novo nome.
+     */
+    public synchronized void renomearLocalizacao(String atual, String novo) {
+        renomear(LOCALIZACAO, atual, novo);
+    }
+
+    // Os avisos substituem os valores do produto, então reaplicá-los após a carga não conta nada em dobro.
+
+    @Override
+    public synchronized void aoAdicionar(Produto produto) {
+        atualizar(produto);
+    }
+
+    @Override
+    public synchronized void aoAlterar(Produto produto) {
+        atualizar(produto);
+    }
+
+    @Override
+    public synchronized void aoRemover(Produto produto) {
+        int id = produto.getId();
+        if (carregando) {
+            pendentes.add(() -> remover(id));
+        } else {
+            remover(id);
+        }
+    }
+
+    private void atualizar(Produto produto) {
+        int id = produto.getId();
+        String[] valores = { produto.getCategoria(), produto.getLocalizacao(),
+                produto.getCaixaID() != null ? produto.getCaixaNome() : null };
+        if (carregando) {
+            pendentes.add(() -> {
+                remover(id);
+                registrar(facetas, valoresPorProduto, id, valores);
+            });
+        } else {
+            remover(id);
+            registrar(facetas, valoresPorProduto, id, valores);
+        }
+    }
+
+    private void renomear(int faceta, String atual, String novo) {
+        if (carregando) {
+            pendentes.add(() -> renomearValor(faceta, atual, novo));
+        } else {
+            renomearValor(faceta, atual, novo);
+        }
+    }
+
+    private void renomearValor(int faceta, String atual, String novo) {
+        Map<String, Contagem> contagens = facetas.get(faceta);
+        Contagem contagem = contagens.remove(atual);
+        if (contagem == null) {
+            return;
+        }
+        Contagem existente = contagens.get(novo);
+        if (existente == null) {
+            contagem.valor = novo;
+            contagens.put(novo, contagem);
+        } else {
+            // Uma carga pode ter lido parte dos produtos já com o novo nome: as contagens são unidas
+            existente.produtos += contagem.produtos;
+            for (Contagem[] valores : valoresPorProduto.values()) {
+                if (valores[faceta] == contagem) {
+                    valores[faceta] = existente;
+                }
+            }
+        }
+        versao++;
+    }
+
+    private void remover(int id) {
+        Contagem[] antigos = valoresPorProduto.remove(id);
+        if (antigos == null) {
+            return;
+        }
+        for (int faceta = 0; faceta < antigos.length; faceta++) {
+            Contagem contagem = antigos[faceta];
+            if (contagem != null && --contagem.produtos == 0) {
+                facetas.get(faceta).remove(contagem.valor);
+            }
+        }
+        versao++;
+    }
+
+    // Conta os valores do produto e guarda a contagem de cada um
+    private void registrar(List<Map<String, Contagem>> facetas, Map<Integer, Contagem[]> valoresPorProduto,
+                           int id, String[] valores) {
+        Contagem[] contagens = new Contagem[valores.length];
+        for (int faceta = 0; faceta < valores.length; faceta++) {
+            String valor = valores[faceta];
+            if (valor == null || valor.isEmpty()) {
+                continue;
+            }
+            Contagem contagem = facetas.get(faceta).computeIfAbsent(valor, Contagem::new);
+            contagem.produtos++;
+            contagens[faceta] = contagem;
+        }
+        valoresPorProduto.put(id, contagens);
+        versao++;
+    }
+
+    private List<String> valores(int faceta) {
+        List<String> valores = new ArrayList<>(facetas.get(faceta).keySet());
+        valores.sort(null);
+        return valores;
+    }
+
+    private int contar(int faceta, String valor) {
+        Contagem contagem = valor != null ? facetas.get(faceta).get(valor) : null;
+        return contagem != null ? contagem.produtos : 0;
+    }
+
+    private static List<Map<String, Contagem>> novasFacetas() {
+        List<Map<String, Contagem>> facetas = new ArrayList<>(3);
+        for (int i = 0; i < 3; i++) {
+            facetas.add(new HashMap<>());
+        }
+        return facetas;
+    }
+
+    private static final class Contagem {
+        // Alterado só pela renomeação, que troca também a chave do mapa da faceta
+        private String valor;
+        private int produtos;
+
+        private Contagem(String valor) {
+            this.valor = valor;
+        }
+    }
+}
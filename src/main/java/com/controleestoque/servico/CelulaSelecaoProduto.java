@@ -0,0 +1,77 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+import javafx.beans.InvalidationListener;
+import javafx.beans.WeakInvalidationListener;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.TableCell;
+import javafx.scene.layout.HBox;
+
+/**
+ * Célula da coluna de seleção da tabela, com um CheckBox que mostra e altera a marcação do produto
+ * da linha em SelecaoProdutos.
+ * A célula é reaproveitada pela tabela ao rolar: o CheckBox e o ouvinte da seleção são criados uma única
+ * vez, no construtor, e updateItem só lê a marcação do novo produto. O clique é tratado por setOnAction,
+ * que só dispara por ação do usuário, e o ouvinte da seleção é fraco, para que células descartadas pela
+ * tabela não fiquem presas à seleção. A cada mudança da seleção, só a célula do produto afetado se atualiza.
+ */
+public class CelulaSelecaoProduto extends TableCell<Produto, Boolean> {
+
+    private final SelecaoProdutos selecao;
+    private final CheckBox checkBox = new CheckBox();
+    private final HBox container = new HBox(checkBox);
+
+    // Mantido em um campo: a seleção só guarda a referência fraca
+    private final InvalidationListener aoMudarSelecao;
+
+    /**
+     * Construtor que cria o CheckBox e passa a acompanhar a seleção.
+     *
+     * @param selecao A marcação de seleção dos produtos da tabela.
+     */
+    public CelulaSelecaoProduto(SelecaoProdutos selecao) {
+        this.selecao = selecao;
+        aoMudarSelecao = observavel -> {
+            Produto produto = getProduto();
+            if (produto != null && selecao.afeta(produto)) {
+                atualizarMarcacao();
+            }
+        };
+        container.setPadding(new Insets(5));
+        container.setAlignment(Pos.CENTER);
+        checkBox.setOnAction(evento -> {
+            Produto produto = getProduto();
+            if (produto != null) {
+                selecao.definir(produto, checkBox.isSelected());
+            }
+        });
+        selecao.versaoProperty().addListener(new WeakInvalidationListener(aoMudarSelecao));
+    }
+
+    @Override
+    protected void updateItem(Boolean item, boolean empty) {
+        super.updateItem(item, empty);
+        if (empty || getProduto() == null) {
+            setGraphic(null);
+        } else {
+            setGraphic(container);
+            atualizarMarcacao();
+        }
+    }
+
+    /**
+     * Mostra no CheckBox a marcação do produto da linha.
+     */
+    protected void atualizarMarcacao() {
+        Produto produto = getProduto();
+        if (produto != null) {
+            checkBox.setSelected(selecao.isSelecionado(produto));
+        }
+    }
+
+    private Produto getProduto() {
+        return getTableRow() != null ? getTableRow().getItem() : null;
+    }
+}
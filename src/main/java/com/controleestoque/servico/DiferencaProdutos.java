@@ -0,0 +1,163 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Transforma uma lista de produtos em outra com o menor conjunto de remoções, inserções e substituições,
+ * comparando os produtos pelo id, para que a tabela redesenhe só as linhas que mudaram e mantenha a
+ * seleção e a posição de rolagem.
+ * Os produtos que aparecem nas duas listas e cuja ordem relativa se mantém (a maior subsequência crescente
+ * das posições novas) ficam no lugar; os demais são removidos e inseridos na nova posição. Um produto
+ * mantido ou movido com os mesmos dados continua sendo a instância antiga; com dados diferentes, é trocado
+ * pelo novo. A marcação de seleção é guardada pelo id (SelecaoProdutos) e não depende da instância.
+ */
+public final class DiferencaProdutos {
+
+    /**
+     * Recebe as alterações feitas na lista, na ordem em que acontecem, com os índices da lista naquele momento.
+     */
+    public interface Notificacao {
+
+        void removido(int indice, Produto produto);
+
+        void adicionado(int de, int ate);
+
+        void substituido(int indice, Produto antigo);
+    }
+
+    private DiferencaProdutos() {
+    }
+
+    /**
+     * Altera a lista atual para que ela tenha os produtos da nova lista, na mesma ordem.
+     * As remoções são feitas em uma passada e a lista final é montada em outra, em tempo O(n log n).
+     *
+     * @param atual       A lista a ser alterada.
+     * @param novos       Os produtos que a lista deve conter.
+     * @param notificacao Recebe cada remoção, inserção e substituição feita.
+     * @return Sendo true se a lista foi alterada.
+     */
+    public static boolean aplicar(List<Produto> atual, List<? extends Produto> novos, Notificacao notificacao) {
+        Map<Integer, Integer> posicaoNova = new HashMap<>(novos.size() * 4 / 3 + 1);
+        for (int i = 0; i < novos.size(); i++) {
+            posicaoNova.put(novos.get(i).getId(), i);
+        }
+
+        // Posição na nova lista de cada produto atual, ou -1 se ele não está nela
+        int[] posicoes = new int[atual.size()];
+        for (int i = 0; i < atual.size(); i++) {
+            Integer posicao = posicaoNova.get(atual.get(i).getId());
+            posicoes[i] = posicao != null ? posicao : -1;
+        }
+        boolean[] mantidos = maiorSubsequenciaCrescente(posicoes);
+
+        // Remove em uma passada os produtos que não ficam no lugar, guardando os que serão movidos
+        Map<Integer, Produto> movidos = new HashMap<>();
+        boolean alterada = false;
+        int destino = 0;
+        for (int origem = 0; origem < atual.size(); origem++) {
+            Produto produto = atual.get(origem);
+            if (mantidos[origem]) {
+                atual.set(destino++, produto);
+            } else {
+                if (posicoes[origem] >= 0) {
+                    movidos.put(produto.getId(), produto);
+                }
+                notificacao.removido(destino, produto);
+                alterada = true;
+            }
+        }
+        atual.subList(destino, atual.size()).clear();
+
+        // Monta a lista final: os mantidos aparecem na ordem da nova lista, então basta um ponteiro sobre eles
+        List<Produto> resultado = new ArrayList<>(novos.size());
+        int mantido = 0;
+        int inicioInsercao = -1;
+        for (int i = 0; i < novos.size(); i++) {
+            Produto novo = novos.get(i);
+            if (mantido < atual.size() && atual.get(mantido).getId() == novo.getId()) {
+                if (inicioInsercao >= 0) {
+                    notificacao.adicionado(inicioInsercao, i);
+                    inicioInsercao = -1;
+                }
+                Produto antigo = atual.get(mantido++);
+                Produto escolhido = escolher(antigo, novo);
+                resultado.add(escolhido);
+                if (escolhido != antigo) {
+                    notificacao.substituido(i, antigo);
+                    alterada = true;
+                }
+            } else {
+                if (inicioInsercao < 0) {
+                    inicioInsercao = i;
+                }
+                Produto antigo = movidos.remove(novo.getId());
+                resultado.add(antigo != null ? escolher(antigo, novo) : novo);
+                alterada = true;
+            }
+        }
+        if (inicioInsercao >= 0) {
+            notificacao.adicionado(inicioInsercao, novos.size());
+        }
+
+        atual.clear();
+        atual.addAll(resultado);
+        return alterada;
+    }
+
+    /**
+     * Marca os índices de uma maior subsequência estritamente crescente das posições, ignorando as negativas.
+     */
+    private static boolean[] maiorSubsequenciaCrescente(int[] posicoes) {
+        int[] finais = new int[posicoes.length];
+        int[] anteriores = new int[posicoes.length];
+        int tamanho = 0;
+        for (int i = 0; i < posicoes.length; i++) {
+            if (posicoes[i] < 0) {
+                continue;
+            }
+            // Primeira subsequência cujo último valor não é menor que o atual
+            int inicio = 0;
+            int fim = tamanho;
+            while (inicio < fim) {
+                int meio = (inicio + fim) >>> 1;
+                if (posicoes[finais[meio]] < posicoes[i]) {
+                    inicio = meio + 1;
+                } else {
+                    fim = meio;
+                }
+            }
+            anteriores[i] = inicio > 0 ? finais[inicio - 1] : -1;
+            finais[inicio] = i;
+            if (inicio == tamanho) {
+                tamanho++;
+            }
+        }
+
+        boolean[] mantidos = new boolean[posicoes.length];
+        for (int i = tamanho > 0 ? finais[tamanho - 1] : -1; i >= 0; i = anteriores[i]) {
+            mantidos[i] = true;
+        }
+        return mantidos;
+    }
+
+    // Mantém a instância antiga se os dados não mudaram
+    private static Produto escolher(Produto antigo, Produto novo) {
+        return antigo == novo || mesmosDados(antigo, novo) ? antigo : novo;
+    }
+
+    private static boolean mesmosDados(Produto antigo, Produto novo) {
+        return antigo.getQuantidade() == novo.getQuantidade()
+                && Objects.equals(antigo.getNome(), novo.getNome())
+                && Objects.equals(antigo.getCategoria(), novo.getCategoria())
+                && Objects.equals(antigo.getCaixaID(), novo.getCaixaID())
+                && Objects.equals(antigo.getCaixaNome(), novo.getCaixaNome())
+                && Objects.equals(antigo.getLocalizacao(), novo.getLocalizacao());
+    }
+}
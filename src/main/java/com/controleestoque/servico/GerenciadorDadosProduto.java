@@ -1,13 +1,8 @@
 package com.controleestoque.servico;
 
 import com.controleestoque.estoque.Produto;
-import com.controleestoque.util.AlertaUtils;
-import javafx.collections.ObservableList;
 import javafx.scene.control.TableView;
 
-import java.sql.SQLException;
-import java.util.List;
-
 /**
  * Classe responsável por gerenciar o carregamento dos dados dos produtos.
  * Utiliza o serviço de produto para listar e atualizar a tabela com os dados.
@@ -23,22 +18,16 @@ public class GerenciadorDadosProduto {
     }
 
     /**
-     * Carrega todos os produtos do banco de dados e atualiza a tabela.
-     * Os dados são adicionados ao ObservableList para exibição na tabela.
+     * Carrega os produtos do banco de dados e atualiza a tabela.
+     * Apenas a primeira página é buscada; as demais são carregadas pela lista conforme a tabela é rolada.
+     * A lista notifica só as linhas alteradas, então a tabela não precisa ser redesenhada inteira.
      *
-     * @param produtosData É um ObservableList onde os produtos serão armazenados.
+     * @param produtosData É a lista paginada onde os produtos serão armazenados.
      * @param tabela    É a tabela que será atualizada com os dados carregados.
      */
-    public void carregarDados(ObservableList<Produto> produtosData, TableView<Produto> tabela) {
-        try {
-            List<Produto> produtos = servicoProduto.listarProdutos();
-            produtosData.clear();
-            produtosData.addAll(produtos);
-            tabela.setItems(produtosData);
-            tabela.refresh();
-        } catch (SQLException e) {
-            AlertaUtils.mostrarAlertaErro("Erro!", "Erro ao carregar os dados: " + e.getMessage());
-        }
+    public void carregarDados(ListaPaginadaProdutos produtosData, TableView<Produto> tabela) {
+        produtosData.reiniciarPaginacao();
+        tabela.setItems(produtosData);
     }
 
 }
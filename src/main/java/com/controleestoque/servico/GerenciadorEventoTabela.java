@@ -1,14 +1,13 @@
 package com.controleestoque.servico;
 
 import com.controleestoque.estoque.Produto;
-import com.controleestoque.util.EstiloUI;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
-import javafx.geometry.Pos;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
-import javafx.scene.layout.HBox;
+import javafx.scene.input.KeyCode;
+import javafx.scene.input.KeyEvent;
 import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
@@ -20,43 +19,32 @@ public class GerenciadorEventoTabela {
 
     private TableView<Produto> tabela;
     private CheckBox CheckBox;
+    private SelecaoProdutos selecao;
+
+    // Linha do último clique simples, início do intervalo marcado com Shift
+    private int ultimoIndiceClicado = -1;
 
     /**
      * Construtor que inicializa o gerenciador com a tabela e o checkbox de seleção.
      *
      * @param tabela  A tabela de produtos.
      * @param CheckBox  O CheckBox para seleção global.
+     * @param selecao  A marcação de seleção dos produtos da tabela.
      */
-    public GerenciadorEventoTabela(TableView<Produto> tabela, CheckBox CheckBox) {
+    public GerenciadorEventoTabela(TableView<Produto> tabela, CheckBox CheckBox, SelecaoProdutos selecao) {
         this.tabela = tabela;
         this.CheckBox = CheckBox;
+        this.selecao = selecao;
     }
 
     /**
      * Configura todos os eventos da tabela.
      */
     public void configurarEventos() {
-        configurarCliqueDuplo();
         configurarSelecaoTodos();
         configurarCheckBox();
         configurarCliqueLinha();
-    }
-
-    /**
-     * Configura evento de clique duplo nas linhas da tabela para mostrar os detalhes do produto.
-     */
-    private void configurarCliqueDuplo() {
-
-        tabela.setRowFactory(tb -> {
-            TableRow<Produto> row = new TableRow<>();
-            row.setOnMouseClicked(evento -> {
-                if (evento.getClickCount() == 2 && (!row.isEmpty())) {
-                    Produto produtoSelecionado = row.getItem();
-                    mostrarDetalhesProduto(produtoSelecionado);
-                }
-            });
-            return row;
-        });
+        configurarInversaoSelecao();
     }
 
     /**
@@ -93,24 +81,20 @@ public class GerenciadorEventoTabela {
      * Configura a lógica para selecionar todos os produtos ou desmarcá-los quando o CheckBox global é alterado.
      */
     private void configurarSelecaoTodos() {
-        ObservableList<Produto> produtosData = tabela.getItems();
         ObservableList<Produto> produtosSelecionados = tabela.getSelectionModel().getSelectedItems();
 
         produtosSelecionados.addListener((ListChangeListener<Produto>) eventoLista -> {
             while (eventoLista.next()) {
                 if (eventoLista.wasAdded()) {
                     for (Produto produto : eventoLista.getAddedSubList()) {
-                        produto.setSelecionado(true);
+                        selecao.definir(produto, true);
                     }
                 } else if (eventoLista.wasRemoved()) {
                     for (Produto produto : eventoLista.getRemoved()) {
-                        produto.setSelecionado(false);
+                        selecao.definir(produto, false);
                     }
                 }
             }
-
-            tabela.refresh();
-            atualizarCheckBoxGlobal();
         });
     }
 
@@ -119,88 +103,76 @@ public class GerenciadorEventoTabela {
      */
     private void configurarCheckBox() {
         CheckBox.setOnAction(event -> {
-            boolean selecionarTodos = CheckBox.isSelected();
-            ObservableList<Produto> produtosData = tabela.getItems();
-
-            for (Produto produto : produtosData) {
-                produto.setSelecionado(selecionarTodos);
+            if (CheckBox.isSelected()) {
+                selecao.selecionarTodos();
+            } else {
+                selecao.limpar();
             }
-
-            tabela.refresh();
         });
 
-        tabela.getItems().addListener((ListChangeListener<Produto>) eventoLista -> {
-            while (eventoLista.next()) {
-                atualizarCheckBoxGlobal();
-            }
-        });
+        // A seleção muda a cada marcação e a cada alteração da lista; a contagem mantida evita percorrer a lista
+        selecao.versaoProperty().addListener((observavel, antiga, nova) -> atualizarCheckBoxGlobal());
     }
 
     /**
      * Atualiza o estado do CheckBox global com base na seleção atual dos produtos.
      */
     private void atualizarCheckBoxGlobal() {
-        ObservableList<Produto> produtosData = tabela.getItems();
-        boolean todosSelecionados = produtosData.stream().allMatch(Produto::isSelecionado);
+        CheckBox.setSelected(selecao.isTodosSelecionados());
+    }
 
-        CheckBox.setSelected(todosSelecionados);
+    /**
+     * Configura o atalho Ctrl+I para inverter a seleção de todos os produtos.
+     */
+    private void configurarInversaoSelecao() {
+        tabela.addEventHandler(KeyEvent.KEY_PRESSED, evento -> {
+            if (evento.isShortcutDown() && evento.getCode() == KeyCode.I) {
+                selecao.inverter();
+                evento.consume();
+            }
+        });
     }
 
     /**
      * Configura a renderização para a coluna de CheckBox na tabela.
+     * As células e as linhas acompanham a seleção sozinhas, sem redesenhar a tabela a cada marcação.
      *
      * @param colunaCheckBox A coluna de CheckBox da tabela.
      */
     public void configurarCelulaCheckBox(TableColumn<Produto, Boolean> colunaCheckBox) {
 
-        colunaCheckBox.setCellFactory(coluna -> new TableCell<Produto, Boolean>() {
-            private final CheckBox checkBox = new CheckBox();
-            private final HBox container = new HBox(checkBox);
-
-            {
-                container.setStyle("-fx-alignment: center;");
-                container.setPadding(new Insets(5));
-                container.setAlignment(Pos.CENTER);
-            }
-
-            @Override
-            protected void updateItem(Boolean item, boolean empty) {
-                super.updateItem(item, empty);
-                if (empty || getTableRow().getItem() == null) {
-                    setGraphic(null);
-                } else {
-                    checkBox.selectedProperty().unbind();
-                    Produto produto = (Produto) getTableRow().getItem();
-                    checkBox.setSelected(produto.isSelecionado());
-                    checkBox.selectedProperty().addListener((obs, wasSelected, isNowSelected) -> {
-                        produto.setSelecionado(isNowSelected);
-                        EstiloUI.atualizarEstiloLinhaSelecionada(getTableRow(), produto);
-                    });
-                    setGraphic(container);
-                    EstiloUI.atualizarEstiloLinhaSelecionada(getTableRow(), produto);
-                }
-            }
-        });
+        colunaCheckBox.setCellFactory(coluna -> new CelulaSelecaoProduto(selecao));
     }
 
     /**
-     * Configura evento de clique simples para alterar a seleção do produto na tabela.
+     * Configura os cliques nas linhas: o clique simples altera a seleção do produto e o duplo mostra os detalhes.
+     * Com Shift, o intervalo entre o último clique e a linha clicada recebe a marcação da linha clicada.
+     * O destaque da linha acompanha a seleção (LinhaSelecaoProduto).
      */
     private void configurarCliqueLinha() {
         tabela.setRowFactory(tv -> {
-            TableRow<Produto> row = new TableRow<>();
+            TableRow<Produto> row = new LinhaSelecaoProduto(selecao);
 
             row.setOnMouseClicked(event -> {
-                if (!row.isEmpty() && event.getClickCount() == 1) {
+                if (row.isEmpty()) {
+                    return;
+                }
+                if (event.getClickCount() == 2) {
+                    mostrarDetalhesProduto(row.getItem());
+                } else if (event.getClickCount() == 1) {
                     Produto produto = row.getItem();
-                    produto.setSelecionado(!produto.isSelecionado());
-
-                    EstiloUI.atualizarEstiloLinhaSelecionada(row, produto);
+                    int indice = row.getIndex();
+                    if (event.isShiftDown() && ultimoIndiceClicado >= 0) {
+                        selecao.definirIntervalo(Math.min(ultimoIndiceClicado, indice),
+                                Math.max(ultimoIndiceClicado, indice) + 1, true);
+                    } else {
+                        selecao.alternar(produto);
+                    }
+                    ultimoIndiceClicado = indice;
 
-                    if (!produto.isSelecionado()) {
-                        tabela.getSelectionModel().clearSelection(tabela.getItems().indexOf(produto));
+                    if (!selecao.isSelecionado(produto)) {
+                        tabela.getSelectionModel().clearSelection(indice);
                     }
-                    tabela.refresh();
                 }
             });
 
@@ -1,17 +1,24 @@
 package com.controleestoque.servico;
 
+import com.controleestoque.estoque.ConsultaCancelavel;
 import com.controleestoque.estoque.Produto;
 import com.controleestoque.util.AlertaUtils;
+import com.controleestoque.util.ConfiguracaoBanco;
+import javafx.animation.PauseTransition;
 import javafx.application.Platform;
-import javafx.collections.ObservableList;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.TableView;
 import javafx.scene.control.TextField;
+import javafx.util.Duration;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 /**
  * Classe responsável por gerenciar os filtros de pesquisa da tabela.
+ * Os filtros são avaliados em segundo plano: a digitação só dispara a busca depois de uma pausa,
+ * cada nova busca cancela a anterior e resultados de buscas já substituídas são descartados.
  */
 public class GerenciadorFiltroProduto {
 
@@ -23,9 +30,19 @@ public class GerenciadorFiltroProduto {
     private ComboBox<String> filtroCategoria;
     private ComboBox<String> filtroLocalizacao;
     private ComboBox<String> filtroCaixa;
-    private ObservableList<Produto> produtosData;
+    private ListaPaginadaProdutos produtosData;
     private TableView<Produto> tabela;
 
+    private final PauseTransition pausaDigitacao;
+    private final ExecutorService executor;
+    private ConsultaCancelavel consultaEmAndamento;
+
+    // Incrementada a cada aplicação dos filtros, para descartar resultados de buscas anteriores
+    private volatile int geracao;
+
+    // Versão do cache de facetas usada na última atualização das opções dos filtros
+    private long versaoFacetas = -1;
+
     /**
      * Construtor que inicializa o gerenciador de filtros e configura os eventos nos campos de entrada.
      *
@@ -37,14 +54,14 @@ public class GerenciadorFiltroProduto {
      * @param filtroCategoria          O comboBox para seleção de categoria.
      * @param filtroLocalizacao        O comboBox para seleção de localização.
      * @param filtroCaixa              O comboBox para seleção de caixa.
-     * @param produtosData             A Lista observável de produtos exibidos na tabela.
+     * @param produtosData             A Lista paginada de produtos exibidos na tabela.
      * @param tabela                   A tabela.
      */
     public GerenciadorFiltroProduto(ServicoProduto servicoProduto, GerenciadorDadosProduto gerenciadorDadosProduto,
                                     TextField campoPesquisa, TextField campoQuantidadeMinima,
                                     TextField campoQuantidadeMaxima, ComboBox<String> filtroCategoria,
                                     ComboBox<String> filtroLocalizacao, ComboBox<String> filtroCaixa,
-                                    ObservableList<Produto> produtosData, TableView<Produto> tabela) {
+                                    ListaPaginadaProdutos produtosData, TableView<Produto> tabela) {
         this.servicoProduto = servicoProduto;
         this.gerenciadorDadosProduto = gerenciadorDadosProduto;
         this.campoPesquisa = campoPesquisa;
@@ -56,6 +73,14 @@ public class GerenciadorFiltroProduto {
         this.produtosData = produtosData;
         this.tabela = tabela;
 
+        this.pausaDigitacao = new PauseTransition(Duration.millis(ConfiguracaoBanco.getFiltroAtrasoDigitacaoMs()));
+        this.pausaDigitacao.setOnFinished(evento -> aplicarFiltros());
+        this.executor = Executors.newSingleThreadExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "filtros-produtos");
+            thread.setDaemon(true);
+            return thread;
+        });
+
         configurarFiltros(); 
     }
 
@@ -64,43 +89,113 @@ public class GerenciadorFiltroProduto {
      */
     private void configurarFiltros() {
 
-        campoPesquisa.textProperty().addListener((observavelTexto, textoAntigo, textoNovo) -> aplicarFiltros());
-        campoQuantidadeMinima.setOnKeyReleased(evento -> aplicarFiltros());
-        campoQuantidadeMaxima.setOnKeyReleased(evento -> aplicarFiltros());
+        campoPesquisa.textProperty().addListener((observavelTexto, textoAntigo, textoNovo) -> agendarFiltros());
+        campoQuantidadeMinima.setOnKeyReleased(evento -> agendarFiltros());
+        campoQuantidadeMaxima.setOnKeyReleased(evento -> agendarFiltros());
         filtroCategoria.setOnAction(evento -> aplicarFiltros());
         filtroLocalizacao.setOnAction(evento -> aplicarFiltros());
         filtroCaixa.setOnAction(evento -> aplicarFiltros());
     }
 
+    /**
+     * Agenda a aplicação dos filtros para depois da pausa de digitação; cada tecla reinicia a contagem.
+     */
+    private void agendarFiltros() {
+        pausaDigitacao.playFromStart();
+    }
+
+    /**
+     * Atualiza a tabela depois de uma escrita nos produtos. Sem filtros, a tabela está paginada e recebe só
+     * os produtos alterados desde a última carga; com filtros, a busca é refeita, pois a correspondência
+     * dos filtros (como os termos da pesquisa) é decidida pela consulta e não é repetida na memória.
+     */
+    public void atualizarAlteracoes() {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(this::atualizarAlteracoes);
+            return;
+        }
+        if (produtosData.isPaginacaoAtiva()) {
+            produtosData.atualizarAlteracoes();
+        } else {
+            aplicarFiltros();
+        }
+    }
+
     /**
      * Aplica os filtros de acordo com os valores fornecidos nos campos e ComboBoxes,
+     * Sem nenhum filtro preenchido, a tabela volta a ser carregada por páginas.
+     * Os valores são lidos na thread do JavaFX e a busca roda em segundo plano; a busca anterior,
+     * se ainda estiver em andamento, é cancelada.
      */
     public void aplicarFiltros() {
-
-        Platform.runLater(() -> {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(this::aplicarFiltros);
+            return;
+        }
+        pausaDigitacao.stop();
+        final int geracaoFiltro = ++geracao;
+        if (consultaEmAndamento != null) {
+            consultaEmAndamento.cancelar();
+            consultaEmAndamento = null;
+        }
+
+        String termo = campoPesquisa.getText();
+        String categoria = filtroCategoria.getSelectionModel().getSelectedItem();
+        String localizacao = filtroLocalizacao.getSelectionModel().getSelectedItem();
+        String caixa = filtroCaixa.getSelectionModel().getSelectedItem();
+        Integer quantidadeMin;
+        Integer quantidadeMax;
+        try {
+            quantidadeMin = !campoQuantidadeMinima.getText().isEmpty()
+                    ? Integer.parseInt(campoQuantidadeMinima.getText())
+                    : null;
+            quantidadeMax = !campoQuantidadeMaxima.getText().isEmpty()
+                    ? Integer.parseInt(campoQuantidadeMaxima.getText())
+                    : null;
+        } catch (NumberFormatException e) {
+            AlertaUtils.mostrarAlertaErro("Erro de Validação!", "Quantidade mínima ou máxima inválida.");
+            return;
+        }
+
+        if ((termo == null || termo.isEmpty()) && categoria == null && localizacao == null && caixa == null
+                && quantidadeMin == null && quantidadeMax == null) {
+            produtosData.reiniciarPaginacao();
+            return;
+        }
+
+        ConsultaCancelavel consulta = new ConsultaCancelavel(ConfiguracaoBanco.getFiltroTimeoutConsultaSeg());
+        consultaEmAndamento = consulta;
+        executor.execute(() -> {
+            // Uma busca mais nova já foi pedida enquanto esta aguardava na fila
+            if (geracaoFiltro != geracao) {
+                return;
+            }
             try {
-                String termo = campoPesquisa.getText();
-                String categoria = filtroCategoria.getSelectionModel().getSelectedItem();
-                String localizacao = filtroLocalizacao.getSelectionModel().getSelectedItem();
-                String caixa = filtroCaixa.getSelectionModel().getSelectedItem();
-                Integer quantidadeMin = !campoQuantidadeMinima.getText().isEmpty()
-                        ? Integer.parseInt(campoQuantidadeMinima.getText())
-                        : null;
-                Integer quantidadeMax = !campoQuantidadeMaxima.getText().isEmpty()
-                        ? Integer.parseInt(campoQuantidadeMaxima.getText())
-                        : null;
-
-                List<Produto> produtosFiltrados = servicoProduto.buscarProdutosComFiltros(termo, categoria, localizacao,
-                        caixa, quantidadeMin, quantidadeMax);
-
-                produtosData.clear();
-                produtosData.addAll(produtosFiltrados);
-                tabela.refresh();
-
-            } catch (NumberFormatException e) {
-                AlertaUtils.mostrarAlertaErro("Erro de Validação!", "Quantidade mínima ou máxima inválida.");
+                // Com o catálogo em memória, os filtros são resolvidos pelo motor sem consultar o banco
+                List<Produto> produtosFiltrados = servicoProduto.isMotorFiltroPronto()
+                        ? servicoProduto.getMotorFiltro().filtrar(termo, categoria, localizacao, caixa,
+                                quantidadeMin, quantidadeMax)
+                        : servicoProduto.buscarProdutosComFiltros(termo, categoria, localizacao, caixa,
+                                quantidadeMin, quantidadeMax, consulta);
+
+                Platform.runLater(() -> {
+                    if (geracaoFiltro != geracao) {
+                        return;
+                    }
+                    consultaEmAndamento = null;
+                    produtosData.desativarPaginacao();
+                    // Troca só as linhas que mudaram; a tabela mantém a seleção e a rolagem
+                    produtosData.setAll(produtosFiltrados);
+                });
             } catch (SQLException e) {
-                AlertaUtils.mostrarAlertaErro("Erro!", "Erro ao aplicar filtros: " + e.getMessage());
+                if (consulta.isCancelada()) {
+                    return;
+                }
+                Platform.runLater(() -> {
+                    if (geracaoFiltro == geracao) {
+                        AlertaUtils.mostrarAlertaErro("Erro!", "Erro ao aplicar filtros: " + e.getMessage());
+                    }
+                });
             }
         });
     }
@@ -112,9 +207,16 @@ public class GerenciadorFiltroProduto {
      */
     public void atualizarFiltros() throws SQLException {
 
+        // Com o cache de facetas, as opções vêm da memória e só são trocadas se algum produto mudou
+        CacheFacetas cache = servicoProduto.getCacheFacetas();
+        long versao = cache != null ? cache.getVersao() : -1;
+        if (cache != null && versao == versaoFacetas) {
+            return;
+        }
         filtroCategoria.getItems().setAll(servicoProduto.getTodasCategorias());
         filtroLocalizacao.getItems().setAll(servicoProduto.getTodasLocalizacoes());
         filtroCaixa.getItems().setAll(servicoProduto.getTodasCaixas());
+        versaoFacetas = versao;
     }
 
     /**
@@ -1,21 +1,21 @@
 package com.controleestoque.servico;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import com.controleestoque.estoque.Produto;
+import java.util.PriorityQueue;
 
 import com.controleestoque.gui.Tabela;
 import javafx.application.Platform;
-import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.chart.BarChart;
 import javafx.scene.chart.CategoryAxis;
 import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.XYChart;
-import javafx.scene.control.Label;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
@@ -24,82 +24,207 @@ import javafx.scene.shape.Rectangle;
 import javafx.scene.text.Text;
 /**
  * Classe responsável pela gestão e exibição do gráfico.
+ * O gráfico é criado uma única vez; cada atualização apenas altera os valores das barras existentes,
+ * acrescentando ou retirando barras quando as categorias exibidas mudam.
  */
 public class GerenciadorGrafico {
 
+	private static final int MAX_CATEGORIAS = 10;
+	private static final String OUTRAS = "Outras";
+	private static final List<Color> CORES = List.of(Color.RED, Color.BLUE, Color.GREEN, Color.YELLOW, Color.PURPLE);
+	private static final Color COR_OUTRAS = Color.GRAY;
+
+	// Maior total primeiro; totais iguais em ordem alfabética, para que a escolha das categorias não dependa
+	// da ordem do Map
+	private static final Comparator<Map.Entry<String, Long>> MAIOR_PRIMEIRO =
+			Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
 	private VBox grafico;
+	private XYChart.Series<String, Number> serie;
+	private HBox legendaContainer;
+	private final Map<String, XYChart.Data<String, Number>> barras = new HashMap<>();
+	private final Map<String, Color> coresCategorias = new HashMap<>();
+	private int proximaCor;
+
 	private BorderPane layoutPrincipal;
-	private ObservableList<Produto> produtosData;
+	private ServicoProduto servicoProduto;
 	private Tabela tabela;
 
 	/**
 	 * Construtor que inicializa o gerenciador de gráficos com os dados e layout fornecidos.
 	 *
 	 * @param layoutPrincipal O layout principal da aplicação.
-	 * @param produtosData A lista observável de produtos a serem exibidos no gráfico.
+	 * @param servicoProduto O serviço usado para obter os totais do catálogo.
 	 * @param tabela O componente de tabela para alternar entre tabela e gráfico.
 	 */
-	public GerenciadorGrafico(BorderPane layoutPrincipal, ObservableList<Produto> produtosData, Tabela tabela) {
+	public GerenciadorGrafico(BorderPane layoutPrincipal, ServicoProduto servicoProduto, Tabela tabela) {
 		this.layoutPrincipal = layoutPrincipal;
-		this.produtosData = produtosData;
+		this.servicoProduto = servicoProduto;
 		this.tabela = tabela;
 	}
 
 	/**
 	 * Alterna a visualização entre a tabela ou gráfico.
+	 * A lista da tabela não muda enquanto o gráfico é exibido, então voltar para a tabela não a recarrega.
 	 *
 	 * @param mostrarGrafico Sendo true para exibir o gráfico e false para exibir a tabela.
 	 */
 	public void alternaTabelaOuGrafico(boolean mostrarGrafico) {
 		if (mostrarGrafico) {
 			tabela.getTabelaContainer().setVisible(false);
+			layoutPrincipal.setCenter(getGrafico());
 			atualizarGrafico();
 		} else {
 			layoutPrincipal.setCenter(tabela.getTabelaContainer());
 			tabela.getTabelaContainer().setVisible(true);
-			tabela.atualizarTabela();
 		}
 		layoutPrincipal.requestLayout();
 	}
 
 	/**
-	 * Atualiza o gráfico com os dados atuais disponíveis na lista de produtos.
+	 * Atualiza o gráfico com os produtos exibidos na tabela: com filtros ativos, usa os totais da lista
+	 * filtrada, mantidos pelo totalizador da tabela; sem filtros, os totais de todo o catálogo são
+	 * consultados no banco em segundo plano.
 	 */
 	public void atualizarGrafico() {
 		Platform.runLater(() -> {
-			if (grafico != null) {
-				layoutPrincipal.getChildren().remove(grafico);
+			if (!tabela.getProdutosData().isPaginacaoAtiva()) {
+				exibirTotais(tabela.getTotalizadorProdutos().getTotalPorCategoria());
+				return;
 			}
 
-			if (produtosData == null || produtosData.isEmpty()) {
-				return;
+			Thread thread = new Thread(() -> {
+				try {
+					Map<String, Long> totalPorCategoria = GerenciadorTotalizacaoProduto.calcularTotalCatalogo(servicoProduto);
+					Platform.runLater(() -> exibirTotais(totalPorCategoria));
+				} catch (SQLException e) {
+					System.err.println("Erro ao calcular os totais do gráfico: " + e.getMessage());
+				}
+			});
+			thread.setDaemon(true);
+			thread.start();
+		});
+	}
+
+	// Atualiza as barras no lugar: altera os valores das categorias que continuam no gráfico,
+	// retira as que saíram e acrescenta as novas antes da barra "Outras"
+	private void exibirTotais(Map<String, Long> totalPorCategoria) {
+		getGrafico();
+		List<Map.Entry<String, Long>> maiores = new ArrayList<>(MAX_CATEGORIAS + 1);
+		long outras = selecionarMaiores(totalPorCategoria, maiores);
+		if (outras > 0) {
+			// Uma categoria chamada "Outras" entre as maiores recebe também o restante
+			maiores.removeIf(entry -> OUTRAS.equals(entry.getKey()));
+			maiores.add(Map.entry(OUTRAS, outras + totalPorCategoria.getOrDefault(OUTRAS, 0L)));
+		}
+
+		Map<String, Long> exibidas = new HashMap<>();
+		for (Map.Entry<String, Long> entry : maiores) {
+			exibidas.put(entry.getKey(), entry.getValue());
+		}
+		boolean mudouCategorias = serie.getData().removeIf(barra -> !exibidas.containsKey(barra.getXValue()));
+		if (mudouCategorias) {
+			barras.keySet().retainAll(exibidas.keySet());
+		}
+
+		for (Map.Entry<String, Long> entry : maiores) {
+			XYChart.Data<String, Number> barra = barras.get(entry.getKey());
+			if (barra != null) {
+				if (barra.getYValue().longValue() != entry.getValue()) {
+					barra.setYValue(entry.getValue());
+				}
+				continue;
 			}
+			barra = novaBarra(entry.getKey(), entry.getValue());
+			barras.put(entry.getKey(), barra);
+			XYChart.Data<String, Number> barraOutras = barras.get(OUTRAS);
+			int posicao = serie.getData().indexOf(barraOutras);
+			if (barraOutras != barra && posicao >= 0) {
+				serie.getData().add(posicao, barra);
+			} else {
+				serie.getData().add(barra);
+			}
+			mudouCategorias = true;
+		}
 
-			grafico = GerenciadorGrafico.criaGraficoPorCategoria(produtosData);
-			layoutPrincipal.setCenter(grafico);
+		if (mudouCategorias) {
+			atualizarLegenda();
+		}
+	}
 
-			grafico.setVisible(true);
-			grafico.setManaged(true);
-			grafico.requestLayout();
+	/**
+	 * Escolhe as categorias de maior total com um heap limitado a MAX_CATEGORIAS entradas, sem ordenar
+	 * todas as categorias.
+	 *
+	 * @param totalPorCategoria O total de cada categoria.
+	 * @param maiores           Recebe as categorias escolhidas, da maior para a menor.
+	 * @return A soma dos totais das categorias que ficaram de fora.
+	 */
+	private static long selecionarMaiores(Map<String, Long> totalPorCategoria, List<Map.Entry<String, Long>> maiores) {
+		// A cabeça do heap é a menor das categorias escolhidas até agora
+		PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(MAX_CATEGORIAS, MAIOR_PRIMEIRO.reversed());
+		long restante = 0;
+		for (Map.Entry<String, Long> entry : totalPorCategoria.entrySet()) {
+			if (heap.size() < MAX_CATEGORIAS) {
+				heap.add(entry);
+			} else if (MAIOR_PRIMEIRO.compare(entry, heap.peek()) < 0) {
+				restante += heap.poll().getValue();
+				heap.add(entry);
+			} else {
+				restante += entry.getValue();
+			}
+		}
+		maiores.addAll(heap);
+		maiores.sort(MAIOR_PRIMEIRO);
+		return restante;
+	}
+
+	private XYChart.Data<String, Number> novaBarra(String categoria, long total) {
+		XYChart.Data<String, Number> barra = new XYChart.Data<>(categoria, total);
+		Color cor = corDaCategoria(categoria);
+		barra.nodeProperty().addListener((obs, oldNode, newNode) -> {
+			if (newNode != null) {
+				newNode.setStyle("-fx-bar-fill: " + obterCodigoHexadecimal(cor) + ";");
+			}
 		});
+		return barra;
+	}
+
+	// Cada categoria mantém a sua cor enquanto o gráfico existir
+	private Color corDaCategoria(String categoria) {
+		if (OUTRAS.equals(categoria)) {
+			return COR_OUTRAS;
+		}
+		return coresCategorias.computeIfAbsent(categoria, c -> CORES.get(proximaCor++ % CORES.size()));
+	}
+
+	private void atualizarLegenda() {
+		legendaContainer.getChildren().clear();
+		for (XYChart.Data<String, Number> barra : serie.getData()) {
+			Rectangle colorBox = new Rectangle(15, 15, corDaCategoria(barra.getXValue()));
+			Text legendaItem = new Text(barra.getXValue());
+			legendaItem.setStyle("-fx-font-size: 18px; -fx-fill: white; -fx-font-weight: bold;");
+			HBox legendaItemContainer = new HBox(5, colorBox, legendaItem);
+			legendaItemContainer.setAlignment(Pos.CENTER_LEFT);
+			legendaContainer.getChildren().add(legendaItemContainer);
+		}
 	}
 
 	/**
-	 * Cria um gráfico de barras para exibir a quantidade de produtos por categoria.
+	 * Retorna o gráfico de barras da quantidade de produtos por categoria, criando-o no primeiro uso.
 	 *
-	 * @param produtosData A lista observável de produtos para geração do gráfico.
 	 * @return VBox contendo o gráfico e a legenda correspondente.
 	 */
-
-	public static VBox criaGraficoPorCategoria(ObservableList<Produto> produtosData) {
-		if (produtosData == null || produtosData.isEmpty()) {
-			System.out.println("Nenhum dado disponível para criar o gráfico.");
-			return new VBox(new Label("Sem dados disponíveis para o gráfico."));
+	private VBox getGrafico() {
+		if (grafico != null) {
+			return grafico;
 		}
 		//Eixos do gráfico
 		CategoryAxis xAxis = new CategoryAxis();
 		xAxis.setLabel("Categoria");
 		xAxis.setTickLabelsVisible(false);
+		// Sem animação no eixo de categorias, que reposiciona as barras quando uma categoria entra ou sai
+		xAxis.setAnimated(false);
 
 		NumberAxis yAxis = new NumberAxis();
 		yAxis.setLabel("Quantidade");
@@ -121,67 +246,19 @@ public class GerenciadorGrafico {
 		barChart.getStylesheets().add("css/grafico.css"); // arquivo css do gráfico
 		barChart.getStyleClass().add("custom-bar-chart");
 
-		XYChart.Series<String, Number> dataSeries = new XYChart.Series<>();
-		dataSeries.setName("Estoque");
-
-		Map<String, Integer> totalPorCategoria = GerenciadorTotalizacaoProduto.calcularTotalPorCategoria(produtosData);
-		if (totalPorCategoria.isEmpty()) {
-			System.out.println("Nenhuma categoria encontrada para o gráfico.");
-			return new VBox(new Label("Sem categorias para o gráfico."));
-		}
-
-		//Cores das barras
-		List<Color> colors = List.of(Color.RED, Color.BLUE, Color.GREEN, Color.YELLOW, Color.PURPLE);
-		Map<String, Color> categoriaCores = new HashMap<>();
-		final int[] colorIndex = { 0 };
-
-		final int maxCategorias = 10;
-		int categoriaCount = 0;
-		for (Map.Entry<String, Integer> entry : totalPorCategoria.entrySet()) {
-			if (categoriaCount >= maxCategorias) {
-				break;
-			}
-
-			if (entry.getKey() == null || entry.getValue() == null) {
-				continue;
-			}
-
-			XYChart.Data<String, Number> data = new XYChart.Data<>(entry.getKey(), entry.getValue());
-			dataSeries.getData().add(data);
-
-			Color color = colors.get(colorIndex[0] % colors.size());
-			categoriaCores.put(entry.getKey(), color);
-			data.nodeProperty().addListener((obs, oldNode, newNode) -> {
-				if (newNode != null) {
-					newNode.setStyle("-fx-bar-fill: " + obterCodigoHexadecimal(color) + ";");
-				}
-			});
-			colorIndex[0]++;
-			categoriaCount++;
-		}
-
-		barChart.getData().clear();
-		barChart.getData().add(dataSeries);
+		serie = new XYChart.Series<>();
+		serie.setName("Estoque");
+		barChart.getData().add(serie);
 
 		//legenda
-		HBox legendaContainer = new HBox(10);
+		legendaContainer = new HBox(10);
 		legendaContainer.setAlignment(Pos.CENTER);
 		legendaContainer.setPadding(new Insets(10));
 
-		for (Map.Entry<String, Color> entry : categoriaCores.entrySet()) {
-			Rectangle colorBox = new Rectangle(15, 15, entry.getValue());
-			Text legendaItem = new Text(entry.getKey());
-			legendaItem.setStyle("-fx-font-size: 18px; -fx-fill: white; -fx-font-weight: bold;");
-			HBox legendaItemContainer = new HBox(5, colorBox, legendaItem);
-			legendaItemContainer.setAlignment(Pos.CENTER_LEFT);
-			legendaContainer.getChildren().add(legendaItemContainer);
-		}
-
-		VBox vbox = new VBox(barChart, legendaContainer);
-		vbox.setAlignment(Pos.CENTER);
-		vbox.setSpacing(20);
-
-		return vbox;
+		grafico = new VBox(barChart, legendaContainer);
+		grafico.setAlignment(Pos.CENTER);
+		grafico.setSpacing(20);
+		return grafico;
 	}
 
 	/**
@@ -1,7 +1,6 @@
 package com.controleestoque.servico;
 
-import com.controleestoque.estoque.Produto;
-import javafx.collections.ObservableList;
+import java.sql.SQLException;
 import java.util.HashMap;
 import java.util.Map;
 /**
@@ -9,23 +8,26 @@ import java.util.Map;
  */
 public class GerenciadorTotalizacaoProduto {
 
+    private static final String SEM_CATEGORIA = "Sem Categoria";
+
     /**
-     * Calcula o total de itens para cada categoria presente na lista de produtos fornecida.
+     * Calcula o total de itens por categoria de todo o catálogo, agregado pelo banco de dados,
+     * sem carregar os produtos. Faz uma consulta ao banco, então não deve ser chamado na thread da interface.
      *
-     * @param produtosData A lista observável de produtos a ser analisada.
+     * @param servicoProduto O serviço usado para obter os totais.
      * @return Map contendo cada categoria como chave e o total de itens como valor.
+     * @throws SQLException Em caso de erro ao consultar os totais.
      */
-    public static Map<String, Integer> calcularTotalPorCategoria(ObservableList<Produto> produtosData) {
-    	
-        Map<String, Integer> totalPorCategoria = new HashMap<>();
-        for (Produto produto : produtosData) {
-            String categoria = (produto.getCategoria() == null || produto.getCategoria().trim().isEmpty())
-                    ? "Sem Categoria" : produto.getCategoria();
-
-            int quantidade = produto.getQuantidade();
-
-            totalPorCategoria.put(categoria, totalPorCategoria.getOrDefault(categoria, 0) + quantidade);
+    public static Map<String, Long> calcularTotalCatalogo(ServicoProduto servicoProduto) throws SQLException {
+        Map<String, Long> totalPorCategoria = new HashMap<>();
+        for (Map.Entry<String, Long> entry : servicoProduto.totalizarPorCategoria().entrySet()) {
+            totalPorCategoria.merge(rotulo(entry.getKey()), entry.getValue(), Long::sum);
         }
         return totalPorCategoria;
     }
+
+    // Nome exibido para a categoria do produto; produtos sem categoria ficam em "Sem Categoria"
+    static String rotulo(String categoria) {
+        return (categoria == null || categoria.isBlank()) ? SEM_CATEGORIA : categoria;
+    }
 }
@@ -0,0 +1,432 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.estoque.ProdutoDAO;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido de trigramas dos nomes de produto e de caixa, usado pelo campo de pesquisa.
+ * Cada sequência de três caracteres dos nomes aponta para a lista ordenada de ids dos produtos
+ * que a contêm; uma busca por substring intersecta as listas dos trigramas do termo em vez de
+ * percorrer a tabela com LIKE '%termo%'.
+ * O índice fica em memória, é atualizado pelos eventos do ServicoProduto e é salvo em disco
+ * para que a próxima inicialização não precise ler todos os nomes do banco.
+ */
+public class IndiceTrigramas implements OuvinteProduto {
+
+    private static final int VERSAO_ARQUIVO = 1;
+
+    private final Path arquivoSnapshot;
+    private final ReadWriteLock trava = new ReentrantReadWriteLock();
+
+    // Nomes em minúsculas de cada produto indexado
+    private final Map<Integer, Entrada> entradas = new HashMap<>();
+    // Trigrama (três caracteres compactados em um long) -> ids dos produtos que o contêm
+    private final Map<Long, ListaIds> postagens = new HashMap<>();
+
+    private volatile boolean pronto;
+
+    /**
+     * Construtor que inicializa o índice vazio.
+     *
+     * @param arquivoSnapshot O arquivo onde o índice é salvo entre execuções.
+     */
+    public IndiceTrigramas(Path arquivoSnapshot) {
+        this.arquivoSnapshot = arquivoSnapshot;
+    }
+
+    /**
+     * Indica se o índice já foi carregado e pode responder às buscas.
+     */
+    public boolean isPronto() {
+        return pronto;
+    }
+
+    public int getTotalProdutos() {
+        trava.readLock().lock();
+        try {
+            return entradas.size();
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Carrega o índice a partir do arquivo salvo, se ele corresponder ao estado atual da tabela de produtos,
+     * ou o reconstrói lendo os nomes do banco de dados e salva um novo arquivo.
+     *
+     * @param produtoDAO O DAO usado para validar o arquivo e, se necessário, ler os nomes.
+     * @throws SQLException Em caso de erro ao ler os produtos do banco de dados.
+     */
+    public void carregar(ProdutoDAO produtoDAO) throws SQLException {
+        long inicio = System.nanoTime();
+        String assinatura = produtoDAO.obterAssinaturaProdutos();
+
+        if (lerSnapshot(assinatura)) {
+            System.out.println("Índice de busca carregado do arquivo: " + getTotalProdutos() + " produtos em "
+                    + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+        } else {
+            produtoDAO.percorrerNomes(this::indexar);
+            System.out.println("Índice de busca reconstruído do banco: " + getTotalProdutos() + " produtos em "
+                    + (System.nanoTime() - inicio) / 1_000_000 + " ms.");
+            salvarSnapshot(assinatura);
+        }
+        pronto = true;
+    }
+
+    /**
+     * Busca os ids dos produtos cujo nome ou nome da caixa contém o termo, sem diferenciar maiúsculas.
+     *
+     * @param termo O texto digitado no campo de pesquisa.
+     * @return Ids dos produtos encontrados, em ordem crescente.
+     */
+    public List<Integer> buscar(String termo) {
+        String termoNormalizado = termo.toLowerCase();
+        List<Integer> ids = new ArrayList<>();
+
+        trava.readLock().lock();
+        try {
+            if (termoNormalizado.length() < 3) {
+                // Termos curtos não formam trigramas: os nomes em memória são percorridos diretamente
+                for (Map.Entry<Integer, Entrada> item : entradas.entrySet()) {
+                    if (item.getValue().contem(termoNormalizado)) {
+                        ids.add(item.getKey());
+                    }
+                }
+                ids.sort(null);
+                return ids;
+            }
+
+            ListaIds[] listas = listasDoTermo(termoNormalizado);
+            if (listas == null) {
+                return ids;
+            }
+            int[] candidatos = intersectar(listas);
+            for (int id : candidatos) {
+                Entrada entrada = entradas.get(id);
+                // Ter todos os trigramas não garante que eles estejam em sequência: confirma a substring
+                if (entrada != null && entrada.contem(termoNormalizado)) {
+                    ids.add(id);
+                }
+            }
+            return ids;
+        } finally {
+            trava.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ordena os produtos pela qualidade da correspondência com o termo: nome igual ao termo, nome
+     * começando pelo termo, termo no início de uma palavra do nome, termo no meio do nome e, por último,
+     * termo encontrado apenas no nome da caixa. Empates ficam com o nome mais curto primeiro.
+     *
+     * @param produtos Os produtos a ordenar.
+     * @param termo    O texto pesquisado.
+     */
+    public static void ordenarPorRelevancia(List<Produto> produtos, String termo) {
+        String termoNormalizado = termo.toLowerCase();
+        produtos.sort(Comparator
+                .comparingInt((Produto produto) -> relevancia(produto, termoNormalizado))
+                .thenComparingInt(produto -> produto.getNome() != null ? produto.getNome().length() : 0)
+                .thenComparingInt(Produto::getId));
+    }
+
+    private static int relevancia(Produto produto, String termoNormalizado) {
+        String nome = produto.getNome() != null ? produto.getNome().toLowerCase() : "";
+        if (nome.equals(termoNormalizado)) {
+            return 0;
+        }
+        if (nome.startsWith(termoNormalizado)) {
+            return 1;
+        }
+        int posicao = nome.indexOf(termoNormalizado);
+        if (posicao > 0) {
+            return Character.isLetterOrDigit(nome.charAt(posicao - 1)) ? 3 : 2;
+        }
+        return 4;
+    }
+
+    @Override
+    public void aoAdicionar(Produto produto) {
+        indexar(produto.getId(), produto.getNome(), produto.getCaixaNome());
+    }
+
+    @Override
+    public void aoAlterar(Produto produto) {
+        indexar(produto.getId(), produto.getNome(), produto.getCaixaNome());
+    }
+
+    @Override
+    public void aoRemover(Produto produto) {
+        trava.writeLock().lock();
+        try {
+            removerEntrada(produto.getId());
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Indexa (ou reindexa) os nomes de um produto.
+     *
+     * @param id        O id do produto.
+     * @param nome      O nome do produto.
+     * @param nomeCaixa O nome da caixa do produto, ou null.
+     */
+    public void indexar(int id, String nome, String nomeCaixa) {
+        Entrada nova = new Entrada(nome != null ? nome.toLowerCase() : "",
+                nomeCaixa != null ? nomeCaixa.toLowerCase() : null);
+
+        trava.writeLock().lock();
+        try {
+            Entrada antiga = entradas.get(id);
+            if (antiga != null && antiga.equals(nova)) {
+                return;
+            }
+            removerEntrada(id);
+            entradas.put(id, nova);
+            for (long trigrama : nova.trigramas()) {
+                postagens.computeIfAbsent(trigrama, chave -> new ListaIds()).adicionar(id);
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    // Deve ser chamado com a trava de escrita
+    private void removerEntrada(int id) {
+        Entrada antiga = entradas.remove(id);
+        if (antiga == null) {
+            return;
+        }
+        for (long trigrama : antiga.trigramas()) {
+            ListaIds lista = postagens.get(trigrama);
+            if (lista != null && lista.remover(id) && lista.tamanho == 0) {
+                postagens.remove(trigrama);
+            }
+        }
+    }
+
+    /**
+     * Retorna as listas de ids dos trigramas do termo, da menor para a maior, ou null se algum trigrama
+     * não aparecer em nenhum nome.
+     */
+    private ListaIds[] listasDoTermo(String termoNormalizado) {
+        Set<Long> trigramas = extrairTrigramas(termoNormalizado, new HashSet<>());
+        ListaIds[] listas = new ListaIds[trigramas.size()];
+        int i = 0;
+        for (long trigrama : trigramas) {
+            ListaIds lista = postagens.get(trigrama);
+            if (lista == null) {
+                return null;
+            }
+            listas[i++] = lista;
+        }
+        Arrays.sort(listas, Comparator.comparingInt(lista -> lista.tamanho));
+        return listas;
+    }
+
+    /**
+     * Intersecta listas ordenadas de ids, partindo da menor e procurando cada candidato nas demais
+     * por busca binária.
+     */
+    private static int[] intersectar(ListaIds[] listas) {
+        int[] resultado = Arrays.copyOf(listas[0].ids, listas[0].tamanho);
+        int tamanho = resultado.length;
+        for (int i = 1; i < listas.length && tamanho > 0; i++) {
+            ListaIds lista = listas[i];
+            int novoTamanho = 0;
+            int inicio = 0;
+            for (int j = 0; j < tamanho; j++) {
+                int posicao = Arrays.binarySearch(lista.ids, inicio, lista.tamanho, resultado[j]);
+                if (posicao >= 0) {
+                    resultado[novoTamanho++] = resultado[j];
+                    inicio = posicao + 1;
+                } else {
+                    inicio = -posicao - 1;
+                }
+            }
+            tamanho = novoTamanho;
+        }
+        return Arrays.copyOf(resultado, tamanho);
+    }
+
+    private static Set<Long> extrairTrigramas(String texto, Set<Long> destino) {
+        for (int i = 0; i + 3 <= texto.length(); i++) {
+            destino.add(((long) texto.charAt(i) << 32) | ((long) texto.charAt(i + 1) << 16) | texto.charAt(i + 2));
+        }
+        return destino;
+    }
+
+    /**
+     * Salva os nomes indexados em disco. O arquivo é escrito em um temporário e depois movido,
+     * para que uma interrupção não deixe um arquivo pela metade.
+     *
+     * @param assinatura A assinatura da tabela de produtos que corresponde ao conteúdo do índice.
+     */
+    public void salvarSnapshot(String assinatura) {
+        Path temporario = arquivoSnapshot.resolveSibling(arquivoSnapshot.getFileName() + ".tmp");
+        trava.readLock().lock();
+        try (DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(temporario)))) {
+            saida.writeInt(VERSAO_ARQUIVO);
+            saida.writeUTF(assinatura);
+            saida.writeInt(entradas.size());
+            for (Map.Entry<Integer, Entrada> item : entradas.entrySet()) {
+                Entrada entrada = item.getValue();
+                saida.writeInt(item.getKey());
+                saida.writeUTF(entrada.nome);
+                saida.writeBoolean(entrada.nomeCaixa != null);
+                if (entrada.nomeCaixa != null) {
+                    saida.writeUTF(entrada.nomeCaixa);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Erro ao salvar o índice de busca: " + e.getMessage());
+            return;
+        } finally {
+            trava.readLock().unlock();
+        }
+
+        try {
+            Files.move(temporario, arquivoSnapshot, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Erro ao salvar o índice de busca: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Lê o arquivo salvo se ele existir e tiver a mesma assinatura da tabela de produtos.
+     *
+     * @return true se o índice foi carregado do arquivo.
+     */
+    private boolean lerSnapshot(String assinatura) {
+        if (!Files.exists(arquivoSnapshot)) {
+            return false;
+        }
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(arquivoSnapshot)))) {
+            if (entrada.readInt() != VERSAO_ARQUIVO || !entrada.readUTF().equals(assinatura)) {
+                return false;
+            }
+            int total = entrada.readInt();
+            for (int i = 0; i < total; i++) {
+                int id = entrada.readInt();
+                String nome = entrada.readUTF();
+                String nomeCaixa = entrada.readBoolean() ? entrada.readUTF() : null;
+                indexar(id, nome, nomeCaixa);
+            }
+            return true;
+        } catch (IOException e) {
+            System.out.println("Arquivo do índice de busca inválido, reconstruindo: " + e.getMessage());
+            limpar();
+            return false;
+        }
+    }
+
+    private void limpar() {
+        trava.writeLock().lock();
+        try {
+            entradas.clear();
+            postagens.clear();
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Nomes normalizados de um produto.
+     */
+    private static class Entrada {
+        private final String nome;
+        private final String nomeCaixa;
+
+        private Entrada(String nome, String nomeCaixa) {
+            this.nome = nome;
+            this.nomeCaixa = nomeCaixa;
+        }
+
+        private boolean contem(String termoNormalizado) {
+            return nome.contains(termoNormalizado) || (nomeCaixa != null && nomeCaixa.contains(termoNormalizado));
+        }
+
+        private Set<Long> trigramas() {
+            Set<Long> trigramas = extrairTrigramas(nome, new HashSet<>());
+            return nomeCaixa != null ? extrairTrigramas(nomeCaixa, trigramas) : trigramas;
+        }
+
+        @Override
+        public boolean equals(Object outro) {
+            if (!(outro instanceof Entrada)) {
+                return false;
+            }
+            Entrada entrada = (Entrada) outro;
+            return nome.equals(entrada.nome) && Objects.equals(nomeCaixa, entrada.nomeCaixa);
+        }
+
+        @Override
+        public int hashCode() {
+            return nome.hashCode();
+        }
+    }
+
+    /**
+     * Lista ordenada e crescente de ids de produto.
+     */
+    private static class ListaIds {
+        private int[] ids = new int[4];
+        private int tamanho;
+
+        private void adicionar(int id) {
+            // Os ids novos costumam ser maiores que os existentes: nesse caso basta acrescentar no fim
+            if (tamanho > 0 && ids[tamanho - 1] >= id) {
+                int posicao = Arrays.binarySearch(ids, 0, tamanho, id);
+                if (posicao >= 0) {
+                    return;
+                }
+                inserir(-posicao - 1, id);
+                return;
+            }
+            inserir(tamanho, id);
+        }
+
+        private void inserir(int posicao, int id) {
+            if (tamanho == ids.length) {
+                ids = Arrays.copyOf(ids, tamanho * 2);
+            }
+            System.arraycopy(ids, posicao, ids, posicao + 1, tamanho - posicao);
+            ids[posicao] = id;
+            tamanho++;
+        }
+
+        private boolean remover(int id) {
+            int posicao = Arrays.binarySearch(ids, 0, tamanho, id);
+            if (posicao < 0) {
+                return false;
+            }
+            System.arraycopy(ids, posicao + 1, ids, posicao, tamanho - posicao - 1);
+            tamanho--;
+            return true;
+        }
+    }
+}
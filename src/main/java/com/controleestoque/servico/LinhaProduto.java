@@ -0,0 +1,95 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyStringProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.beans.property.SimpleStringProperty;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Valores exibidos em uma linha da tabela de produtos, já formatados e guardados em propriedades somente
+ * leitura, para que as fábricas de valores das colunas não criem uma propriedade nova a cada célula
+ * desenhada, rolagem ou ordenação.
+ * Cada produto tem a sua linha, criada na primeira consulta e guardada em um mapa com chave fraca: ela
+ * deixa de existir junto com o produto. Como uma edição troca o produto da lista por uma cópia (ver
+ * TotalizadorProdutos), os valores de uma linha nunca mudam. As propriedades de cada coluna só são
+ * criadas quando a coluna as pede, e a linha não guarda o produto, para não impedir que ele seja coletado.
+ * Deve ser usada na thread do JavaFX.
+ */
+public final class LinhaProduto {
+
+    // Produto não redefine equals/hashCode, então o mapa compara as instâncias
+    private static final Map<Produto, LinhaProduto> LINHAS = new WeakHashMap<>();
+
+    private final String nome;
+    private final int quantidade;
+    private final String categoria;
+    private final String caixa;
+    private final String localizacao;
+
+    private ReadOnlyStringProperty nomeProperty;
+    private ReadOnlyObjectProperty<Integer> quantidadeProperty;
+    private ReadOnlyStringProperty categoriaProperty;
+    private ReadOnlyStringProperty caixaProperty;
+    private ReadOnlyStringProperty localizacaoProperty;
+
+    private LinhaProduto(Produto produto) {
+        this.nome = produto.getNome();
+        this.quantidade = produto.getQuantidade();
+        this.categoria = textoOuPadrao(produto.getCategoria(), "Sem Categoria");
+        this.caixa = textoOuPadrao(produto.getCaixaNome(), "Sem Caixa");
+        this.localizacao = textoOuPadrao(produto.getLocalizacao(), "Sem Localização");
+    }
+
+    /**
+     * Retorna a linha do produto, criando-a na primeira consulta.
+     *
+     * @param produto O produto da linha.
+     * @return A linha com os valores exibidos do produto.
+     */
+    public static LinhaProduto de(Produto produto) {
+        return LINHAS.computeIfAbsent(produto, LinhaProduto::new);
+    }
+
+    public ReadOnlyStringProperty nomeProperty() {
+        if (nomeProperty == null) {
+            nomeProperty = new SimpleStringProperty(nome);
+        }
+        return nomeProperty;
+    }
+
+    public ReadOnlyObjectProperty<Integer> quantidadeProperty() {
+        if (quantidadeProperty == null) {
+            quantidadeProperty = new SimpleObjectProperty<>(quantidade);
+        }
+        return quantidadeProperty;
+    }
+
+    public ReadOnlyStringProperty categoriaProperty() {
+        if (categoriaProperty == null) {
+            categoriaProperty = new SimpleStringProperty(categoria);
+        }
+        return categoriaProperty;
+    }
+
+    public ReadOnlyStringProperty caixaProperty() {
+        if (caixaProperty == null) {
+            caixaProperty = new SimpleStringProperty(caixa);
+        }
+        return caixaProperty;
+    }
+
+    public ReadOnlyStringProperty localizacaoProperty() {
+        if (localizacaoProperty == null) {
+            localizacaoProperty = new SimpleStringProperty(localizacao);
+        }
+        return localizacaoProperty;
+    }
+
+    private static String textoOuPadrao(String texto, String padrao) {
+        return texto != null && !texto.trim().isEmpty() ? texto : padrao;
+    }
+}
@@ -0,0 +1,50 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.util.EstiloUI;
+import javafx.beans.InvalidationListener;
+import javafx.beans.WeakInvalidationListener;
+import javafx.scene.control.TableRow;
+
+/**
+ * Linha da tabela de produtos cujo destaque acompanha a marcação do produto em SelecaoProdutos.
+ * Assim como a célula de seleção, registra um único ouvinte fraco na seleção ao ser criada, e o estilo
+ * é recalculado quando a linha recebe outro produto ou quando uma mudança da seleção afeta o produto dela.
+ */
+public class LinhaSelecaoProduto extends TableRow<Produto> {
+
+    private final SelecaoProdutos selecao;
+
+    // Mantido em um campo: a seleção só guarda a referência fraca
+    private final InvalidationListener aoMudarSelecao;
+
+    /**
+     * Construtor que passa a acompanhar a seleção.
+     *
+     * @param selecao A marcação de seleção dos produtos da tabela.
+     */
+    public LinhaSelecaoProduto(SelecaoProdutos selecao) {
+        this.selecao = selecao;
+        aoMudarSelecao = observavel -> {
+            Produto produto = getItem();
+            if (produto != null && selecao.afeta(produto)) {
+                atualizarEstilo();
+            }
+        };
+        selecao.versaoProperty().addListener(new WeakInvalidationListener(aoMudarSelecao));
+    }
+
+    @Override
+    protected void updateItem(Produto produto, boolean empty) {
+        super.updateItem(produto, empty);
+        atualizarEstilo();
+    }
+
+    /**
+     * Aplica à linha o destaque da marcação do produto dela.
+     */
+    protected void atualizarEstilo() {
+        Produto produto = getItem();
+        EstiloUI.atualizarEstiloLinhaSelecionada(this, !isEmpty() && produto != null && selecao.isSelecionado(produto));
+    }
+}
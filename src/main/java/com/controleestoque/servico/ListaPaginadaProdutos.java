@@ -0,0 +1,395 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.AlteracoesProdutos;
+import com.controleestoque.estoque.OrdenacaoProduto;
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.util.AlertaUtils;
+import javafx.application.Platform;
+import javafx.collections.ModifiableObservableListBase;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Lista observável de produtos usada pela tabela, que carrega os produtos do banco de dados
+ * em páginas conforme a tabela é rolada.
+ * Enquanto a paginação está ativa, exibir uma linha próxima do fim da lista dispara, em segundo plano,
+ * a carga da próxima página. Fora da paginação (por exemplo, com filtros aplicados) ela se comporta
+ * como uma lista observável comum.
+ * Depois de uma escrita, atualizarAlteracoes aplica à lista só os produtos alterados desde a última
+ * carga, pelas versões gravadas no banco, em vez de descartar as páginas e buscá-las de novo.
+ */
+public class ListaPaginadaProdutos extends ModifiableObservableListBase<Produto> {
+
+    private final List<Produto> itens = new ArrayList<>();
+    private final ServicoProduto servicoProduto;
+    private final int tamanhoPagina;
+    private final int margemPreCarga;
+    private final ExecutorService executor;
+
+    private OrdenacaoProduto ordenacao = OrdenacaoProduto.ID;
+    private boolean crescente = true;
+    private boolean paginacaoAtiva;
+    private boolean fimAlcancado;
+    private boolean carregando;
+    private Produto ultimoCarregado;
+
+    // Incrementada a cada reinício, para descartar páginas de cargas anteriores
+    private int geracao;
+
+    // Versão dos dados já refletida na lista; lida e alterada apenas na thread do executor, que busca
+    // as páginas e as alterações na mesma ordem em que elas são aplicadas na thread do JavaFX
+    private long versaoCarregada;
+
+    /**
+     * Construtor que inicializa a lista vazia, sem paginação ativa.
+     *
+     * @param servicoProduto O serviço usado para buscar as páginas de produtos.
+     * @param tamanhoPagina  O número de produtos buscados por página.
+     * @param margemPreCarga Quantas linhas antes do fim da lista a próxima página começa a ser carregada.
+     */
+    public ListaPaginadaProdutos(ServicoProduto servicoProduto, int tamanhoPagina, int margemPreCarga) {
+        this.servicoProduto = servicoProduto;
+        this.tamanhoPagina = tamanhoPagina;
+        this.margemPreCarga = margemPreCarga;
+        this.executor = Executors.newSingleThreadExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "carga-paginas-produtos");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Descarta os produtos carregados e reinicia a paginação a partir da primeira página.
+     * Os produtos atuais continuam na lista até a primeira página chegar e são então trocados por ela
+     * com setAll, que altera só as linhas diferentes. Deve ser chamado na thread do JavaFX.
+     *
+     * @param ordenacao A coluna de ordenação das páginas.
+     * @param crescente Sendo true para ordem crescente e false para decrescente.
+     */
+    public void iniciarPaginacao(OrdenacaoProduto ordenacao, boolean crescente) {
+        geracao++;
+        this.ordenacao = ordenacao;
+        this.crescente = crescente;
+        this.paginacaoAtiva = true;
+        this.fimAlcancado = false;
+        this.carregando = false;
+        this.ultimoCarregado = null;
+        carregarProximaPagina();
+    }
+
+    /**
+     * Reinicia a paginação mantendo a ordenação atual.
+     */
+    public void reiniciarPaginacao() {
+        iniciarPaginacao(ordenacao, crescente);
+    }
+
+    /**
+     * Interrompe a paginação; os próximos acessos não disparam novas cargas.
+     * Usado quando o conteúdo da lista passa a ser definido por outra consulta, como os filtros.
+     */
+    public void desativarPaginacao() {
+        geracao++;
+        paginacaoAtiva = false;
+        carregando = false;
+    }
+
+    public boolean isPaginacaoAtiva() {
+        return paginacaoAtiva;
+    }
+
+    public boolean isTodosCarregados() {
+        return !paginacaoAtiva || fimAlcancado;
+    }
+
+    public OrdenacaoProduto getOrdenacao() {
+        return ordenacao;
+    }
+
+    public boolean isCrescente() {
+        return crescente;
+    }
+
+    /**
+     * Informa a última linha visível da tabela; se ela estiver perto do fim da lista, a próxima página é carregada.
+     *
+     * @param indiceVisivel O índice da última linha visível.
+     */
+    public void carregarAte(int indiceVisivel) {
+        if (paginacaoAtiva && indiceVisivel >= itens.size() - margemPreCarga) {
+            carregarProximaPagina();
+        }
+    }
+
+    /**
+     * Busca a próxima página em segundo plano e a acrescenta ao fim da lista na thread do JavaFX.
+     */
+    private void carregarProximaPagina() {
+        if (!paginacaoAtiva || fimAlcancado || carregando) {
+            return;
+        }
+        carregando = true;
+        final int geracaoCarga = geracao;
+        final Produto ultimo = ultimoCarregado;
+        final OrdenacaoProduto ordenacaoCarga = ordenacao;
+        final boolean crescenteCarga = crescente;
+
+        executor.execute(() -> {
+            try {
+                if (ultimo == null) {
+                    // Lida antes da primeira página: o que for gravado depois será buscado por atualizarAlteracoes
+                    versaoCarregada = servicoProduto.obterVersaoAtual();
+                }
+                List<Produto> pagina = servicoProduto.listarPagina(ordenacaoCarga, crescenteCarga, ultimo,
+                        tamanhoPagina);
+                Platform.runLater(() -> {
+                    if (geracaoCarga != geracao) {
+                        return;
+                    }
+                    carregando = false;
+                    if (pagina.size() < tamanhoPagina) {
+                        fimAlcancado = true;
+                    }
+                    if (!pagina.isEmpty()) {
+                        ultimoCarregado = pagina.get(pagina.size() - 1);
+                    }
+                    if (ultimo == null) {
+                        setAll(pagina);
+                    } else {
+                        addAll(pagina);
+                    }
+                });
+            } catch (SQLException e) {
+                Platform.runLater(() -> {
+                    if (geracaoCarga != geracao) {
+                        return;
+                    }
+                    carregando = false;
+                    fimAlcancado = true;
+                    if (ultimo == null) {
+                        clear();
+                    }
+                    AlertaUtils.mostrarAlertaErro("Erro!", "Erro ao carregar os dados: " + e.getMessage());
+                });
+            }
+        });
+    }
+
+    /**
+     * Busca em segundo plano os produtos incluídos, alterados e removidos desde a última carga e os aplica
+     * à lista na thread do JavaFX. Produtos alterados saem da posição antiga e são inseridos na posição da
+     * ordenação atual, desde que ela esteja na parte já carregada; os demais virão nas próximas páginas.
+     * Sem paginação ativa não faz nada: o conteúdo da lista pertence a outra consulta.
+     */
+    public void atualizarAlteracoes() {
+        if (!paginacaoAtiva) {
+            return;
+        }
+        final int geracaoCarga = geracao;
+
+        executor.execute(() -> {
+            try {
+                AlteracoesProdutos alteracoes = servicoProduto.buscarAlteracoesDesde(versaoCarregada);
+                versaoCarregada = alteracoes.getVersao();
+                if (alteracoes.isVazia()) {
+                    return;
+                }
+                Platform.runLater(() -> {
+                    if (geracaoCarga == geracao) {
+                        aplicarAlteracoes(alteracoes);
+                    }
+                });
+            } catch (SQLException e) {
+                Platform.runLater(() -> {
+                    if (geracaoCarga == geracao) {
+                        AlertaUtils.mostrarAlertaErro("Erro!", "Erro ao atualizar os dados: " + e.getMessage());
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Remove as versões antigas dos produtos alterados ou removidos em uma passada e insere as novas por
+     * busca binária, notificando uma única alteração da lista.
+     * Um produto alterado que continua entre os mesmos vizinhos é substituído no lugar, para que a tabela
+     * redesenhe só a linha dele em vez de deslocar as linhas seguintes.
+     */
+    private void aplicarAlteracoes(AlteracoesProdutos alteracoes) {
+        Set<Integer> removidos = new HashSet<>(alteracoes.getRemovidos());
+        Set<Integer> ids = new HashSet<>(removidos);
+        Map<Integer, Produto> alterados = new HashMap<>();
+        for (Produto produto : alteracoes.getAlterados()) {
+            ids.add(produto.getId());
+            alterados.put(produto.getId(), produto);
+        }
+        Comparator<Produto> comparador = ordenacao.getComparador(crescente);
+
+        beginChange();
+        try {
+            Set<Integer> substituidos = new HashSet<>();
+            for (int i = 0; i < itens.size(); i++) {
+                Produto antigo = itens.get(i);
+                Produto novo = alterados.get(antigo.getId());
+                if (novo != null && !removidos.contains(novo.getId())
+                        && permaneceNaPosicao(i, novo, ids, comparador)) {
+                    itens.set(i, novo);
+                    nextSet(i, antigo);
+                    substituidos.add(novo.getId());
+                }
+            }
+
+            int destino = 0;
+            for (int origem = 0; origem < itens.size(); origem++) {
+                Produto produto = itens.get(origem);
+                if (ids.contains(produto.getId()) && !substituidos.contains(produto.getId())) {
+                    nextRemove(destino, produto);
+                } else {
+                    itens.set(destino++, produto);
+                }
+            }
+            itens.subList(destino, itens.size()).clear();
+
+            for (Produto produto : alteracoes.getAlterados()) {
+                if (substituidos.contains(produto.getId())) {
+                    continue;
+                }
+                // Depois do último produto carregado, a posição ainda não chegou à lista: a próxima página o trará
+                if (!fimAlcancado && (ultimoCarregado == null || comparador.compare(produto, ultimoCarregado) > 0)) {
+                    continue;
+                }
+                int posicao = Collections.binarySearch(itens, produto, comparador);
+                if (posicao < 0) {
+                    posicao = -posicao - 1;
+                }
+                itens.add(posicao, produto);
+                nextAdd(posicao, posicao + 1);
+            }
+            modCount++;
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Verifica se a nova versão do produto na posição informada continua nela: os vizinhos não foram
+     * alterados e a ordem entre eles se mantém. No fim da lista, só vale se todas as páginas já foram
+     * carregadas, já que o produto poderia ter passado para uma página seguinte.
+     */
+    private boolean permaneceNaPosicao(int indice, Produto novo, Set<Integer> ids, Comparator<Produto> comparador) {
+        if (indice > 0) {
+            Produto anterior = itens.get(indice - 1);
+            if (ids.contains(anterior.getId()) || comparador.compare(anterior, novo) > 0) {
+                return false;
+            }
+        }
+        if (indice + 1 < itens.size()) {
+            Produto seguinte = itens.get(indice + 1);
+            return !ids.contains(seguinte.getId()) && comparador.compare(novo, seguinte) < 0;
+        }
+        return fimAlcancado;
+    }
+
+    /**
+     * Troca o conteúdo da lista pelos produtos informados com o menor conjunto de remoções, inserções e
+     * substituições, comparando os produtos pelo id (ver DiferencaProdutos), e notifica uma única alteração.
+     * A implementação herdada esvazia a lista e a preenche de novo, o que faz a tabela perder a seleção,
+     * a posição de rolagem e redesenhar todas as linhas.
+     */
+    @Override
+    public boolean setAll(Collection<? extends Produto> produtos) {
+        List<? extends Produto> novos = produtos instanceof List
+                ? (List<? extends Produto>) produtos
+                : new ArrayList<>(produtos);
+        beginChange();
+        try {
+            boolean alterada = DiferencaProdutos.aplicar(itens, novos, new DiferencaProdutos.Notificacao() {
+                @Override
+                public void removido(int indice, Produto produto) {
+                    nextRemove(indice, produto);
+                }
+
+                @Override
+                public void adicionado(int de, int ate) {
+                    nextAdd(de, ate);
+                }
+
+                @Override
+                public void substituido(int indice, Produto antigo) {
+                    nextSet(indice, antigo);
+                }
+            });
+            if (alterada) {
+                modCount++;
+            }
+            return alterada;
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Remove os produtos da coleção em uma única passada pela lista, notificando uma única alteração.
+     * A implementação herdada remove um item por vez, deslocando o restante da lista a cada remoção.
+     * Use uma coleção com busca rápida, como um Set.
+     */
+    @Override
+    public boolean removeAll(Collection<?> colecao) {
+        beginChange();
+        try {
+            int destino = 0;
+            for (int origem = 0; origem < itens.size(); origem++) {
+                Produto produto = itens.get(origem);
+                if (colecao.contains(produto)) {
+                    nextRemove(destino, produto);
+                } else {
+                    itens.set(destino++, produto);
+                }
+            }
+            if (destino == itens.size()) {
+                return false;
+            }
+            itens.subList(destino, itens.size()).clear();
+            modCount++;
+            return true;
+        } finally {
+            endChange();
+        }
+    }
+
+    @Override
+    public Produto get(int indice) {
+        return itens.get(indice);
+    }
+
+    @Override
+    public int size() {
+        return itens.size();
+    }
+
+    @Override
+    protected void doAdd(int indice, Produto produto) {
+        itens.add(indice, produto);
+    }
+
+    @Override
+    protected Produto doSet(int indice, Produto produto) {
+        return itens.set(indice, produto);
+    }
+
+    @Override
+    protected Produto doRemove(int indice) {
+        return itens.remove(indice);
+    }
+}
@@ -0,0 +1,454 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.estoque.ProdutoDAO;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Motor de filtros em memória sobre o catálogo de produtos, usado pelo GerenciadorFiltroProduto no lugar
+ * de uma consulta ao banco a cada alteração dos filtros.
+ * Os produtos ficam em colunas no ArmazemProdutos, e cada um ocupa uma posição dele; para categoria,
+ * localização e caixa é mantido um BitSet por valor com as posições dos produtos que o possuem, e as
+ * quantidades ficam em um vetor ordenado para os filtros de faixa. Um filtro combinado é a interseção dos
+ * BitSets, e o resultado é formado por visões das posições encontradas.
+ * O catálogo só é carregado se tiver até o número de produtos configurado; acima disso os filtros
+ * continuam sendo feitos pelo banco de dados.
+ * A carga monta um catálogo novo sem a trava e só o troca pelo atual no final, para que os avisos de
+ * escrita não esperem a leitura de todos os produtos; os avisos recebidos nesse meio tempo são
+ * aplicados ao catálogo atual e reaplicados ao novo depois da troca.
+ */
+public class MotorFiltroMemoria implements OuvinteProduto {
+
+    private final IndiceTrigramas indiceBusca;
+    private final int limiteProdutos;
+    private final boolean foraDoHeap;
+    private final ReadWriteLock trava = new ReentrantReadWriteLock();
+
+    private Catalogo catalogo;
+
+    // Avisos recebidos durante a carga, reaplicados sobre o catálogo novo
+    private final List<Consumer<Catalogo>> pendentes = new ArrayList<>();
+    private boolean carregando;
+
+    private volatile boolean pronto;
+
+    /**
+     * Construtor que inicializa o motor vazio.
+     *
+     * @param indiceBusca    O índice usado no filtro por termo, ou null para comparar os nomes diretamente.
+     * @param limiteProdutos O número máximo de produtos para carregar o catálogo em memória.
+     * @param foraDoHeap     Sendo true para guardar as colunas do catálogo fora do heap.
+     */
+    public MotorFiltroMemoria(IndiceTrigramas indiceBusca, int limiteProdutos, boolean foraDoHeap) {
+        this.indiceBusca = indiceBusca;
+        this.limiteProdutos = limiteProdutos;
+        this.foraDoHeap = foraDoHeap;
+        this.catalogo = new Catalogo(new ArmazemProdutos(1024, foraDoHeap), false);
+    }
+
+    /**
+     * Indica se o catálogo foi carregado e o motor pode responder aos filtros.
+     */
+    public boolean isPronto() {
+        return pronto;
+    }
+
+    /**
+     * Carrega o catálogo de produtos se ele couber no limite configurado. Se o catálogo passou do limite
+     * desde a última carga, o motor deixa de ficar pronto e libera o catálogo anterior.
+     *
+     * @param produtoDAO O DAO usado para contar e listar os produtos.
+     * @throws SQLException Em caso de erro ao ler os produtos do banco de dados.
+     */
+    public void carregar(ProdutoDAO produtoDAO) throws SQLException {
+        int total = produtoDAO.contarProdutos();
+        if (total > limiteProdutos) {
+            trava.writeLock().lock();
+            try {
+                pronto = false;
+                catalogo = new Catalogo(new ArmazemProdutos(0, foraDoHeap), false);
+            } finally {
+                trava.writeLock().unlock();
+            }
+            System.out.println("Catálogo com " + total + " produtos excede o limite de " + limiteProdutos
+                    + "; os filtros serão feitos pelo banco de dados.");
+            return;
+        }
+
+        long inicio = System.nanoTime();
+        trava.writeLock().lock();
+        try {
+            carregando = true;
+        } finally {
+            trava.writeLock().unlock();
+        }
+
+        Catalogo novo = new Catalogo(new ArmazemProdutos(total, foraDoHeap), true);
+        try {
+            produtoDAO.percorrerProdutos(novo::registrar);
+        } catch (SQLException e) {
+            trava.writeLock().lock();
+            try {
+                carregando = false;
+                pendentes.clear();
+            } finally {
+                trava.writeLock().unlock();
+            }
+            throw e;
+        }
+        novo.concluirCarga();
+
+        trava.writeLock().lock();
+        try {
+            catalogo = novo;
+            carregando = false;
+            for (Consumer<Catalogo> aviso : pendentes) {
+                aviso.accept(novo);
+            }
+            pendentes.clear();
+            pronto = true;
+        } finally {
+            trava.writeLock().unlock();
+        }
+        System.out.println("Filtros em memória carregados: " + novo.ativos.cardinality() + " produtos em "
+                + (System.nanoTime() - inicio) / 1_000_000 + " ms, " + novo.armazem.getBytesReservados() / (1024 * 1024)
+                + " MB em colunas" + (foraDoHeap ? " fora do heap." : "."));
+    }
+
+    /**
+     * Retorna os produtos que atendem a todos os filtros informados; filtros nulos (e o termo vazio) são ignorados.
+     * Categoria, localização e caixa não diferenciam maiúsculas, como no filtro pelo banco. Com termo,
+     * o resultado é ordenado pela relevância; sem termo, pela ordem de cadastro. Os produtos devolvidos são
+     * visões somente leitura do catálogo em memória.
+     *
+     * @param termo         O texto pesquisado no nome do produto ou da caixa.
+     * @param categoria     A categoria do produto.
+     * @param localizacao   A localização do produto.
+     * @param caixa         O nome da caixa do produto.
+     * @param quantidadeMin A quantidade mínima.
+     * @param quantidadeMax A quantidade máxima.
+     * @return Lista com os produtos encontrados.
+     */
+    public List<Produto> filtrar(String termo, String categoria, String localizacao, String caixa,
+                                 Integer quantidadeMin, Integer quantidadeMax) {
+        boolean comTermo = termo != null && !termo.isEmpty();
+        // A consulta ao índice de busca é feita fora da trava do motor
+        List<Integer> idsTermo = comTermo && indiceBusca != null && indiceBusca.isPronto()
+                ? indiceBusca.buscar(termo) : null;
+
+        List<Produto> resultado = new ArrayList<>();
+        boolean foraDeOrdem;
+        trava.readLock().lock();
+        try {
+            Catalogo atual = catalogo;
+            foraDeOrdem = atual.foraDeOrdem;
+            BitSet selecionados = (BitSet) atual.ativos.clone();
+            intersectar(selecionados, atual.porCategoria, categoria);
+            intersectar(selecionados, atual.porLocalizacao, localizacao);
+            intersectar(selecionados, atual.porCaixa, caixa);
+            if (quantidadeMin != null || quantidadeMax != null) {
+                selecionados.and(atual.faixaQuantidade(quantidadeMin, quantidadeMax));
+            }
+            if (idsTermo != null) {
+                selecionados.and(atual.posicoesDosIds(idsTermo));
+            }
+
+            String termoNormalizado = comTermo ? termo.toLowerCase() : null;
+            for (int i = selecionados.nextSetBit(0); i >= 0; i = selecionados.nextSetBit(i + 1)) {
+                if (idsTermo == null && comTermo && !atual.contemTermo(i, termoNormalizado)) {
+                    continue;
+                }
+                resultado.add(atual.armazem.getProduto(i));
+            }
+        } finally {
+            trava.readLock().unlock();
+        }
+
+        if (comTermo) {
+            IndiceTrigramas.ordenarPorRelevancia(resultado, termo);
+        } else if (foraDeOrdem) {
+            // Quase ordenada: só os produtos alterados estão fora do lugar
+            resultado.sort(Comparator.comparingInt(Produto::getId));
+        }
+        return resultado;
+    }
+
+    private static void intersectar(BitSet selecionados, Map<String, BitSet> indice, String valor) {
+        if (valor == null) {
+            return;
+        }
+        BitSet posicoes = indice.get(valor.toLowerCase());
+        if (posicoes == null) {
+            selecionados.clear();
+        } else {
+            selecionados.and(posicoes);
+        }
+    }
+
+    @Override
+    public void aoAdicionar(Produto produto) {
+        aplicar(atual -> atual.registrar(produto));
+    }
+
+    @Override
+    public void aoAlterar(Produto produto) {
+        aplicar(atual -> atual.registrar(produto));
+    }
+
+    @Override
+    public void aoRemover(Produto produto) {
+        int id = produto.getId();
+        aplicar(atual -> atual.remover(id));
+    }
+
+    /**
+     * Renomeia uma categoria no catálogo: os produtos dela ganham novas posições com o novo nome, sem
+     * recarregar o catálogo do banco.
+     *
+     * @param atual O nome atual da categoria.
+     * @param novo  O novo nome.
+     */
+    public void renomearCategoria(String atual, String novo) {
+        aplicar(catalogoAtual -> catalogoAtual.renomearCategoria(atual, novo));
+    }
+
+    /**
+     * Renomeia uma localização no catálogo, como em renomearCategoria.
+     *
+     * @param atual O nome atual da localização.
+     * @param novo  O novo nome.
+     */
+    public void renomearLocalizacao(String atual, String novo) {
+        aplicar(catalogoAtual -> catalogoAtual.renomearLocalizacao(atual, novo));
+    }
+
+    /**
+     * Aplica o aviso ao catálogo atual e, durante uma carga, guarda-o para o catálogo novo.
+     * Os avisos substituem os dados do produto, então reaplicá-los não conta nada em dobro.
+     */
+    private void aplicar(Consumer<Catalogo> aviso) {
+        trava.writeLock().lock();
+        try {
+            aviso.accept(catalogo);
+            if (carregando) {
+                pendentes.add(aviso);
+            }
+        } finally {
+            trava.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Produtos de uma carga e os índices sobre as posições deles. Não tem trava própria: o catálogo em uso
+     * só é lido ou alterado com a trava do motor, e o catálogo em carga só é acessado pela thread da carga.
+     */
+    private static final class Catalogo {
+
+        private final ArmazemProdutos armazem;
+
+        // Posição de cada id no armazém mais um, indexada pelo id; 0 quando o produto não está no motor
+        private int[] posicaoPorId = new int[1024];
+        // Uma alteração move o produto para uma nova posição, fora da ordem de cadastro
+        private boolean foraDeOrdem;
+        private final BitSet ativos = new BitSet();
+        // As chaves são guardadas em minúsculas, como os filtros comparam
+        private final Map<String, BitSet> porCategoria = new HashMap<>();
+        private final Map<String, BitSet> porLocalizacao = new HashMap<>();
+        private final Map<String, BitSet> porCaixa = new HashMap<>();
+
+        // (quantidade << 32 | posição), em ordem crescente
+        private long[] quantidadesOrdenadas = new long[1024];
+        private int totalQuantidades;
+        // Durante a carga as quantidades são acrescentadas sem ordem e ordenadas uma única vez no final
+        private boolean carregando;
+
+        Catalogo(ArmazemProdutos armazem, boolean carregando) {
+            this.armazem = armazem;
+            this.carregando = carregando;
+        }
+
+        void concluirCarga() {
+            Arrays.sort(quantidadesOrdenadas, 0, totalQuantidades);
+            carregando = false;
+        }
+
+        /**
+         * Marca as posições dos produtos com quantidade dentro da faixa, por busca binária no vetor ordenado.
+         */
+        BitSet faixaQuantidade(Integer quantidadeMin, Integer quantidadeMax) {
+            long chaveInicial = quantidadeMin != null ? (long) quantidadeMin << 32 : Long.MIN_VALUE;
+            long chaveFinal = quantidadeMax != null ? ((long) quantidadeMax << 32) | 0xFFFFFFFFL : Long.MAX_VALUE;
+
+            BitSet faixa = new BitSet(armazem.getTotalPosicoes());
+            for (int i = limiteInferior(chaveInicial); i < totalQuantidades && quantidadesOrdenadas[i] <= chaveFinal; i++) {
+                faixa.set((int) quantidadesOrdenadas[i]);
+            }
+            return faixa;
+        }
+
+        private int limiteInferior(long chave) {
+            int posicao = Arrays.binarySearch(quantidadesOrdenadas, 0, totalQuantidades, chave);
+            return posicao >= 0 ? posicao : -posicao - 1;
+        }
+
+        BitSet posicoesDosIds(List<Integer> ids) {
+            BitSet posicoes = new BitSet(armazem.getTotalPosicoes());
+            for (int id : ids) {
+                int posicao = buscarPosicao(id);
+                if (posicao >= 0) {
+                    posicoes.set(posicao);
+                }
+            }
+            return posicoes;
+        }
+
+        boolean contemTermo(int posicao, String termoNormalizado) {
+            String nome = armazem.getNome(posicao);
+            String caixa = armazem.getCaixaNome(posicao);
+            return (nome != null && nome.toLowerCase().contains(termoNormalizado))
+                    || (caixa != null && caixa.toLowerCase().contains(termoNormalizado));
+        }
+
+        private int buscarPosicao(int id) {
+            return id >= 0 && id < posicaoPorId.length ? posicaoPorId[id] - 1 : -1;
+        }
+
+        /**
+         * Inclui o produto em uma nova posição do armazém e, se ele já estiver no catálogo, retira a posição
+         * antiga dos índices. A posição antiga não é reaproveitada, para que as visões já devolvidas não mudem.
+         * As chaves antigas vêm do armazém, e não do objeto, que pode ter sido alterado no lugar.
+         */
+        void registrar(Produto produto) {
+            int anterior = buscarPosicao(produto.getId());
+            if (anterior >= 0) {
+                desindexar(anterior);
+                foraDeOrdem = true;
+            }
+            int posicao = armazem.adicionar(produto);
+            if (produto.getId() >= posicaoPorId.length) {
+                posicaoPorId = Arrays.copyOf(posicaoPorId, Math.max(posicaoPorId.length * 2, produto.getId() + 1));
+            }
+            posicaoPorId[produto.getId()] = posicao + 1;
+
+            ativos.set(posicao);
+            marcar(porCategoria, normalizar(armazem.getCategoria(posicao)), posicao);
+            marcar(porLocalizacao, normalizar(armazem.getLocalizacao(posicao)), posicao);
+            marcar(porCaixa, normalizar(armazem.getCaixaNome(posicao)), posicao);
+            inserirQuantidade(((long) armazem.getQuantidade(posicao) << 32) | posicao);
+        }
+
+        void remover(int id) {
+            int posicao = buscarPosicao(id);
+            if (posicao >= 0) {
+                desindexar(posicao);
+                posicaoPorId[id] = 0;
+            }
+        }
+
+        void renomearCategoria(String atual, String novo) {
+            renomear(porCategoria, atual, novo, armazem::getCategoria, Produto::setCategoria);
+        }
+
+        void renomearLocalizacao(String atual, String novo) {
+            renomear(porLocalizacao, atual, novo, armazem::getLocalizacao, Produto::setLocalizacao);
+        }
+
+        /**
+         * Registra de novo, com o novo nome, os produtos que usam o nome antigo. O texto guardado nas posições
+         * antigas não é alterado, porque as visões já exibidas na tabela o leem; elas recebem o novo nome pela
+         * busca de alterações da lista. Só são percorridas as posições da chave do nome antigo, e as de outras
+         * grafias que compartilham a chave em minúsculas continuam como estão.
+         */
+        private void renomear(Map<String, BitSet> indice, String atual, String novo, IntFunction<String> valor,
+                              BiConsumer<Produto, String> definir) {
+            BitSet posicoes = indice.get(normalizar(atual));
+            if (posicoes == null) {
+                return;
+            }
+            List<Produto> renomeados = new ArrayList<>();
+            for (int i = posicoes.nextSetBit(0); i >= 0; i = posicoes.nextSetBit(i + 1)) {
+                if (atual.equals(valor.apply(i))) {
+                    Produto copia = armazem.getProduto(i).copiar();
+                    definir.accept(copia, novo);
+                    renomeados.add(copia);
+                }
+            }
+            for (Produto produto : renomeados) {
+                registrar(produto);
+            }
+        }
+
+        private void desindexar(int posicao) {
+            ativos.clear(posicao);
+            desmarcar(porCategoria, normalizar(armazem.getCategoria(posicao)), posicao);
+            desmarcar(porLocalizacao, normalizar(armazem.getLocalizacao(posicao)), posicao);
+            desmarcar(porCaixa, normalizar(armazem.getCaixaNome(posicao)), posicao);
+            removerQuantidade(((long) armazem.getQuantidade(posicao) << 32) | posicao);
+        }
+
+        private static String normalizar(String valor) {
+            return valor != null ? valor.toLowerCase() : null;
+        }
+
+        private static void marcar(Map<String, BitSet> indice, String chave, int posicao) {
+            if (chave != null) {
+                indice.computeIfAbsent(chave, valor -> new BitSet()).set(posicao);
+            }
+        }
+
+        private static void desmarcar(Map<String, BitSet> indice, String chave, int posicao) {
+            if (chave == null) {
+                return;
+            }
+            BitSet posicoes = indice.get(chave);
+            if (posicoes != null) {
+                posicoes.clear(posicao);
+                if (posicoes.isEmpty()) {
+                    indice.remove(chave);
+                }
+            }
+        }
+
+        private void inserirQuantidade(long chave) {
+            int posicao = carregando ? totalQuantidades : limiteInferior(chave);
+            if (totalQuantidades == quantidadesOrdenadas.length) {
+                quantidadesOrdenadas = Arrays.copyOf(quantidadesOrdenadas, totalQuantidades * 2);
+            }
+            System.arraycopy(quantidadesOrdenadas, posicao, quantidadesOrdenadas, posicao + 1, totalQuantidades - posicao);
+            quantidadesOrdenadas[posicao] = chave;
+            totalQuantidades++;
+        }
+
+        private int procurarQuantidade(long chave) {
+            for (int i = 0; i < totalQuantidades; i++) {
+                if (quantidadesOrdenadas[i] == chave) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void removerQuantidade(long chave) {
+            int posicao = carregando ? procurarQuantidade(chave)
+                    : Arrays.binarySearch(quantidadesOrdenadas, 0, totalQuantidades, chave);
+            if (posicao >= 0) {
+                System.arraycopy(quantidadesOrdenadas, posicao + 1, quantidadesOrdenadas, posicao,
+                        totalQuantidades - posicao - 1);
+                totalQuantidades--;
+            }
+        }
+    }
+}
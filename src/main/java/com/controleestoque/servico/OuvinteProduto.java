@@ -0,0 +1,33 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+
+/**
+ * Interface para quem precisa acompanhar as alterações de produtos feitas pelo ServicoProduto,
+ * como índices e totais mantidos em memória.
+ * Os métodos são chamados depois que a operação foi confirmada no banco de dados, na thread que
+ * executou a operação.
+ */
+public interface OuvinteProduto {
+
+    /**
+     * Chamado depois que um produto é adicionado; o produto já tem o id gerado pelo banco.
+     *
+     * @param produto O produto adicionado.
+     */
+    void aoAdicionar(Produto produto);
+
+    /**
+     * Chamado depois que um produto é alterado.
+     *
+     * @param produto O produto com os dados atualizados.
+     */
+    void aoAlterar(Produto produto);
+
+    /**
+     * Chamado depois que um produto é removido.
+     *
+     * @param produto O produto removido.
+     */
+    void aoRemover(Produto produto);
+}
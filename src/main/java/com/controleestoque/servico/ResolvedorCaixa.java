@@ -0,0 +1,111 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Caixa;
+import com.controleestoque.estoque.CaixaDAO;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolve nomes de caixa para ids com um cache em memória, evitando uma consulta ao banco
+ * a cada produto adicionado ou alterado.
+ * O cache guarda apenas caixas que existem; as caixas criadas por obterOuCriar entram nele, e quem
+ * altera ou remove caixas (como a limpeza de dados inválidos) deve invalidá-las.
+ */
+public class ResolvedorCaixa {
+
+    private final CaixaDAO caixaDAO;
+    private final Map<String, Integer> idPorNome = new ConcurrentHashMap<>();
+    private final Map<Integer, String> nomePorId = new ConcurrentHashMap<>();
+
+    /**
+     * Construtor que recebe o DAO usado nas consultas e escritas de caixas.
+     *
+     * @param caixaDAO O DAO de caixas.
+     */
+    public ResolvedorCaixa(CaixaDAO caixaDAO) {
+        this.caixaDAO = caixaDAO;
+    }
+
+    /**
+     * Carrega todas as caixas no cache, descartando o conteúdo anterior.
+     *
+     * @throws SQLException Em caso de erro ao listar as caixas.
+     */
+    public void carregar() throws SQLException {
+        invalidarTudo();
+        for (Caixa caixa : caixaDAO.listar()) {
+            if (caixa.getNomeCaixa() != null) {
+                guardar(caixa.getNomeCaixa(), caixa.getId());
+            }
+        }
+    }
+
+    /**
+     * Retorna o id da caixa com o nome informado, consultando o banco apenas se ela não estiver no cache.
+     *
+     * @param nomeCaixa O nome da caixa.
+     * @return O id da caixa, ou null se ela não existir.
+     * @throws SQLException Em caso de erro na consulta.
+     */
+    public Integer buscarId(String nomeCaixa) throws SQLException {
+        Integer id = idPorNome.get(nomeCaixa);
+        if (id != null) {
+            return id;
+        }
+        int encontrado = caixaDAO.buscarIdCaixaPorNome(nomeCaixa);
+        if (encontrado == 0) {
+            return null;
+        }
+        guardar(nomeCaixa, encontrado);
+        return encontrado;
+    }
+
+    /**
+     * Retorna o id da caixa com o nome informado, criando-a se ela não existir.
+     *
+     * @param nomeCaixa   O nome da caixa.
+     * @param localizacao A localização usada se a caixa for criada.
+     * @return O id da caixa existente ou criada.
+     * @throws SQLException Em caso de erro na busca ou na criação.
+     */
+    public int obterOuCriar(String nomeCaixa, String localizacao) throws SQLException {
+        Integer id = idPorNome.get(nomeCaixa);
+        if (id != null) {
+            return id;
+        }
+        int obtido = caixaDAO.obterOuCriar(nomeCaixa, localizacao);
+        guardar(nomeCaixa, obtido);
+        return obtido;
+    }
+
+    /**
+     * Remove as caixas informadas do cache; a próxima busca pelo nome delas consulta o banco.
+     *
+     * @param ids Os ids das caixas.
+     */
+    public void invalidar(Collection<Integer> ids) {
+        for (Integer id : ids) {
+            invalidar(id);
+        }
+    }
+
+    public void invalidar(int id) {
+        String nome = nomePorId.remove(id);
+        if (nome != null) {
+            idPorNome.remove(nome, id);
+        }
+    }
+
+    public void invalidarTudo() {
+        idPorNome.clear();
+        nomePorId.clear();
+    }
+
+    private void guardar(String nomeCaixa, int id) {
+        idPorNome.put(nomeCaixa, id);
+        nomePorId.put(id, nomeCaixa);
+    }
+}
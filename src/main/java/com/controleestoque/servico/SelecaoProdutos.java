@@ -0,0 +1,212 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Marcação de seleção dos produtos da tabela, guardada por id em um BitSet em vez de uma propriedade
+ * em cada produto.
+ * Para que selecionar todos e inverter a seleção custem O(1), o conjunto pode estar invertido: nesse caso
+ * os bits marcam os produtos desmarcados. O número de produtos da lista que estão selecionados é mantido
+ * a partir das alterações da lista, e a caixa de seleção global só compara esse número com o tamanho dela.
+ * Selecionar todos vale também para os produtos que entrarem depois na lista (como as próximas páginas)
+ * até a seleção ser limpa. Os ids presentes na lista também ficam em um BitSet, para que marcar ou desmarcar
+ * um produto que já saiu dela (como avisa o modelo de seleção da tabela depois de um filtro) não altere a
+ * contagem. Deve ser usada na thread do JavaFX.
+ * Cada mudança incrementa a versão e registra qual produto ela afetou, para que as células e linhas da
+ * tabela, que observam a versão, redesenhem só a linha do produto marcado (ver afeta).
+ */
+public class SelecaoProdutos implements ListChangeListener<Produto> {
+
+    private final ObservableList<Produto> lista;
+    private final BitSet marcados = new BitSet();
+    private final BitSet naLista = new BitSet();
+    private boolean invertida;
+    private int selecionadosNaLista;
+
+    // Valores de idAfetado para mudanças que afetam todos os produtos ou nenhuma marcação
+    private static final int TODOS = -1;
+    private static final int NENHUM = -2;
+
+    // Incrementada a cada mudança da seleção, para que a interface saiba quando redesenhar
+    private final ReadOnlyLongWrapper versao = new ReadOnlyLongWrapper();
+    private int idAfetado = NENHUM;
+
+    /**
+     * Construtor que passa a acompanhar a lista de produtos da tabela, sem nenhum produto selecionado.
+     *
+     * @param lista A lista de produtos exibida na tabela.
+     */
+    public SelecaoProdutos(ObservableList<Produto> lista) {
+        this.lista = lista;
+        for (Produto produto : lista) {
+            naLista.set(produto.getId());
+        }
+        lista.addListener(this);
+    }
+
+    @Override
+    public void onChanged(Change<? extends Produto> mudanca) {
+        // Todas as remoções antes das inclusões: um produto que muda de posição sai e entra em trechos diferentes
+        while (mudanca.next()) {
+            if (mudanca.wasPermutated() || mudanca.wasUpdated()) {
+                continue;
+            }
+            for (Produto produto : mudanca.getRemoved()) {
+                if (naLista.get(produto.getId())) {
+                    naLista.clear(produto.getId());
+                    if (isSelecionado(produto)) {
+                        selecionadosNaLista--;
+                    }
+                }
+            }
+        }
+        mudanca.reset();
+        while (mudanca.next()) {
+            if (mudanca.wasPermutated() || mudanca.wasUpdated()) {
+                continue;
+            }
+            for (Produto produto : mudanca.getAddedSubList()) {
+                if (!naLista.get(produto.getId())) {
+                    naLista.set(produto.getId());
+                    if (isSelecionado(produto)) {
+                        selecionadosNaLista++;
+                    }
+                }
+            }
+        }
+        // A contagem pode ter mudado, mas nenhuma marcação: a tabela redesenha sozinha as linhas alteradas
+        notificar(NENHUM);
+    }
+
+    public boolean isSelecionado(Produto produto) {
+        return marcados.get(produto.getId()) != invertida;
+    }
+
+    /**
+     * Marca ou desmarca um produto da lista.
+     *
+     * @param produto    O produto.
+     * @param selecionar Sendo true para marcar e false para desmarcar.
+     */
+    public void definir(Produto produto, boolean selecionar) {
+        if (marcar(produto, selecionar)) {
+            notificar(produto.getId());
+        }
+    }
+
+    public void alternar(Produto produto) {
+        definir(produto, !isSelecionado(produto));
+    }
+
+    /**
+     * Marca ou desmarca os produtos de um intervalo de posições da lista, como na seleção com Shift.
+     *
+     * @param de         A primeira posição, inclusive.
+     * @param ate        A última posição, exclusive.
+     * @param selecionar Sendo true para marcar e false para desmarcar.
+     */
+    public void definirIntervalo(int de, int ate, boolean selecionar) {
+        boolean alterada = false;
+        for (int i = Math.max(0, de); i < Math.min(ate, lista.size()); i++) {
+            alterada |= marcar(lista.get(i), selecionar);
+        }
+        if (alterada) {
+            notificar(TODOS);
+        }
+    }
+
+    /**
+     * Marca todos os produtos, sem percorrer a lista.
+     */
+    public void selecionarTodos() {
+        marcados.clear();
+        invertida = true;
+        selecionadosNaLista = lista.size();
+        notificar(TODOS);
+    }
+
+    /**
+     * Desmarca todos os produtos, sem percorrer a lista.
+     */
+    public void limpar() {
+        marcados.clear();
+        invertida = false;
+        selecionadosNaLista = 0;
+        notificar(TODOS);
+    }
+
+    /**
+     * Inverte a marcação de todos os produtos, sem percorrer a lista.
+     */
+    public void inverter() {
+        invertida = !invertida;
+        selecionadosNaLista = lista.size() - selecionadosNaLista;
+        notificar(TODOS);
+    }
+
+    public int getQuantidadeSelecionados() {
+        return selecionadosNaLista;
+    }
+
+    public boolean isTodosSelecionados() {
+        return !lista.isEmpty() && selecionadosNaLista == lista.size();
+    }
+
+    /**
+     * Retorna os produtos selecionados da lista, na ordem dela.
+     *
+     * @return Lista com os produtos selecionados.
+     */
+    public List<Produto> getSelecionados() {
+        List<Produto> selecionados = new ArrayList<>(selecionadosNaLista);
+        if (selecionadosNaLista == 0) {
+            return selecionados;
+        }
+        for (Produto produto : lista) {
+            if (isSelecionado(produto)) {
+                selecionados.add(produto);
+            }
+        }
+        return selecionados;
+    }
+
+    public ReadOnlyLongProperty versaoProperty() {
+        return versao.getReadOnlyProperty();
+    }
+
+    /**
+     * Informa se a última mudança da seleção, avisada pela versão, pode ter alterado a marcação do produto.
+     * Uma célula que observa a versão só precisa se redesenhar se o produto dela foi afetado.
+     *
+     * @param produto O produto exibido pela célula.
+     * @return Sendo true se a marcação do produto pode ter mudado.
+     */
+    public boolean afeta(Produto produto) {
+        return idAfetado == TODOS || idAfetado == produto.getId();
+    }
+
+    private void notificar(int id) {
+        idAfetado = id;
+        versao.set(versao.get() + 1);
+    }
+
+    // Marca ou desmarca um produto e, se ele estiver na lista, ajusta a contagem; retorna true se a marcação mudou
+    private boolean marcar(Produto produto, boolean selecionar) {
+        if (isSelecionado(produto) == selecionar) {
+            return false;
+        }
+        marcados.set(produto.getId(), selecionar != invertida);
+        if (naLista.get(produto.getId())) {
+            selecionadosNaLista += selecionar ? 1 : -1;
+        }
+        return true;
+    }
+}
@@ -1,12 +1,28 @@
 package com.controleestoque.servico;
 
-import com.controleestoque.estoque.ConexaoBanco;
+import com.controleestoque.estoque.AlteracoesProdutos;
+import com.controleestoque.estoque.CaixaDAO;
+import com.controleestoque.estoque.ConsultaCancelavel;
+import com.controleestoque.estoque.OrdenacaoProduto;
+import com.controleestoque.estoque.PoolConexoes;
 import com.controleestoque.estoque.Produto;
 import com.controleestoque.estoque.ProdutoDAO;
+import com.controleestoque.estoque.ResultadoLote;
+import com.controleestoque.estoque.TotaisCategoriaDAO;
+
+import com.controleestoque.util.ConfiguracaoBanco;
+import com.controleestoque.util.LimpezaBancoDados;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 /**
  * Classe de serviço para manipulação e gerenciamento de produtos no banco de dados.
  * Utiliza a classe ProdutoDAO para realizar operações CRUD e fornece funcionalidades adicionais.
@@ -14,30 +30,140 @@ import java.util.List;
 public class ServicoProduto {
 
 	private ProdutoDAO produtoDAO;
-    private Connection conexao;
+    private PoolConexoes pool;
+    private IndiceTrigramas indiceBusca;
+    private MotorFiltroMemoria motorFiltro;
+    private CacheFacetas cacheFacetas;
+    private final List<OuvinteProduto> ouvintes = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService limpezaPeriodica;
+    private final ResolvedorCaixa resolvedorCaixa;
+    private final TotaisCategoriaDAO totaisCategoria;
 
     /**
-     * Construtor que inicializa o ProdutoDAO e a conexão com o banco de dados.
+     * Construtor que inicializa o ProdutoDAO e o pool de conexões com o banco de dados.
      *
      * @param produtoDAO É a instância de ProdutoDAO para acesso aos dados de produto.
-     * @param conexao É a conexão inicializada com o banco de dados.
+     * @param pool É o pool de conexões com o banco de dados.
      */
-    public ServicoProduto(ProdutoDAO produtoDAO, Connection conexao) {
+    public ServicoProduto(ProdutoDAO produtoDAO, PoolConexoes pool) {
         this.produtoDAO = produtoDAO;
-        this.conexao = conexao;
+        this.pool = pool;
+        this.resolvedorCaixa = new ResolvedorCaixa(new CaixaDAO(pool));
+        this.totaisCategoria = new TotaisCategoriaDAO(pool);
     }
 
-    // Obtém a conexão com o banco de dados
+    // Empresta uma conexão do pool; quem a recebe deve fechá-la para devolvê-la ao pool.
 
-    public Connection getConexao() {
-        try {
-            if (this.conexao == null || this.conexao.isClosed()) {
-                this.conexao = ConexaoBanco.getConexao();
+    public Connection getConexao() throws SQLException {
+        return pool.obterConexao();
+    }
+
+    public PoolConexoes getPool() {
+        return pool;
+    }
+
+    public ResolvedorCaixa getResolvedorCaixa() {
+        return resolvedorCaixa;
+    }
+
+    public void adicionarOuvinte(OuvinteProduto ouvinte) {
+        ouvintes.add(ouvinte);
+    }
+
+    public void removerOuvinte(OuvinteProduto ouvinte) {
+        ouvintes.remove(ouvinte);
+    }
+
+    /**
+     * Passa a usar o índice de trigramas na pesquisa por termo. O índice é carregado em segundo plano;
+     * até ficar pronto, a pesquisa continua sendo feita pelo banco de dados.
+     *
+     * @param indice O índice de busca.
+     */
+    public void usarIndiceBusca(IndiceTrigramas indice) {
+        this.indiceBusca = indice;
+        adicionarOuvinte(indice);
+
+        Thread carga = new Thread(() -> {
+            try {
+                indice.carregar(produtoDAO);
+            } catch (SQLException e) {
+                System.out.println("Erro ao carregar o índice de busca: " + e.getMessage());
             }
+        }, "carga-indice-busca");
+        carga.setDaemon(true);
+        carga.start();
+    }
+
+    /**
+     * Passa a oferecer o motor de filtros em memória. O catálogo é carregado em segundo plano e só se
+     * couber no limite do motor; enquanto isMotorFiltroPronto() for false os filtros usam o banco de dados.
+     *
+     * @param motor O motor de filtros.
+     */
+    public void usarMotorFiltro(MotorFiltroMemoria motor) {
+        this.motorFiltro = motor;
+        adicionarOuvinte(motor);
+
+        Thread carga = new Thread(() -> {
+            try {
+                motor.carregar(produtoDAO);
+            } catch (SQLException e) {
+                System.out.println("Erro ao carregar os filtros em memória: " + e.getMessage());
+            }
+        }, "carga-filtros-memoria");
+        carga.setDaemon(true);
+        carga.start();
+    }
+
+    public MotorFiltroMemoria getMotorFiltro() {
+        return motorFiltro;
+    }
+
+    public boolean isMotorFiltroPronto() {
+        return motorFiltro != null && motorFiltro.isPronto();
+    }
+
+    /**
+     * Passa a usar o cache de facetas nas opções dos filtros. O cache é carregado em segundo plano;
+     * até ficar pronto, as opções continuam sendo consultadas no banco de dados.
+     *
+     * @param cache O cache de facetas.
+     */
+    public void usarCacheFacetas(CacheFacetas cache) {
+        this.cacheFacetas = cache;
+        adicionarOuvinte(cache);
+
+        Thread carga = new Thread(() -> {
+            try {
+                cache.carregar(produtoDAO);
+            } catch (SQLException e) {
+                System.out.println("Erro ao carregar as facetas dos filtros: " + e.getMessage());
+            }
+        }, "carga-facetas");
+        carga.setDaemon(true);
+        carga.start();
+    }
+
+    /**
+     * Retorna o cache de facetas, ou null se ele não estiver em uso ou ainda não estiver pronto.
+     */
+    public CacheFacetas getCacheFacetas() {
+        return cacheFacetas != null && cacheFacetas.isPronto() ? cacheFacetas : null;
+    }
+
+    /**
+     * Salva o índice de busca em disco, para ser reaproveitado na próxima inicialização.
+     */
+    public void salvarIndiceBusca() {
+        if (indiceBusca == null || !indiceBusca.isPronto()) {
+            return;
+        }
+        try {
+            indiceBusca.salvarSnapshot(produtoDAO.obterAssinaturaProdutos());
         } catch (SQLException e) {
-            e.printStackTrace();
+            System.out.println("Erro ao salvar o índice de busca: " + e.getMessage());
         }
-        return this.conexao;
     }
 
     // CRUD de Produto utilizando a instância de ProdutoDAO.
@@ -46,36 +172,298 @@ public class ServicoProduto {
         return produtoDAO.listar();
         }
 
+    public List<Produto> listarPagina(OrdenacaoProduto ordenacao, boolean crescente, Produto ultimo,
+            int tamanhoPagina) throws SQLException {
+        return produtoDAO.listarPagina(ordenacao, crescente, ultimo, tamanhoPagina);
+    }
+
+    /**
+     * Busca os produtos que atendem aos filtros. Com um termo de pesquisa, os candidatos vêm do índice de
+     * trigramas quando ele está pronto e o número de ids encontrados não passa do limite configurado;
+     * caso contrário, o termo é filtrado pelo banco. O resultado é ordenado pela relevância do termo.
+     */
     public List<Produto> buscarProdutosComFiltros(String termo, String categoria, String localizacao, String caixa,
             Integer quantidadeMin, Integer quantidadeMax) throws SQLException {
-        return produtoDAO.buscarProdutosComFiltros(termo, categoria, localizacao, caixa, quantidadeMin, quantidadeMax);
+        return buscarProdutosComFiltros(termo, categoria, localizacao, caixa, quantidadeMin, quantidadeMax,
+                new ConsultaCancelavel(0));
     }
 
+    /**
+     * Igual a buscarProdutosComFiltros, com uma consulta que pode ser cancelada por outra thread.
+     */
+    public List<Produto> buscarProdutosComFiltros(String termo, String categoria, String localizacao, String caixa,
+            Integer quantidadeMin, Integer quantidadeMax, ConsultaCancelavel consulta) throws SQLException {
+        if (termo == null || termo.isEmpty()) {
+            return produtoDAO.buscarProdutosComFiltros(termo, categoria, localizacao, caixa, quantidadeMin,
+                    quantidadeMax, consulta);
+        }
+
+        List<Produto> produtos;
+        List<Integer> ids = indiceBusca != null && indiceBusca.isPronto() ? indiceBusca.buscar(termo) : null;
+        if (ids != null && ids.size() <= ConfiguracaoBanco.getBuscaLimiteIdsIndice()) {
+            produtos = produtoDAO.buscarProdutosPorIds(ids, categoria, localizacao, caixa, quantidadeMin,
+                    quantidadeMax, consulta);
+        } else {
+            produtos = produtoDAO.buscarProdutosComFiltros(termo, categoria, localizacao, caixa, quantidadeMin,
+                    quantidadeMax, consulta);
+        }
+        IndiceTrigramas.ordenarPorRelevancia(produtos, termo);
+        return produtos;
+    }
+
+    // As operações de escrita avisam os ouvintes depois de confirmadas no banco.
+
     public void adicionar(Produto produto) throws SQLException {
         produtoDAO.adicionar(produto);
+        for (OuvinteProduto ouvinte : ouvintes) {
+            ouvinte.aoAdicionar(produto);
+        }
+    }
+
+    /**
+     * Adiciona vários produtos em lotes, com o tamanho de lote da configuração, e avisa os ouvintes
+     * de cada produto adicionado.
+     *
+     * @param produtos Os produtos a serem adicionados; recebem os ids gerados.
+     * @return As medidas da operação, incluindo as linhas gravadas por segundo.
+     * @throws SQLException Em caso de erro ao adicionar os produtos.
+     */
+    public ResultadoLote adicionarLote(List<Produto> produtos) throws SQLException {
+        ResultadoLote resultado = produtoDAO.adicionarLote(produtos, ConfiguracaoBanco.getLoteTamanhoInsercao());
+        for (Produto produto : produtos) {
+            for (OuvinteProduto ouvinte : ouvintes) {
+                ouvinte.aoAdicionar(produto);
+            }
+        }
+        return resultado;
     }
 
     public void remover(Produto produto) throws SQLException {
         produtoDAO.remover(produto);
+        for (OuvinteProduto ouvinte : ouvintes) {
+            ouvinte.aoRemover(produto);
+        }
+    }
+
+    /**
+     * Remove vários produtos em uma única transação e avisa os ouvintes de cada produto removido.
+     *
+     * @param produtos Os produtos a serem removidos.
+     * @return O número de produtos removidos no banco.
+     * @throws SQLException Em caso de erro ao remover os produtos; nenhum produto é removido.
+     */
+    public int removerLote(List<Produto> produtos) throws SQLException {
+        List<Integer> ids = new ArrayList<>(produtos.size());
+        for (Produto produto : produtos) {
+            ids.add(produto.getId());
+        }
+        int removidos = produtoDAO.removerLote(ids);
+        for (Produto produto : produtos) {
+            for (OuvinteProduto ouvinte : ouvintes) {
+                ouvinte.aoRemover(produto);
+            }
+        }
+        return removidos;
+    }
+
+    /**
+     * Remove os dados que ficaram inválidos depois de uma operação, verificando apenas as caixas e os
+     * produtos afetados por ela, e avisa os ouvintes dos produtos removidos.
+     *
+     * @param idsCaixas   As caixas que a operação pode ter esvaziado; valores nulos são ignorados.
+     * @param idsProdutos Os produtos adicionados ou alterados pela operação.
+     * @throws SQLException Em caso de erro na limpeza.
+     */
+    public void limparDadosInvalidos(Collection<Integer> idsCaixas, Collection<Integer> idsProdutos)
+            throws SQLException {
+        List<Integer> caixas = new ArrayList<>();
+        for (Integer id : idsCaixas) {
+            if (id != null) {
+                caixas.add(id);
+            }
+        }
+        List<Integer> removidos;
+        try (Connection conexao = pool.obterConexao()) {
+            try {
+                removidos = LimpezaBancoDados.limparDadosInvalidos(conexao, caixas, idsProdutos);
+                conexao.commit();
+            } catch (SQLException e) {
+                conexao.rollback();
+                throw e;
+            }
+        }
+        // Qualquer uma das caixas verificadas pode ter sido removida
+        resolvedorCaixa.invalidar(caixas);
+        avisarRemocao(removidos);
+    }
+
+    /**
+     * Agenda a varredura completa dos dados inválidos em segundo plano, a cada intervalo.
+     *
+     * @param intervaloMinutos O intervalo entre as varreduras; 0 ou negativo desativa a varredura.
+     */
+    public synchronized void iniciarLimpezaPeriodica(long intervaloMinutos) {
+        if (limpezaPeriodica != null || intervaloMinutos <= 0) {
+            return;
+        }
+        limpezaPeriodica = Executors.newSingleThreadScheduledExecutor(tarefa -> {
+            Thread thread = new Thread(tarefa, "limpeza-banco-dados");
+            thread.setDaemon(true);
+            return thread;
+        });
+        limpezaPeriodica.scheduleWithFixedDelay(this::varrerDadosInvalidos, intervaloMinutos, intervaloMinutos,
+                TimeUnit.MINUTES);
+    }
+
+    public synchronized void pararLimpezaPeriodica() {
+        if (limpezaPeriodica != null) {
+            limpezaPeriodica.shutdownNow();
+            limpezaPeriodica = null;
+        }
+    }
+
+    private void varrerDadosInvalidos() {
+        try (Connection conexao = pool.obterConexao()) {
+            List<Integer> removidos;
+            try {
+                removidos = LimpezaBancoDados.listarProdutosInvalidos(conexao);
+                LimpezaBancoDados.limparDadosInvalidos(conexao);
+                conexao.commit();
+            } catch (SQLException e) {
+                conexao.rollback();
+                throw e;
+            }
+            resolvedorCaixa.invalidarTudo();
+            avisarRemocao(removidos);
+        } catch (SQLException e) {
+            System.err.println("Erro na limpeza periódica do banco de dados: " + e.getMessage());
+        }
+    }
+
+    // Os ouvintes identificam os produtos pelo id
+    private void avisarRemocao(List<Integer> ids) {
+        for (Integer id : ids) {
+            Produto produto = new Produto();
+            produto.setId(id);
+            for (OuvinteProduto ouvinte : ouvintes) {
+                ouvinte.aoRemover(produto);
+            }
+        }
     }
 
     public void alterar(Produto produto) throws SQLException {
         produtoDAO.alterar(produto);
+        for (OuvinteProduto ouvinte : ouvintes) {
+            ouvinte.aoAlterar(produto);
+        }
     }
 
     public void alterarMassa(List<Produto> produtos) throws SQLException {
         produtoDAO.alterarMassa(produtos);
+        for (Produto produto : produtos) {
+            for (OuvinteProduto ouvinte : ouvintes) {
+                ouvinte.aoAlterar(produto);
+            }
+        }
     }
     
+    /**
+     * Renomeia uma categoria em todos os produtos; no banco, só a linha da categoria é alterada.
+     * As listas já carregadas recebem o novo nome pela busca de alterações; nos filtros e nas facetas em
+     * memória o nome é trocado no lugar, sem ler os produtos de novo.
+     *
+     * @param atual O nome atual da categoria.
+     * @param novo  O novo nome.
+     * @return Sendo true se a categoria existia.
+     * @throws SQLException Em caso de erro ou se já existir uma categoria com o novo nome.
+     */
+    public boolean renomearCategoria(String atual, String novo) throws SQLException {
+        boolean renomeada = produtoDAO.renomearCategoria(atual, novo);
+        if (renomeada) {
+            if (motorFiltro != null) {
+                motorFiltro.renomearCategoria(atual, novo);
+            }
+            if (cacheFacetas != null) {
+                cacheFacetas.renomearCategoria(atual, novo);
+            }
+        }
+        return renomeada;
+    }
+
+    /**
+     * Renomeia uma localização em todos os produtos, como em renomearCategoria.
+     *
+     * @param atual O nome atual da localização.
+     * @param novo  O novo nome.
+     * @return Sendo true se a localização existia.
+     * @throws SQLException Em caso de erro ou se já existir uma localização com o novo nome.
+     */
+    public boolean renomearLocalizacao(String atual, String novo) throws SQLException {
+        boolean renomeada = produtoDAO.renomearLocalizacao(atual, novo);
+        if (renomeada) {
+            if (motorFiltro != null) {
+                motorFiltro.renomearLocalizacao(atual, novo);
+            }
+            if (cacheFacetas != null) {
+                cacheFacetas.renomearLocalizacao(atual, novo);
+            }
+        }
+        return renomeada;
+    }
+
+    /**
+     * Liga ou desliga a tabela de resumo mantida por gatilhos para os totais por categoria.
+     *
+     * @param usar Sendo true para ler os totais da tabela de resumo e false para agregá-los a cada consulta.
+     * @throws SQLException Em caso de erro ao criar ou remover os gatilhos.
+     */
+    public void usarTabelaResumoTotais(boolean usar) throws SQLException {
+        totaisCategoria.configurarTabelaResumo(usar);
+    }
+
+    /**
+     * Retorna a quantidade total de cada categoria de todo o catálogo, calculada pelo banco.
+     *
+     * @return Map com cada categoria ('' para produtos sem categoria) e a soma das quantidades.
+     * @throws SQLException Em caso de erro na consulta.
+     */
+    public Map<String, Long> totalizarPorCategoria() throws SQLException {
+        return totaisCategoria.totalizarPorCategoria();
+    }
+
+    /**
+     * Retorna a versão atual dos dados, a partir da qual buscarAlteracoesDesde encontra as próximas escritas.
+     *
+     * @return A maior versão gravada nos produtos, caixas, categorias, localizações e remoções.
+     * @throws SQLException Em caso de erro na consulta.
+     */
+    public long obterVersaoAtual() throws SQLException {
+        return produtoDAO.obterVersaoAtual();
+    }
+
+    /**
+     * Busca os produtos incluídos, alterados ou removidos depois da versão informada.
+     *
+     * @param versao A versão dos dados já conhecidos.
+     * @return As alterações e a versão a ser usada na próxima busca.
+     * @throws SQLException Em caso de erro na consulta.
+     */
+    public AlteracoesProdutos buscarAlteracoesDesde(long versao) throws SQLException {
+        return produtoDAO.buscarAlteracoesDesde(versao);
+    }
+
     public List<String> getTodasCategorias() throws SQLException {
-        return produtoDAO.getTodasCategorias();
+        CacheFacetas cache = getCacheFacetas();
+        return cache != null ? cache.getCategorias() : produtoDAO.getTodasCategorias();
     }
 
     public List<String> getTodasLocalizacoes() throws SQLException {
-        return produtoDAO.getTodasLocalizacoes();
+        CacheFacetas cache = getCacheFacetas();
+        return cache != null ? cache.getLocalizacoes() : produtoDAO.getTodasLocalizacoes();
     }
 
     public List<String> getTodasCaixas() throws SQLException {
-        return produtoDAO.getTodasCaixas();
+        CacheFacetas cache = getCacheFacetas();
+        return cache != null ? cache.getCaixas() : produtoDAO.getTodasCaixas();
     }
 }
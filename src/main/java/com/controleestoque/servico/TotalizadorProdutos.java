@@ -0,0 +1,116 @@
+package com.controleestoque.servico;
+
+import com.controleestoque.estoque.Produto;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Totais de quantidade por categoria e total geral dos produtos de uma lista observável, mantidos a
+ * partir das alterações da lista: cada produto adicionado é somado e cada produto removido é descontado,
+ * sem percorrer a lista inteira a cada filtro ou edição.
+ * Os produtos da lista não devem ser alterados no lugar; uma edição deve substituir o produto por uma
+ * cópia alterada, para que o desconto use os valores que foram somados.
+ * As alterações da lista e as leituras dos totais acontecem na thread do JavaFX.
+ */
+public class TotalizadorProdutos implements ListChangeListener<Produto> {
+
+    private final Map<String, Total> totais = new HashMap<>();
+    private long totalGeral;
+    private int produtos;
+
+    /**
+     * Construtor que soma os produtos já presentes na lista e passa a acompanhar as alterações dela.
+     *
+     * @param lista A lista de produtos a ser totalizada.
+     */
+    public TotalizadorProdutos(ObservableList<Produto> lista) {
+        somar(lista);
+        lista.addListener(this);
+    }
+
+    @Override
+    public void onChanged(Change<? extends Produto> mudanca) {
+        while (mudanca.next()) {
+            if (mudanca.wasPermutated() || mudanca.wasUpdated()) {
+                continue;
+            }
+            if (mudanca.wasRemoved()) {
+                // A lista inteira foi substituída (por exemplo, por um novo filtro): recomeça do zero
+                if (mudanca.getRemovedSize() == produtos
+                        && mudanca.getList().size() == mudanca.getAddedSize()) {
+                    limpar();
+                } else {
+                    descontar(mudanca.getRemoved());
+                }
+            }
+            if (mudanca.wasAdded()) {
+                somar(mudanca.getAddedSubList());
+            }
+        }
+    }
+
+    /**
+     * Retorna a quantidade total de cada categoria dos produtos da lista.
+     *
+     * @return Map contendo cada categoria como chave e o total de itens como valor.
+     */
+    public Map<String, Long> getTotalPorCategoria() {
+        Map<String, Long> totalPorCategoria = new HashMap<>();
+        for (Map.Entry<String, Total> entry : totais.entrySet()) {
+            totalPorCategoria.put(entry.getKey(), entry.getValue().quantidade);
+        }
+        return totalPorCategoria;
+    }
+
+    public long getTotalGeral() {
+        return totalGeral;
+    }
+
+    public int getQuantidadeProdutos() {
+        return produtos;
+    }
+
+    private void somar(List<? extends Produto> adicionados) {
+        for (int i = 0; i < adicionados.size(); i++) {
+            Produto produto = adicionados.get(i);
+            Total total = totais.computeIfAbsent(GerenciadorTotalizacaoProduto.rotulo(produto.getCategoria()),
+                    categoria -> new Total());
+            total.quantidade += produto.getQuantidade();
+            total.produtos++;
+            totalGeral += produto.getQuantidade();
+            produtos++;
+        }
+    }
+
+    private void descontar(List<? extends Produto> removidos) {
+        for (int i = 0; i < removidos.size(); i++) {
+            Produto produto = removidos.get(i);
+            String categoria = GerenciadorTotalizacaoProduto.rotulo(produto.getCategoria());
+            Total total = totais.get(categoria);
+            if (total == null) {
+                continue;
+            }
+            total.quantidade -= produto.getQuantidade();
+            if (--total.produtos == 0) {
+                totais.remove(categoria);
+            }
+            totalGeral -= produto.getQuantidade();
+            produtos--;
+        }
+    }
+
+    private void limpar() {
+        totais.clear();
+        totalGeral = 0;
+        produtos = 0;
+    }
+
+    private static final class Total {
+        private long quantidade;
+        private int produtos;
+    }
+}
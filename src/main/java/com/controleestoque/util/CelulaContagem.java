@@ -0,0 +1,35 @@
+package com.controleestoque.util;
+
+import java.util.function.ToIntFunction;
+
+import javafx.scene.control.ListCell;
+
+/**
+ * Célula de ComboBox que exibe o valor seguido do número de produtos que o possuem, como "Ferramentas (12)".
+ * A contagem é consultada a cada atualização da célula; sem contagem conhecida, exibe apenas o valor.
+ */
+public class CelulaContagem extends ListCell<String> {
+
+	private final ToIntFunction<String> contagem;
+
+	/**
+	 * Construtor que recebe a função de contagem.
+	 *
+	 * @param contagem Retorna o número de produtos de um valor, ou 0 se não for conhecido.
+	 */
+	public CelulaContagem(ToIntFunction<String> contagem) {
+		this.contagem = contagem;
+	}
+
+	@Override
+	protected void updateItem(String item, boolean empty) {
+
+		super.updateItem(item, empty);
+		if (empty || item == null) {
+			setText(null);
+		} else {
+			int produtos = contagem.applyAsInt(item);
+			setText(produtos > 0 ? item + " (" + produtos + ")" : item);
+		}
+	}
+}
@@ -47,6 +47,81 @@ public class ConfiguracaoBanco {
         return getPropriedade("database.nome");
     }
 
+    // Retorna uma propriedade numérica ou o valor padrão se ela não estiver definida ou for inválida
+    public static int getPropriedadeInteira(String chave, int valorPadrao) {
+        String valor = properties.getProperty(chave);
+        if (valor == null || valor.trim().isEmpty()) {
+            return valorPadrao;
+        }
+        try {
+            return Integer.parseInt(valor.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Valor inválido para a propriedade '" + chave + "': " + valor);
+            return valorPadrao;
+        }
+    }
+
+    // Retorna uma propriedade true/false ou o valor padrão se ela não estiver definida
+    public static boolean getPropriedadeBooleana(String chave, boolean valorPadrao) {
+        String valor = properties.getProperty(chave);
+        if (valor == null || valor.trim().isEmpty()) {
+            return valorPadrao;
+        }
+        return Boolean.parseBoolean(valor.trim());
+    }
+
+    public static int getPoolTamanhoMaximo() {
+        return getPropriedadeInteira("pool.tamanhoMaximo", 5);
+    }
+
+    public static int getPoolTimeoutEmprestimoMs() {
+        return getPropriedadeInteira("pool.timeoutEmprestimoMs", 5000);
+    }
+
+    public static int getPoolTimeoutValidacaoSeg() {
+        return getPropriedadeInteira("pool.timeoutValidacaoSeg", 2);
+    }
+
+    public static int getPoolCapacidadeCacheStatements() {
+        return getPropriedadeInteira("pool.cacheStatements", 100);
+    }
+
+    public static int getTamanhoPaginaTabela() {
+        return getPropriedadeInteira("tabela.tamanhoPagina", 200);
+    }
+
+    public static int getBuscaLimiteIdsIndice() {
+        return getPropriedadeInteira("busca.limiteIdsIndice", 10000);
+    }
+
+    public static int getFiltroLimiteProdutosMemoria() {
+        return getPropriedadeInteira("filtro.limiteProdutosMemoria", 1000000);
+    }
+
+    public static boolean isFiltroForaDoHeap() {
+        return getPropriedadeBooleana("filtro.foraDoHeap", false);
+    }
+
+    public static int getFiltroAtrasoDigitacaoMs() {
+        return getPropriedadeInteira("filtro.atrasoDigitacaoMs", 250);
+    }
+
+    public static int getFiltroTimeoutConsultaSeg() {
+        return getPropriedadeInteira("filtro.timeoutConsultaSeg", 10);
+    }
+
+    public static int getLoteTamanhoInsercao() {
+        return getPropriedadeInteira("lote.tamanhoInsercao", 1000);
+    }
+
+    public static int getLimpezaIntervaloVarreduraMin() {
+        return getPropriedadeInteira("limpeza.intervaloVarreduraMin", 30);
+    }
+
+    public static boolean isTotaisUsarTabelaResumo() {
+        return getPropriedadeBooleana("totais.usarTabelaResumo", true);
+    }
+
     public static Properties getProperties() {
         return properties;
     }
@@ -80,8 +80,8 @@ public class EstiloUI {
 	}
 
 	// Atualiza o estilo de uma linha
-	public static void atualizarEstiloLinhaSelecionada(TableRow<Produto> row, Produto produto) {
-		if (produto.isSelecionado()) {
+	public static void atualizarEstiloLinhaSelecionada(TableRow<Produto> row, boolean selecionado) {
+		if (selecionado) {
 			row.setStyle("-fx-background-color: lightblue;");
 		} else {
 			row.setStyle("");
@@ -1,29 +1,61 @@
 package com.controleestoque.util;
 
+import com.controleestoque.estoque.ConexaoBanco;
+import com.controleestoque.estoque.InicializacaoBancoDados;
+import com.controleestoque.estoque.PoolConexoes;
 import com.controleestoque.estoque.Produto;
 import com.controleestoque.estoque.ProdutoDAO;
 import com.controleestoque.estoque.Caixa;
 import com.controleestoque.estoque.CaixaDAO;
+import com.controleestoque.estoque.ResultadoLote;
+import com.controleestoque.estoque.TabelaNomesDAO;
+import com.controleestoque.estoque.TotaisCategoriaDAO;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.CallableStatement;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 /**
  * Classe utilitária responsável pela geração de dados fictícios para o banco de dados.
  * Gera produtos e caixas em massa, facilitando o preenchimento e testes da aplicação.
+ * Para volumes grandes, a carga por importação gera os dados em arquivos temporários e os importa
+ * com o SYSCS_UTIL.SYSCS_IMPORT_DATA do Derby; ela pode ser executada pela linha de comando:
+ * <pre>
+ * java -cp ... com.controleestoque.util.GeradorDados &lt;produtos&gt; [caixas] [threads]
+ * </pre>
  */
 public class GeradorDados {
 
 	private static final Random random = new Random();
 
+	private static final int TOTAL_CATEGORIAS = 5;
+
 	//Gera uma quantidade especifica de produtos e os insere no banco de dados.
-	public static void gerarProdutosEmMassa(Connection connection, int quantidade) {
+	public static void gerarProdutosEmMassa(PoolConexoes pool, int quantidade) {
 		
-		ProdutoDAO produtoDAO = new ProdutoDAO(connection);
-		CaixaDAO caixaDAO = new CaixaDAO(connection);
+		ProdutoDAO produtoDAO = new ProdutoDAO(pool);
+		CaixaDAO caixaDAO = new CaixaDAO(pool);
 		try {
 			if (caixaDAO.listar().isEmpty()) {
-				gerarCaixas(connection, 100);
+				gerarCaixas(pool, 100);
 			}
 
 			var caixas = caixaDAO.listar();
@@ -32,6 +64,7 @@ public class GeradorDados {
 				return;
 			}
 
+			List<Produto> produtos = new ArrayList<>(quantidade);
 			for (int i = 1; i <= quantidade; i++) {
 				Caixa caixaAssociada = caixas.get(random.nextInt(caixas.size()));
 
@@ -40,22 +73,24 @@ public class GeradorDados {
 
 				produto.setQuantidade(random.nextInt(500) + 1);
 
-				produto.setCategoria("Categoria " + (random.nextInt(5) + 1));
+				produto.setCategoria("Categoria " + (random.nextInt(TOTAL_CATEGORIAS) + 1));
 				produto.setCaixaID(caixaAssociada.getId());
 
-				produtoDAO.adicionar(produto);
+				produtos.add(produto);
 			}
 
-			System.out.println("Geração de " + quantidade + " produtos concluída com sucesso.");
+			// Um commit por lote em vez de um por produto: cada commit força a gravação do log do Derby
+			ResultadoLote resultado = produtoDAO.adicionarLote(produtos, ConfiguracaoBanco.getLoteTamanhoInsercao());
+			System.out.println("Geração de " + quantidade + " produtos concluída com sucesso: " + resultado + ".");
 		} catch (SQLException e) {
 			System.err.println("Erro ao gerar produtos: " + e.getMessage());
 			e.printStackTrace();
 		}
 	}
 	// Gera uma quantidade especifica de caixas aleatórias
-	public static void gerarCaixas(Connection connection, int quantidade) {
+	public static void gerarCaixas(PoolConexoes pool, int quantidade) {
 		
-		CaixaDAO caixaDAO = new CaixaDAO(connection);
+		CaixaDAO caixaDAO = new CaixaDAO(pool);
 		try {
 			for (int i = 1; i <= quantidade; i++) {
 				Caixa caixa = new Caixa("Caixa " + i, "Estante " + i);
@@ -68,4 +103,243 @@ public class GeradorDados {
 			e.printStackTrace();
 		}
 	}
+
+	/**
+	 * Ponto de entrada da carga em massa pela linha de comando. Usa o banco configurado em
+	 * 'configuracao_banco.properties', criando-o se necessário.
+	 *
+	 * @param args Número de produtos e, opcionalmente, número de caixas e de threads geradoras.
+	 */
+	public static void main(String[] args) {
+		if (args.length < 1) {
+			System.err.println("Uso: GeradorDados <produtos> [caixas] [threads]");
+			System.exit(2);
+		}
+		int produtos = Integer.parseInt(args[0]);
+		int caixas = args.length > 1 ? Integer.parseInt(args[1]) : Math.max(1, produtos / 1000);
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+		InicializacaoBancoDados.criarBancoSeNecessario();
+		try {
+			gerarPorImportacao(ConexaoBanco.getPool(), produtos, caixas, threads);
+		} catch (SQLException | IOException e) {
+			System.err.println("Erro na carga em massa: " + e.getMessage());
+			e.printStackTrace();
+			System.exit(1);
+		} finally {
+			ConexaoBanco.fecharPool();
+		}
+	}
+
+	/**
+	 * Gera caixas e produtos aleatórios e os insere com a importação em massa do Derby.
+	 * Os produtos são escritos em paralelo, cada thread em um arquivo temporário, e os arquivos são
+	 * unidos e importados de uma vez. Com a tabela vazia, o Derby faz a importação em modo de carga
+	 * em massa: grava as linhas sem manter os índices e os reconstrói ordenando os dados no final.
+	 * Depois da carga, as estatísticas do otimizador são atualizadas.
+	 *
+	 * @param pool       O pool de conexões com o banco de dados.
+	 * @param quantidade O número de produtos a gerar.
+	 * @param caixas     O número de caixas a gerar.
+	 * @param threads    O número de threads que geram os produtos.
+	 * @throws SQLException Em caso de erro na importação.
+	 * @throws IOException  Em caso de erro ao escrever os arquivos temporários.
+	 */
+	public static void gerarPorImportacao(PoolConexoes pool, int quantidade, int caixas, int threads)
+			throws SQLException, IOException {
+		Path diretorio = Files.createTempDirectory("carga-estoque");
+		try (Connection conexao = pool.obterConexao()) {
+			long inicio = System.nanoTime();
+
+			// Os nomes de caixa são únicos: a numeração continua depois do maior "Caixa n" já existente, que
+			// não acompanha o id (caixas criadas pela interface podem ter qualquer número no nome)
+			int primeiraCaixa = maiorNumeroCaixa(conexao) + 1;
+			// Todas as linhas da carga recebem a mesma versão, para que a busca de alterações as encontre
+			long versao = proximaVersao(conexao);
+			Path arquivoCaixas = diretorio.resolve("caixas.csv");
+			try (BufferedWriter escritor = Files.newBufferedWriter(arquivoCaixas, StandardCharsets.UTF_8)) {
+				for (int i = primeiraCaixa; i < primeiraCaixa + caixas; i++) {
+					escritor.write("\"Caixa " + i + "\",\"Estante " + i + "\"," + versao + "\n");
+				}
+			}
+			importar(conexao, "CAIXAS", "NOMECAIXA,LOCALIZACAO,VERSAO", arquivoCaixas);
+			int[] idsCaixas = listarIdsCaixas(conexao);
+			System.out.println(idsCaixas.length + " caixas disponíveis ("
+					+ (System.nanoTime() - inicio) / 1_000_000 + " ms).");
+			// Os produtos guardam só o id da categoria: os nomes são gravados antes na tabela Categorias
+			int[] idsCategorias = obterIdsCategorias(conexao);
+
+			long inicioGeracao = System.nanoTime();
+			Path arquivoProdutos = gerarArquivoProdutos(diretorio, quantidade, idsCaixas, idsCategorias, versao,
+					Math.max(1, threads));
+			System.out.println("Arquivo de " + quantidade + " produtos gerado em "
+					+ (System.nanoTime() - inicioGeracao) / 1_000_000 + " ms.");
+
+			long inicioImportacao = System.nanoTime();
+			if (contarProdutos(conexao) > 0) {
+				System.out.println("A tabela Produtos já tem dados: os índices serão atualizados linha a linha.");
+			}
+			// Os gatilhos dos totais por categoria rodariam uma vez por linha importada; a tabela de
+			// resumo é recalculada de uma vez quando eles são religados
+			TotaisCategoriaDAO totaisCategoria = new TotaisCategoriaDAO(pool);
+			boolean tabelaResumo = totaisCategoria.isTabelaResumoCriada();
+			if (tabelaResumo) {
+				totaisCategoria.configurarTabelaResumo(false);
+			}
+			try {
+				importar(conexao, "PRODUTOS", "NOME,QUANTIDADE,CATEGORIAID,CAIXAID,LOCALIZACAOID,VERSAO",
+						arquivoProdutos);
+			} finally {
+				if (tabelaResumo) {
+					totaisCategoria.configurarTabelaResumo(true);
+				}
+			}
+			try (Statement stmt = conexao.createStatement()) {
+				stmt.execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('APP', 'PRODUTOS', NULL)");
+				stmt.execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('APP', 'CAIXAS', NULL)");
+				stmt.execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('APP', 'CATEGORIAS', NULL)");
+				conexao.commit();
+			}
+
+			long duracao = System.nanoTime() - inicioImportacao;
+			System.out.println(String.format("Importação de %d produtos concluída em %d ms (%.0f linhas/s).",
+					quantidade, duracao / 1_000_000, quantidade * 1_000_000_000.0 / Math.max(1, duracao)));
+		} finally {
+			try (var arquivos = Files.list(diretorio)) {
+				for (Path arquivo : (Iterable<Path>) arquivos::iterator) {
+					Files.deleteIfExists(arquivo);
+				}
+			}
+			Files.deleteIfExists(diretorio);
+		}
+	}
+
+	// Cada thread escreve uma faixa dos produtos em um arquivo próprio; depois as partes são concatenadas
+	private static Path gerarArquivoProdutos(Path diretorio, int quantidade, int[] idsCaixas, int[] idsCategorias,
+			long versao, int threads) throws IOException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<Path>> partes = new ArrayList<>();
+		try {
+			int porThread = (quantidade + threads - 1) / threads;
+			for (int t = 0; t < threads; t++) {
+				final int primeiro = t * porThread + 1;
+				final int ultimo = Math.min(quantidade, (t + 1) * porThread);
+				final Path parte = diretorio.resolve("produtos-" + t + ".csv");
+				final long semente = random.nextLong();
+				partes.add(executor.submit(() -> {
+					escreverProdutos(parte, primeiro, ultimo, idsCaixas, idsCategorias, versao,
+							new SplittableRandom(semente));
+					return parte;
+				}));
+			}
+
+			Path arquivo = diretorio.resolve("produtos.csv");
+			try (FileChannel destino = FileChannel.open(arquivo, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				for (Future<Path> futuro : partes) {
+					Path parte = futuro.get();
+					try (FileChannel origem = FileChannel.open(parte, StandardOpenOption.READ)) {
+						long posicao = 0;
+						long tamanho = origem.size();
+						while (posicao < tamanho) {
+							posicao += origem.transferTo(posicao, tamanho - posicao, destino);
+						}
+					}
+					Files.delete(parte);
+				}
+			}
+			return arquivo;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Geração dos produtos interrompida.", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Erro ao gerar os produtos: " + e.getCause().getMessage(), e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void escreverProdutos(Path arquivo, int primeiro, int ultimo, int[] idsCaixas,
+			int[] idsCategorias, long versao, SplittableRandom aleatorio) throws IOException {
+		try (BufferedWriter escritor = Files.newBufferedWriter(arquivo, StandardCharsets.UTF_8)) {
+			StringBuilder linha = new StringBuilder(64);
+			for (int i = primeiro; i <= ultimo; i++) {
+				linha.setLength(0);
+				linha.append("\"Produto ").append(i).append("\",")
+						.append(aleatorio.nextInt(500) + 1)
+						.append(',').append(idsCategorias[aleatorio.nextInt(idsCategorias.length)]).append(',');
+				if (idsCaixas.length > 0) {
+					linha.append(idsCaixas[aleatorio.nextInt(idsCaixas.length)]);
+				}
+				// Localização vazia: importada como NULL
+				linha.append(",,").append(versao).append('\n');
+				escritor.append(linha);
+			}
+		}
+	}
+
+	private static void importar(Connection conexao, String tabela, String colunas, Path arquivo) throws SQLException {
+		try (CallableStatement stmt = conexao.prepareCall(
+				"CALL SYSCS_UTIL.SYSCS_IMPORT_DATA(NULL, ?, ?, NULL, ?, NULL, NULL, 'UTF-8', 0)")) {
+			stmt.setString(1, tabela);
+			stmt.setString(2, colunas);
+			stmt.setString(3, arquivo.toAbsolutePath().toString());
+			stmt.execute();
+			conexao.commit();
+		} catch (SQLException e) {
+			conexao.rollback();
+			throw e;
+		}
+	}
+
+	private static int[] obterIdsCategorias(Connection conexao) throws SQLException {
+		Map<String, Integer> ids = new HashMap<>();
+		int[] idsCategorias = new int[TOTAL_CATEGORIAS];
+		for (int i = 0; i < TOTAL_CATEGORIAS; i++) {
+			idsCategorias[i] = TabelaNomesDAO.CATEGORIAS.obterId(conexao, "Categoria " + (i + 1), ids);
+		}
+		conexao.commit();
+		return idsCategorias;
+	}
+
+	private static long proximaVersao(Connection conexao) throws SQLException {
+		try (Statement stmt = conexao.createStatement();
+				ResultSet rs = stmt.executeQuery("VALUES NEXT VALUE FOR seq_versao")) {
+			rs.next();
+			return rs.getLong(1);
+		}
+	}
+
+	// Maior n entre as caixas chamadas "Caixa n"; nomes com outro sufixo não podem coincidir com os gerados
+	private static int maiorNumeroCaixa(Connection conexao) throws SQLException {
+		int maior = 0;
+		try (Statement stmt = conexao.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT nomeCaixa FROM Caixas WHERE nomeCaixa LIKE 'Caixa %'")) {
+			while (rs.next()) {
+				String sufixo = rs.getString(1).substring("Caixa ".length());
+				if (sufixo.matches("[0-9]{1,9}")) {
+					maior = Math.max(maior, Integer.parseInt(sufixo));
+				}
+			}
+		}
+		return maior;
+	}
+
+	private static int contarProdutos(Connection conexao) throws SQLException {
+		try (Statement stmt = conexao.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Produtos")) {
+			return rs.next() ? rs.getInt(1) : 0;
+		}
+	}
+
+	private static int[] listarIdsCaixas(Connection conexao) throws SQLException {
+		List<Integer> ids = new ArrayList<>();
+		try (Statement stmt = conexao.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT id FROM Caixas")) {
+			while (rs.next()) {
+				ids.add(rs.getInt(1));
+			}
+		}
+		return ids.stream().mapToInt(Integer::intValue).toArray();
+	}
 }
@@ -2,14 +2,45 @@ package com.controleestoque.util;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Classe utilitária para realizar operações de limpeza no banco de dados.
+ * A limpeza com escopo verifica apenas as caixas e os produtos afetados por uma operação;
+ * a varredura completa percorre as tabelas inteiras e é feita periodicamente em segundo plano.
  */
 public class LimpezaBancoDados {
 
+	// Quantidade fixa de ids por comando na limpeza com escopo, para que o SQL seja sempre o mesmo
+	private static final int TAMANHO_LOTE_IDS = 100;
+	private static final String LISTA_IDS = "(?" + ", ?".repeat(TAMANHO_LOTE_IDS - 1) + ")";
+
+	// Produtos sem quantidade e sem categoria ou localização; as mesmas regras de
+	// removerCategoriasVazias e removerLocalizacoesVazias
+	private static final String CONDICAO_PRODUTO_INVALIDO =
+			"quantidade <= 0 AND (categoriaID IS NULL OR localizacaoID IS NULL)";
+
+	private static final String SQL_PRODUTOS_INVALIDOS =
+			"SELECT id FROM Produtos WHERE id IN " + LISTA_IDS + " AND " + CONDICAO_PRODUTO_INVALIDO;
+	private static final String SQL_REMOVER_PRODUTOS_INVALIDOS =
+			"DELETE FROM Produtos WHERE id IN " + LISTA_IDS + " AND " + CONDICAO_PRODUTO_INVALIDO;
+	private static final String SQL_REMOVER_CAIXAS_VAZIAS = "DELETE FROM Caixas WHERE id IN " + LISTA_IDS
+			+ " AND NOT EXISTS (SELECT 1 FROM Produtos p WHERE p.caixaID = Caixas.id AND p.quantidade > 0)";
+
+	// Métricas das limpezas com escopo e das varreduras completas
+	private static final AtomicLong limpezasEscopo = new AtomicLong();
+	private static final AtomicLong nanosLimpezasEscopo = new AtomicLong();
+	private static final AtomicLong varreduras = new AtomicLong();
+	private static final AtomicLong nanosVarreduras = new AtomicLong();
+	private static final AtomicLong caixasRemovidas = new AtomicLong();
+	private static final AtomicLong produtosRemovidos = new AtomicLong();
+
 	private Connection conexao;
 
 	// Construtor que inicializa a conexão
@@ -22,6 +53,8 @@ public class LimpezaBancoDados {
 		
 		excluirEResetarTabela("Produtos");
 		excluirEResetarTabela("Caixas");
+		excluirEResetarTabela("Categorias");
+		excluirEResetarTabela("Localizacoes");
 	}
 
 	// Exclui os dados e reseta os IDs de uma tabela
@@ -69,7 +102,7 @@ public class LimpezaBancoDados {
 	// Remove categorias que não possuem produtos
 	public static void removerCategoriasVazias(Connection conn) throws SQLException {
 
-        String sql = "DELETE FROM Produtos WHERE (categoria IS NULL OR categoria = '') " +
+        String sql = "DELETE FROM Produtos WHERE categoriaID IS NULL " +
                      "AND id NOT IN (SELECT DISTINCT id FROM Produtos WHERE nome IS NOT NULL AND quantidade > 0)";
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             int linhasAfetadas = pstmt.executeUpdate();
@@ -83,7 +116,7 @@ public class LimpezaBancoDados {
 	// Remove localizações que não possuem produtos
 	public static void removerLocalizacoesVazias(Connection conn) throws SQLException {
     	
-        String sql = "DELETE FROM Produtos WHERE (localizacao IS NULL OR localizacao = '') " +
+        String sql = "DELETE FROM Produtos WHERE localizacaoID IS NULL " +
                      "AND id NOT IN (SELECT DISTINCT id FROM Produtos WHERE nome IS NOT NULL AND quantidade > 0)";
         try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
             int linhasAfetadas = pstmt.executeUpdate();
@@ -94,10 +127,119 @@ public class LimpezaBancoDados {
         }
     }
 
-	// Limpa registros inválidos
+	// Limpa registros inválidos em todas as tabelas (varredura completa)
 	public static void limparDadosInvalidos(Connection conn) throws SQLException {
-		removerCaixasVazias(conn);
-		removerLocalizacoesVazias(conn);
-		removerCategoriasVazias(conn);
+		long inicio = System.nanoTime();
+		try {
+			removerCaixasVazias(conn);
+			removerLocalizacoesVazias(conn);
+			removerCategoriasVazias(conn);
+		} finally {
+			varreduras.incrementAndGet();
+			nanosVarreduras.addAndGet(System.nanoTime() - inicio);
+		}
+	}
+
+	/**
+	 * Aplica as mesmas regras de limparDadosInvalidos apenas às caixas e aos produtos afetados por
+	 * uma operação: os produtos informados são removidos se ficaram inválidos e as caixas informadas
+	 * são removidas se ficaram sem produtos. As consultas usam a chave primária e o índice de caixaID,
+	 * sem percorrer as tabelas. Não confirma a transação.
+	 *
+	 * @param conn       A conexão da operação.
+	 * @param idsCaixas  As caixas que a operação pode ter esvaziado (a caixa antiga e a nova de cada produto).
+	 * @param idsProdutos Os produtos adicionados ou alterados pela operação.
+	 * @return Os ids dos produtos removidos pela limpeza.
+	 * @throws SQLException Em caso de erro na limpeza.
+	 */
+	public static List<Integer> limparDadosInvalidos(Connection conn, Collection<Integer> idsCaixas,
+			Collection<Integer> idsProdutos) throws SQLException {
+		long inicio = System.nanoTime();
+		try {
+			List<Integer> removidos = new ArrayList<>();
+			if (!idsProdutos.isEmpty()) {
+				try (PreparedStatement pstmt = conn.prepareStatement(SQL_PRODUTOS_INVALIDOS)) {
+					for (List<Integer> lote : lotes(idsProdutos)) {
+						definirIds(pstmt, lote);
+						try (ResultSet rs = pstmt.executeQuery()) {
+							while (rs.next()) {
+								removidos.add(rs.getInt(1));
+							}
+						}
+					}
+				}
+				if (!removidos.isEmpty()) {
+					executarPorIds(conn, SQL_REMOVER_PRODUTOS_INVALIDOS, removidos);
+					produtosRemovidos.addAndGet(removidos.size());
+				}
+			}
+			if (!idsCaixas.isEmpty()) {
+				caixasRemovidas.addAndGet(executarPorIds(conn, SQL_REMOVER_CAIXAS_VAZIAS, idsCaixas));
+			}
+			return removidos;
+		} finally {
+			limpezasEscopo.incrementAndGet();
+			nanosLimpezasEscopo.addAndGet(System.nanoTime() - inicio);
+		}
+	}
+
+	/**
+	 * Lista os produtos que a varredura completa removeria, para que quem a chama possa avisar os
+	 * interessados depois de removê-los.
+	 *
+	 * @param conn A conexão ativa com o banco de dados.
+	 * @return Os ids dos produtos inválidos.
+	 * @throws SQLException Em caso de erro na consulta.
+	 */
+	public static List<Integer> listarProdutosInvalidos(Connection conn) throws SQLException {
+		List<Integer> ids = new ArrayList<>();
+		try (Statement stmt = conn.createStatement();
+				ResultSet rs = stmt.executeQuery("SELECT id FROM Produtos WHERE " + CONDICAO_PRODUTO_INVALIDO)) {
+			while (rs.next()) {
+				ids.add(rs.getInt(1));
+			}
+		}
+		return ids;
+	}
+
+	// Resumo das métricas de limpeza, no formato do resumo do pool de conexões
+	public static String resumoMetricas() {
+		return String.format("Limpeza[escopo=%d (media=%.2f ms), varreduras=%d (media=%.2f ms), "
+				+ "caixasRemovidas=%d, produtosRemovidos=%d]",
+				limpezasEscopo.get(), mediaMs(nanosLimpezasEscopo.get(), limpezasEscopo.get()),
+				varreduras.get(), mediaMs(nanosVarreduras.get(), varreduras.get()),
+				caixasRemovidas.get(), produtosRemovidos.get());
+	}
+
+	private static double mediaMs(long nanos, long execucoes) {
+		return execucoes == 0 ? 0 : nanos / 1_000_000.0 / execucoes;
+	}
+
+	// Executa o comando com lista IN para todos os ids, em lotes; retorna as linhas afetadas
+	private static int executarPorIds(Connection conn, String sql, Collection<Integer> ids) throws SQLException {
+		int linhas = 0;
+		try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+			for (List<Integer> lote : lotes(ids)) {
+				definirIds(pstmt, lote);
+				linhas += pstmt.executeUpdate();
+			}
+		}
+		return linhas;
+	}
+
+	private static List<List<Integer>> lotes(Collection<Integer> ids) {
+		List<Integer> lista = new ArrayList<>(ids);
+		List<List<Integer>> lotes = new ArrayList<>();
+		for (int inicio = 0; inicio < lista.size(); inicio += TAMANHO_LOTE_IDS) {
+			lotes.add(lista.subList(inicio, Math.min(lista.size(), inicio + TAMANHO_LOTE_IDS)));
+		}
+		return lotes;
+	}
+
+	// O lote é completado repetindo o último id
+	private static void definirIds(PreparedStatement pstmt, List<Integer> lote) throws SQLException {
+		for (int i = 0; i < TAMANHO_LOTE_IDS; i++) {
+			pstmt.setInt(i + 1, lote.get(Math.min(i, lote.size() - 1)));
+		}
 	}
 }
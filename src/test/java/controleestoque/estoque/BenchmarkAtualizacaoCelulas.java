@@ -0,0 +1,158 @@
+package controleestoque.estoque;
+
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.servico.CelulaSelecaoProduto;
+import com.controleestoque.servico.LinhaProduto;
+import com.controleestoque.servico.LinhaSelecaoProduto;
+import com.controleestoque.servico.SelecaoProdutos;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Scene;
+import javafx.scene.control.TableCell;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Conta quantas atualizações de células e linhas cada interação com a tabela provoca, comparando a forma
+ * antiga (alterar e chamar tabela.refresh(), ou recarregar a lista inteira) com a invalidação por linha
+ * (a seleção avisa só a linha do produto afetado e a edição substitui só o produto na lista).
+ * As células contam as chamadas de updateItem e das atualizações feitas pelos ouvintes da seleção.
+ * Rode com o JavaFX no classpath.
+ */
+public class BenchmarkAtualizacaoCelulas extends Application {
+
+    private static final int TOTAL_PRODUTOS = 10_000;
+    private static final int REPETICOES = 50;
+
+    private static int atualizacoesCelulas;
+    private static int atualizacoesLinhas;
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start(Stage primaryStage) {
+        ObservableList<Produto> produtos = FXCollections.observableArrayList();
+        for (int i = 1; i <= TOTAL_PRODUTOS; i++) {
+            produtos.add(new Produto(i, "Produto " + i, i % 500 + 1, null, null, null));
+        }
+        SelecaoProdutos selecao = new SelecaoProdutos(produtos);
+        TableView<Produto> tabela = criarTabela(produtos, selecao);
+
+        primaryStage.setScene(new Scene(new VBox(tabela), 600, 600));
+        primaryStage.setTitle("Benchmark de atualização das células");
+        primaryStage.show();
+
+        Platform.runLater(() -> {
+            tabela.layout();
+
+            medir("Alternar seleção, com refresh()", tabela, i -> {
+                selecao.alternar(produtos.get(i));
+                tabela.refresh();
+            });
+            medir("Alternar seleção, invalidando a linha", tabela, i -> selecao.alternar(produtos.get(i)));
+
+            medir("Editar produto, recarregando a lista", tabela, i -> {
+                List<Produto> recarregados = new ArrayList<>(produtos);
+                recarregados.set(i, editar(produtos.get(i)));
+                produtos.setAll(recarregados);
+                tabela.refresh();
+            });
+            medir("Editar produto, substituindo a linha", tabela, i -> produtos.set(i, editar(produtos.get(i))));
+
+            Platform.exit();
+        });
+    }
+
+    private static TableView<Produto> criarTabela(ObservableList<Produto> produtos, SelecaoProdutos selecao) {
+        TableView<Produto> tabela = new TableView<>(produtos);
+        tabela.setRowFactory(tv -> new LinhaSelecaoProduto(selecao) {
+            @Override
+            protected void updateItem(Produto produto, boolean empty) {
+                atualizacoesLinhas++;
+                super.updateItem(produto, empty);
+            }
+
+            @Override
+            protected void atualizarEstilo() {
+                atualizacoesLinhas++;
+                super.atualizarEstilo();
+            }
+        });
+
+        TableColumn<Produto, Boolean> colunaCheckBox = new TableColumn<>("Selecionar");
+        colunaCheckBox.setCellFactory(coluna -> new CelulaSelecaoProduto(selecao) {
+            @Override
+            protected void updateItem(Boolean item, boolean empty) {
+                atualizacoesCelulas++;
+                super.updateItem(item, empty);
+            }
+
+            @Override
+            protected void atualizarMarcacao() {
+                atualizacoesCelulas++;
+                super.atualizarMarcacao();
+            }
+        });
+
+        TableColumn<Produto, String> colunaNome = new TableColumn<>("Nome");
+        colunaNome.setCellValueFactory(dados -> LinhaProduto.de(dados.getValue()).nomeProperty());
+        colunaNome.setCellFactory(coluna -> new TableCell<>() {
+            @Override
+            protected void updateItem(String nome, boolean empty) {
+                atualizacoesCelulas++;
+                super.updateItem(nome, empty);
+                setText(empty ? null : nome);
+            }
+        });
+
+        TableColumn<Produto, Integer> colunaQuantidade = new TableColumn<>("Quantidade");
+        colunaQuantidade.setCellValueFactory(dados -> LinhaProduto.de(dados.getValue()).quantidadeProperty());
+        colunaQuantidade.setCellFactory(coluna -> new TableCell<>() {
+            @Override
+            protected void updateItem(Integer quantidade, boolean empty) {
+                atualizacoesCelulas++;
+                super.updateItem(quantidade, empty);
+                setText(empty || quantidade == null ? null : quantidade.toString());
+            }
+        });
+
+        tabela.getColumns().add(colunaCheckBox);
+        tabela.getColumns().add(colunaNome);
+        tabela.getColumns().add(colunaQuantidade);
+        return tabela;
+    }
+
+    /**
+     * Repete a interação sobre linhas visíveis e imprime a média de atualizações de células e linhas.
+     */
+    private static void medir(String descricao, TableView<Produto> tabela, Interacao interacao) {
+        atualizacoesCelulas = 0;
+        atualizacoesLinhas = 0;
+        for (int i = 0; i < REPETICOES; i++) {
+            interacao.executar(i % 10);
+            tabela.layout();
+        }
+        System.out.printf("%-40s %8.1f células, %8.1f linhas por interação%n", descricao,
+                (double) atualizacoesCelulas / REPETICOES, (double) atualizacoesLinhas / REPETICOES);
+    }
+
+    private static Produto editar(Produto produto) {
+        Produto editado = produto.copiar();
+        editado.setQuantidade(produto.getQuantidade() + 1);
+        return editado;
+    }
+
+    private interface Interacao {
+
+        void executar(int indice);
+    }
+}
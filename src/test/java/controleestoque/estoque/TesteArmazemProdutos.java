@@ -0,0 +1,75 @@
+package controleestoque.estoque;
+
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.servico.ArmazemProdutos;
+
+/**
+ * Carrega um catálogo de um milhão de produtos no ArmazemProdutos, dentro e fora do heap, e confere o espaço
+ * ocupado e que as visões devolvem os mesmos dados gravados.
+ * Os dados imitam os do GeradorDados: poucas categorias, caixas e localizações repetidas em todos os produtos.
+ */
+public class TesteArmazemProdutos {
+
+    private static final int TOTAL_PRODUTOS = 1_000_000;
+    private static final long LIMITE_BYTES = 100L * 1024 * 1024;
+
+    private static int falhas;
+
+    public static void main(String[] args) {
+        verificar(false);
+        verificar(true);
+        System.out.println(falhas == 0 ? "Catálogo dentro do limite de memória." : falhas + " verificação(ões) falharam.");
+        if (falhas > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void verificar(boolean foraDoHeap) {
+        long heapAntes = heapUsado();
+        ArmazemProdutos armazem = new ArmazemProdutos(TOTAL_PRODUTOS, foraDoHeap);
+        for (int i = 1; i <= TOTAL_PRODUTOS; i++) {
+            armazem.adicionar(criarProduto(i));
+        }
+        long heapOcupado = heapUsado() - heapAntes;
+        long reservado = armazem.getBytesReservados();
+
+        String descricao = foraDoHeap ? "Fora do heap" : "No heap";
+        System.out.println(descricao + ": " + heapOcupado / (1024 * 1024) + " MB no heap, "
+                + reservado / (1024 * 1024) + " MB em colunas.");
+        long ocupado = foraDoHeap ? heapOcupado + reservado : heapOcupado;
+        if (ocupado > LIMITE_BYTES) {
+            falhas++;
+            System.out.println("FALHOU: " + descricao + " ocupa " + ocupado / (1024 * 1024) + " MB.");
+        }
+
+        for (int i = 1; i <= TOTAL_PRODUTOS; i += 9973) {
+            Produto esperado = criarProduto(i);
+            Produto visao = armazem.getProduto(i - 1);
+            if (visao.getId() != esperado.getId() || visao.getQuantidade() != esperado.getQuantidade()
+                    || !visao.getNome().equals(esperado.getNome())
+                    || !visao.getCategoria().equals(esperado.getCategoria())
+                    || !visao.getCaixaID().equals(esperado.getCaixaID())
+                    || !visao.getCaixaNome().equals(esperado.getCaixaNome())
+                    || !visao.getLocalizacao().equals(esperado.getLocalizacao())) {
+                falhas++;
+                System.out.println("FALHOU: dados diferentes na posição " + (i - 1) + ".");
+            }
+        }
+    }
+
+    private static Produto criarProduto(int id) {
+        int caixa = id % 2000 + 1;
+        Produto produto = new Produto(id, "Produto " + id, id % 500 + 1, "Categoria " + (id % 5 + 1), caixa,
+                "Prateleira " + caixa % 40);
+        produto.setCaixaNome("Caixa " + caixa);
+        return produto;
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,155 @@
+package controleestoque.estoque;
+
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.servico.CelulaSelecaoProduto;
+import com.controleestoque.servico.LinhaSelecaoProduto;
+import com.controleestoque.servico.SelecaoProdutos;
+import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.beans.Observable;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.CheckBox;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+
+import java.lang.reflect.Field;
+
+/**
+ * Rola uma tabela de 100 mil produtos com a célula de seleção da aplicação, marcando linhas pelo caminho,
+ * e confere que o número de ouvintes (na seleção e nos CheckBox das células) e o uso de memória não crescem.
+ * Os ouvintes são contados por reflexão no ExpressionHelper das propriedades; rode com o JavaFX no classpath.
+ */
+public class TesteCelulaSelecao extends Application {
+
+    private static final int TOTAL_PRODUTOS = 100_000;
+    private static final long LIMITE_CRESCIMENTO_HEAP = 8L * 1024 * 1024;
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    @Override
+    public void start(Stage primaryStage) {
+        ObservableList<Produto> produtos = FXCollections.observableArrayList();
+        for (int i = 1; i <= TOTAL_PRODUTOS; i++) {
+            produtos.add(new Produto(i, "Produto " + i, i % 500 + 1, null, null, null));
+        }
+        SelecaoProdutos selecao = new SelecaoProdutos(produtos);
+
+        TableView<Produto> tabela = new TableView<>(produtos);
+        tabela.setRowFactory(tv -> new LinhaSelecaoProduto(selecao));
+
+        TableColumn<Produto, Boolean> colunaCheckBox = new TableColumn<>("Selecionar");
+        colunaCheckBox.setCellValueFactory(dados -> new SimpleBooleanProperty(selecao.isSelecionado(dados.getValue())));
+        colunaCheckBox.setCellFactory(coluna -> new CelulaSelecaoProduto(selecao));
+
+        TableColumn<Produto, String> colunaNome = new TableColumn<>("Nome");
+        colunaNome.setCellValueFactory(dados -> new SimpleStringProperty(dados.getValue().getNome()));
+
+        tabela.getColumns().add(colunaCheckBox);
+        tabela.getColumns().add(colunaNome);
+
+        primaryStage.setScene(new Scene(new VBox(tabela), 400, 600));
+        primaryStage.setTitle("Teste da célula de seleção");
+        primaryStage.show();
+
+        Platform.runLater(() -> {
+            // Uma primeira passada cria as células que a tabela vai reaproveitar
+            rolar(tabela, selecao, 5_000);
+            int ouvintesSelecaoAntes = contarOuvintes(selecao.versaoProperty());
+            int ouvintesCheckBoxAntes = contarOuvintesCheckBox(tabela);
+            long heapAntes = heapUsado();
+
+            rolar(tabela, selecao, TOTAL_PRODUTOS);
+            rolar(tabela, selecao, TOTAL_PRODUTOS);
+
+            int ouvintesSelecaoDepois = contarOuvintes(selecao.versaoProperty());
+            int ouvintesCheckBoxDepois = contarOuvintesCheckBox(tabela);
+            long crescimentoHeap = heapUsado() - heapAntes;
+
+            System.out.println("Ouvintes da seleção: " + ouvintesSelecaoAntes + " -> " + ouvintesSelecaoDepois);
+            System.out.println("Ouvintes dos CheckBox: " + ouvintesCheckBoxAntes + " -> " + ouvintesCheckBoxDepois);
+            System.out.println("Crescimento do heap: " + crescimentoHeap / 1024 + " KB");
+
+            boolean passou = ouvintesSelecaoDepois <= ouvintesSelecaoAntes
+                    && ouvintesCheckBoxDepois <= ouvintesCheckBoxAntes
+                    && crescimentoHeap < LIMITE_CRESCIMENTO_HEAP;
+            System.out.println(passou ? "Ouvintes e memória estáveis." : "FALHOU: ouvintes ou memória cresceram.");
+            Platform.exit();
+            if (!passou) {
+                System.exit(1);
+            }
+        });
+    }
+
+    /**
+     * Rola a tabela do início até a linha informada, uma tela por vez, alternando a seleção de uma linha
+     * visível a cada passo para que as células reajam à seleção enquanto são reaproveitadas.
+     */
+    private static void rolar(TableView<Produto> tabela, SelecaoProdutos selecao, int ate) {
+        for (int i = 0; i < ate; i += 25) {
+            tabela.scrollTo(i);
+            tabela.layout();
+            selecao.alternar(tabela.getItems().get(i));
+        }
+        tabela.scrollTo(0);
+        tabela.layout();
+    }
+
+    private static int contarOuvintesCheckBox(TableView<Produto> tabela) {
+        int total = 0;
+        for (Node no : tabela.lookupAll(".check-box")) {
+            if (no instanceof CheckBox) {
+                total += contarOuvintes(((CheckBox) no).selectedProperty());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Conta os ouvintes registrados em uma propriedade lendo o campo "helper" (ExpressionHelper) dela.
+     */
+    private static int contarOuvintes(Observable propriedade) {
+        try {
+            Object helper = buscarCampo(propriedade.getClass(), "helper").get(propriedade);
+            if (helper == null) {
+                return 0;
+            }
+            if (helper.getClass().getSimpleName().startsWith("Single")) {
+                return 1;
+            }
+            return buscarCampo(helper.getClass(), "invalidationSize").getInt(helper)
+                    + buscarCampo(helper.getClass(), "changeSize").getInt(helper);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Não foi possível contar os ouvintes de " + propriedade, e);
+        }
+    }
+
+    private static Field buscarCampo(Class<?> classe, String nome) throws NoSuchFieldException {
+        for (Class<?> atual = classe; atual != null; atual = atual.getSuperclass()) {
+            try {
+                Field campo = atual.getDeclaredField(nome);
+                campo.setAccessible(true);
+                return campo;
+            } catch (NoSuchFieldException e) {
+                // Procura na superclasse
+            }
+        }
+        throw new NoSuchFieldException(nome);
+    }
+
+    private static long heapUsado() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
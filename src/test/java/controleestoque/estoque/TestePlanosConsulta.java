@@ -0,0 +1,179 @@
+package controleestoque.estoque;
+
+import com.controleestoque.estoque.CaixaDAO;
+import com.controleestoque.estoque.InicializacaoBancoDados;
+import com.controleestoque.estoque.OrdenacaoProduto;
+import com.controleestoque.estoque.PoolConexoes;
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.estoque.ProdutoDAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Verifica, com as estatísticas de execução do Derby, que as consultas dos DAOs usam os índices
+ * criados pelas migrações do schema em vez de percorrer a tabela inteira.
+ * Roda sobre um banco em memória; o pool tem uma única conexão para que as estatísticas lidas
+ * sejam as da mesma sessão que executou a consulta.
+ */
+public class TestePlanosConsulta {
+
+    private static final int TOTAL_CAIXAS = 200;
+    private static final int TOTAL_PRODUTOS = 5000;
+    private static final int TOTAL_CATEGORIAS = 50;
+    private static final int TOTAL_LOCAIS = 20;
+
+    private static PoolConexoes pool;
+    private static int falhas;
+
+    public static void main(String[] args) throws Exception {
+        pool = new PoolConexoes("jdbc:derby:memory:testePlanos;create=true", 1, 5000, 2, 100);
+        try {
+            prepararBanco();
+
+            ProdutoDAO produtoDAO = new ProdutoDAO(pool);
+            CaixaDAO caixaDAO = new CaixaDAO(pool);
+            Produto ultimo = new Produto(2500, "Produto 2500", 2500 % 1000, null, null, null);
+
+            verificar("CaixaDAO.buscarIdCaixaPorNome", "CAIXAS",
+                    () -> caixaDAO.buscarIdCaixaPorNome("Caixa 17"));
+            verificar("ProdutoDAO.listarPagina por id (primeira página)", "PRODUTOS",
+                    () -> produtoDAO.listarPagina(OrdenacaoProduto.ID, true, null, 200));
+            verificar("ProdutoDAO.listarPagina por id (decrescente)", "PRODUTOS",
+                    () -> produtoDAO.listarPagina(OrdenacaoProduto.ID, false, ultimo, 200));
+            verificar("ProdutoDAO.listarPagina por nome", "PRODUTOS",
+                    () -> produtoDAO.listarPagina(OrdenacaoProduto.NOME, true, ultimo, 200));
+            verificar("ProdutoDAO.listarPagina por nome (decrescente)", "PRODUTOS",
+                    () -> produtoDAO.listarPagina(OrdenacaoProduto.NOME, false, ultimo, 200));
+            verificar("ProdutoDAO.listarPagina por quantidade (crescente)", "PRODUTOS",
+                    () -> produtoDAO.listarPagina(OrdenacaoProduto.QUANTIDADE, true, ultimo, 200));
+            verificar("ProdutoDAO.listarPagina por quantidade (decrescente)", "PRODUTOS",
+                    () -> produtoDAO.listarPagina(OrdenacaoProduto.QUANTIDADE, false, ultimo, 200));
+            verificar("ProdutoDAO.buscarProdutosComFiltros por quantidade", "PRODUTOS",
+                    () -> produtoDAO.buscarProdutosComFiltros(null, null, null, null, 10, 12));
+            verificar("ProdutoDAO.buscarProdutosComFiltros por categoria", "PRODUTOS",
+                    () -> produtoDAO.buscarProdutosComFiltros(null, "CATEGORIA 7", null, null, null, null));
+            verificar("ProdutoDAO.buscarProdutosComFiltros por localização", "PRODUTOS",
+                    () -> produtoDAO.buscarProdutosComFiltros(null, null, "local 3", null, null, null));
+            verificar("ProdutoDAO.buscarProdutosComFiltros por caixa", "CAIXAS",
+                    () -> produtoDAO.buscarProdutosComFiltros(null, null, null, "caixa 17", null, null));
+            verificar("ProdutoDAO.buscarProdutosComFiltros por caixa (produtos)", "PRODUTOS",
+                    () -> produtoDAO.buscarProdutosComFiltros(null, null, null, "caixa 17", null, null));
+            verificar("ProdutoDAO.getTodasCategorias", "PRODUTOS", produtoDAO::getTodasCategorias);
+            verificar("ProdutoDAO.getTodasLocalizacoes", "PRODUTOS", produtoDAO::getTodasLocalizacoes);
+            verificar("ProdutoDAO.alterar", "PRODUTOS", () -> {
+                produtoDAO.alterar(new Produto(42, "Produto 42", 7, "Categoria 2", 3, "Local 2"));
+                return null;
+            });
+            verificar("ProdutoDAO.remover", "PRODUTOS", () -> {
+                produtoDAO.remover(new Produto(43, "Produto 43", 0, null, null, null));
+                return null;
+            });
+            verificar("ProdutoDAO.buscarAlteracoesDesde", "PRODUTOS",
+                    () -> produtoDAO.buscarAlteracoesDesde(produtoDAO.obterVersaoAtual() - 2));
+            verificar("ProdutoDAO.buscarAlteracoesDesde (caixas)", "CAIXAS",
+                    () -> produtoDAO.buscarAlteracoesDesde(produtoDAO.obterVersaoAtual() - 2));
+            verificar("ProdutoDAO.renomearCategoria", "CATEGORIAS",
+                    () -> produtoDAO.renomearCategoria("Categoria 9", "Categoria 9 renomeada"));
+            verificar("ProdutoDAO.buscarAlteracoesDesde (categorias)", "PRODUTOS",
+                    () -> produtoDAO.buscarAlteracoesDesde(produtoDAO.obterVersaoAtual() - 1));
+        } finally {
+            pool.close();
+        }
+
+        if (falhas > 0) {
+            System.out.println(falhas + " consulta(s) sem uso de índice.");
+            System.exit(1);
+        }
+        System.out.println("Todas as consultas usam índices.");
+    }
+
+    /**
+     * Cria o schema pelas migrações, popula as tabelas e atualiza as estatísticas do otimizador.
+     */
+    private static void prepararBanco() throws SQLException {
+        try (Connection conexao = pool.obterConexao()) {
+            InicializacaoBancoDados.inicializarSchema(conexao);
+
+            try (PreparedStatement pstmt = conexao.prepareStatement(
+                    "INSERT INTO Caixas (nomeCaixa, localizacao) VALUES (?, ?)")) {
+                for (int i = 1; i <= TOTAL_CAIXAS; i++) {
+                    pstmt.setString(1, "Caixa " + i);
+                    pstmt.setString(2, "Local " + (i % 20));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            inserirNomes(conexao, "Categorias", "Categoria ", TOTAL_CATEGORIAS);
+            inserirNomes(conexao, "Localizacoes", "Local ", TOTAL_LOCAIS);
+            try (PreparedStatement pstmt = conexao.prepareStatement(
+                    "INSERT INTO Produtos (nome, quantidade, categoriaID, caixaID, localizacaoID) VALUES (?, ?, ?, ?, ?)")) {
+                for (int i = 1; i <= TOTAL_PRODUTOS; i++) {
+                    // Os nomes "Categoria n" e "Local n" foram inseridos com o id n + 1
+                    pstmt.setString(1, "Produto " + i);
+                    pstmt.setInt(2, i % 1000);
+                    pstmt.setInt(3, 1 + i % TOTAL_CATEGORIAS);
+                    pstmt.setInt(4, 1 + i % TOTAL_CAIXAS);
+                    pstmt.setInt(5, 1 + i % TOTAL_LOCAIS);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+            conexao.commit();
+
+            try (Statement stmt = conexao.createStatement()) {
+                stmt.execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('APP', 'CAIXAS', NULL)");
+                stmt.execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('APP', 'PRODUTOS', NULL)");
+                stmt.execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('APP', 'CATEGORIAS', NULL)");
+                stmt.execute("CALL SYSCS_UTIL.SYSCS_UPDATE_STATISTICS('APP', 'LOCALIZACOES', NULL)");
+                stmt.execute("CALL SYSCS_UTIL.SYSCS_SET_RUNTIMESTATISTICS(1)");
+            }
+            conexao.commit();
+        }
+    }
+
+    private static void inserirNomes(Connection conexao, String tabela, String prefixo, int total)
+            throws SQLException {
+        try (PreparedStatement pstmt = conexao.prepareStatement("INSERT INTO " + tabela + " (nome) VALUES (?)")) {
+            for (int i = 0; i < total; i++) {
+                pstmt.setString(1, prefixo + i);
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Executa a consulta e confere no plano de execução que a tabela foi acessada por um índice.
+     *
+     * @param descricao Nome da consulta, para o relatório.
+     * @param tabela    A tabela que não pode ser percorrida inteira.
+     * @param consulta  A chamada ao DAO.
+     */
+    private static void verificar(String descricao, String tabela, ConsultaDAO consulta) throws SQLException {
+        consulta.executar();
+
+        String plano;
+        try (Connection conexao = pool.obterConexao();
+             Statement stmt = conexao.createStatement();
+             ResultSet rs = stmt.executeQuery("VALUES SYSCS_UTIL.SYSCS_GET_RUNTIMESTATISTICS()")) {
+            plano = rs.next() ? rs.getString(1) : null;
+        }
+
+        if (plano != null && plano.contains("Index Scan ResultSet for " + tabela)
+                && !plano.contains("Table Scan ResultSet for " + tabela)) {
+            System.out.println("OK     " + descricao);
+        } else {
+            falhas++;
+            System.out.println("FALHOU " + descricao + "\n" + plano);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConsultaDAO {
+        Object executar() throws SQLException;
+    }
+}
@@ -0,0 +1,117 @@
+package controleestoque.estoque;
+
+import com.controleestoque.estoque.Produto;
+import com.controleestoque.servico.SelecaoProdutos;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Confere a contagem da SelecaoProdutos quando um produto selecionado sai da lista e o modelo de seleção
+ * da tabela avisa a remoção dele depois, como acontece com uma linha marcada pelo teclado ou com Ctrl-clique
+ * que some por um filtro, pela troca das páginas ou pela atualização incremental.
+ * Não precisa da tela: usa só as listas observáveis do JavaFX.
+ */
+public class TesteSelecaoProdutos {
+
+    private static int falhas;
+
+    public static void main(String[] args) {
+        verificarLinhaSelecionadaRemovida();
+        verificarLinhaSelecionadaSubstituida();
+        verificarSelecaoTodosComRemocao();
+
+        if (falhas > 0) {
+            System.out.println(falhas + " verificação(ões) falharam.");
+            System.exit(1);
+        }
+        System.out.println("Contagem da seleção consistente.");
+    }
+
+    /**
+     * A linha selecionada sai da lista por um filtro; o modelo de seleção a desmarca depois.
+     */
+    private static void verificarLinhaSelecionadaRemovida() {
+        ObservableList<Produto> produtos = criarProdutos(10);
+        SelecaoProdutos selecao = new SelecaoProdutos(produtos);
+        Produto produto = produtos.get(3);
+        desmarcarAoRemover(produtos, selecao);
+
+        selecao.definir(produto, true);
+        produtos.remove(produto);
+
+        conferir("linha selecionada removida: contagem", 0, selecao.getQuantidadeSelecionados());
+        conferir("linha selecionada removida: selecionados", 0, selecao.getSelecionados().size());
+        conferir("linha selecionada removida: todos selecionados", false, selecao.isTodosSelecionados());
+
+        // O produto volta à lista já desmarcado
+        produtos.add(produto);
+        conferir("linha devolvida: contagem", 0, selecao.getQuantidadeSelecionados());
+    }
+
+    /**
+     * A troca de páginas substitui a instância do produto selecionado por outra com o mesmo id.
+     */
+    private static void verificarLinhaSelecionadaSubstituida() {
+        ObservableList<Produto> produtos = criarProdutos(10);
+        SelecaoProdutos selecao = new SelecaoProdutos(produtos);
+        selecao.definir(produtos.get(5), true);
+
+        List<Produto> novos = new ArrayList<>(produtos);
+        Produto antigo = novos.remove(5);
+        novos.add(1, new Produto(antigo.getId(), antigo.getNome() + " alterado", antigo.getQuantidade(),
+                null, null, null));
+        produtos.setAll(novos);
+
+        conferir("linha substituída: contagem", 1, selecao.getQuantidadeSelecionados());
+        conferir("linha substituída: selecionados", 1, selecao.getSelecionados().size());
+    }
+
+    /**
+     * Com todos selecionados, remover um produto mantém todos os restantes selecionados.
+     */
+    private static void verificarSelecaoTodosComRemocao() {
+        ObservableList<Produto> produtos = criarProdutos(10);
+        SelecaoProdutos selecao = new SelecaoProdutos(produtos);
+        desmarcarAoRemover(produtos, selecao);
+
+        selecao.selecionarTodos();
+        produtos.remove(0);
+
+        conferir("todos selecionados após remoção: contagem", 9, selecao.getQuantidadeSelecionados());
+        conferir("todos selecionados após remoção: todos", true, selecao.isTodosSelecionados());
+    }
+
+    /**
+     * Reproduz a ordem dos avisos na tabela: a seleção observa a lista primeiro e o modelo de seleção,
+     * registrado depois, desmarca os produtos removidos.
+     */
+    private static void desmarcarAoRemover(ObservableList<Produto> produtos, SelecaoProdutos selecao) {
+        produtos.addListener((ListChangeListener<Produto>) mudanca -> {
+            while (mudanca.next()) {
+                for (Produto produto : mudanca.getRemoved()) {
+                    selecao.definir(produto, false);
+                }
+            }
+        });
+    }
+
+    private static ObservableList<Produto> criarProdutos(int total) {
+        ObservableList<Produto> produtos = FXCollections.observableArrayList();
+        for (int i = 1; i <= total; i++) {
+            produtos.add(new Produto(i, "Produto " + i, i, null, null, null));
+        }
+        return produtos;
+    }
+
+    private static void conferir(String descricao, Object esperado, Object obtido) {
+        boolean ok = esperado.equals(obtido);
+        System.out.println((ok ? "OK     " : "FALHOU ") + descricao + ": esperado " + esperado + ", obtido " + obtido);
+        if (!ok) {
+            falhas++;
+        }
+    }
+}